@@ -15,19 +15,22 @@
 
 package suncertify.bs;
 
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Date;
 import java.util.List;
-import java.util.Set;
 import java.util.logging.Level;
 
 import suncertify.commons.LoggingObject;
 import suncertify.commons.Miscellaneous;
 import suncertify.db.DBAccess;
+import suncertify.db.Query;
 import suncertify.db.RecordNotFoundException;
+import suncertify.db.RecordPage;
 import suncertify.db.SecurityException;
+import suncertify.db.StaleRecordException;
 
 
 /**
@@ -103,6 +106,119 @@ public class Business extends LoggingObject {
 
 	}
 
+	/**
+	 * Search for a page of the hotel rooms where the name and/or location
+	 * fields exactly match values specified by the user, as
+	 * {@link #search(String, String, Condition)} does. The rooms are read in
+	 * the server with the page, so the client can show the first rooms of a
+	 * broad search and request the rest as they are needed.
+	 * 
+	 * @param name the hotel name.
+	 * @param location the hotel location.
+	 * @param condition
+	 *            determines if the condition is "and" 
+	 *            ({@link Condition#MATCH_BOTH}) or "or" 
+	 *            ({@link Condition#MATCH_ANY})
+	 * @param resumeToken
+	 *            {@link RecordPage#FIRST} for the first page, or the
+	 *            {@link RoomPage#getResumeToken()} of the previous page.
+	 * @param pageSize the maximum number of rooms of the page.
+	 * @return the page of matching rooms.
+	 * @throws RoomNotFoundException if there is no matchings in the first page.
+	 */
+	public RoomPage searchPage(String name, String location,
+			Condition condition, long resumeToken, int pageSize)
+			throws RoomNotFoundException {
+
+		Query query = condition.equals(Condition.MATCH_BOTH) ? Query
+				.and(exactMatch(name, location)) : Query.or(exactMatch(name,
+				location));
+		// Log operation
+		this.logger.log(Level.INFO, "Searching " + pageSize + " rooms for "
+				+ query + " after " + resumeToken);
+
+		RecordPage page = this.dbAccess.findPage(query, resumeToken, pageSize);
+
+		this.logger.log(Level.INFO, page.size() + " coincidences found");
+		if (page.size() == 0 && resumeToken == RecordPage.FIRST) {
+			throw new RoomNotFoundException();
+		}
+		List<HotelRoom> rooms = new ArrayList<HotelRoom>(page.size());
+		for (int i = 0; i < page.size(); i++) {
+			rooms.add(new HotelRoom(page.getRecordNumber(i), page.getRecord(i)));
+		}
+		return new RoomPage(rooms, page.getResumeToken(), page.hasMore());
+
+	}
+
+	/**
+	 * Search for hotel rooms where the name and/or location fields contain
+	 * the values specified by the user, so rooms can be found knowing only
+	 * part of the hotel name.<br>
+	 * <code>null</code> values match any record.
+	 * 
+	 * @param name part of the hotel name.
+	 * @param location part of the hotel location.
+	 * @return a list of matching rooms.
+	 * @throws RoomNotFoundException if there is no matchings.
+	 */
+	public List<HotelRoom> searchContaining(String name, String location)
+			throws RoomNotFoundException {
+
+		String[] searchFields = new String[] { name, location };
+		// Log operation
+		this.logger.log(Level.INFO, "Searching for rooms containing {"
+				+ Miscellaneous.arrayToString(searchFields) + "}");
+
+		long[] recordsID = this.dbAccess.findBySubstring(searchFields);
+
+		List<HotelRoom> ret = readMatchingRooms(recordsID);
+		if (ret == null || ret.size() == 0) {
+			throw new RoomNotFoundException();
+		}
+		return ret;
+
+	}
+
+	/**
+	 * Search for hotel rooms whose price and date available are within the
+	 * specified bounds, all of them inclusive.<br>
+	 * <code>null</code> bounds match any record.
+	 * 
+	 * @param minPrice the minimum price.
+	 * @param maxPrice the maximum price.
+	 * @param availableFrom the first date available.
+	 * @param availableTo the last date available.
+	 * @return a list of matching rooms.
+	 * @throws RoomNotFoundException if there is no matchings.
+	 */
+	public List<HotelRoom> searchByRange(BigDecimal minPrice,
+			BigDecimal maxPrice, Date availableFrom, Date availableTo)
+			throws RoomNotFoundException {
+
+		DateFormat dateFormat = new SimpleDateFormat(HotelRoom.DATE_PATTERN);
+		String[] min = new String[] { null, null, null, null,
+				minPrice == null ? null : minPrice.toPlainString(),
+				availableFrom == null ? null : dateFormat.format(availableFrom) };
+		String[] max = new String[] { null, null, null, null,
+				maxPrice == null ? null : maxPrice.toPlainString(),
+				availableTo == null ? null : dateFormat.format(availableTo) };
+		// Log operation
+		this.logger.log(Level.INFO, "Searching between {"
+				+ Miscellaneous.arrayToString(min) + "} and {"
+				+ Miscellaneous.arrayToString(max) + "}");
+
+		// The finder compares prices as decimals and dates as text
+		long[] recordsID = this.dbAccess.findByRange(min, max);
+
+		List<HotelRoom> ret = readMatchingRooms(recordsID);
+		if (ret == null || ret.size() == 0) {
+			throw new RoomNotFoundException();
+		}
+		return ret;
+
+	}
+
 	/**
 	 * Delegates to {@link DBAccess#lockRecord(long)}.
 	 * 
@@ -184,6 +300,87 @@ public class Business extends LoggingObject {
 
 	}
 
+	/**
+	 * Books a room to a customer in a single call to the database, that locks,
+	 * verifies the room is still available, updates and unlocks it (see
+	 * {@link DBAccess#updateRecordIfMatches(long, String[], String[])}). Remote
+	 * clients do not hold the lock across network round trips.
+	 * 
+	 * @param roomNo the room number.
+	 * @param customerID customer identifying number.
+	 * @return the booked room.
+	 * @throws RoomNotFoundException if the room does not exist.
+	 * @throws AlreadyBookedException if the room is already booked.
+	 */
+	public HotelRoom bookRoom(long roomNo, String customerID)
+			throws RoomNotFoundException, AlreadyBookedException {
+
+		validateCustomerId(customerID);
+
+		// Expected state: not booked. New state: booked to the customer
+		String[] expected = new String[HotelRoom.FIELD_COUNT];
+		expected[HotelRoom.CUSTOMER_FIELD] = "";
+		String[] data = new String[HotelRoom.FIELD_COUNT];
+		data[HotelRoom.CUSTOMER_FIELD] = customerID;
+
+		try {
+			// Log the operation
+			this.logger.log(Level.INFO, "Booking room number " + roomNo
+					+ " to customer " + customerID);
+			String[] record = this.dbAccess.updateRecordIfMatches(roomNo,
+					expected, data);
+			this.logger.log(Level.INFO, "Room number " + roomNo
+					+ " successfully booked to customer " + customerID);
+			return new HotelRoom(roomNo, record);
+		} catch (RecordNotFoundException e) {
+			throw new RoomNotFoundException(e);
+		} catch (StaleRecordException e) {
+			throw new AlreadyBookedException("Room " + roomNo
+					+ " is already booked!");
+		}
+	}
+
+	/**
+	 * Books any available room of the specified hotel and location to a
+	 * customer, in a single call to the database that chooses, locks, updates
+	 * and unlocks the room (see
+	 * {@link DBAccess#updateAnyRecordIfMatches(String[], String[])}).
+	 * Concurrent bookings spread over the available rooms instead of
+	 * contending for the first one.<br>
+	 * <code>null</code> values match any room.
+	 * 
+	 * @param name the exact hotel name.
+	 * @param location the exact hotel location.
+	 * @param customerID customer identifying number.
+	 * @return the booked room.
+	 * @throws RoomNotFoundException if there is no available room matching.
+	 */
+	public HotelRoom bookAny(String name, String location, String customerID)
+			throws RoomNotFoundException {
+
+		validateCustomerId(customerID);
+
+		// Expected state: matching and not booked
+		String[] expected = new String[HotelRoom.FIELD_COUNT];
+		expected[0] = name;
+		expected[1] = location;
+		expected[HotelRoom.CUSTOMER_FIELD] = "";
+		String[] data = new String[HotelRoom.FIELD_COUNT];
+		data[HotelRoom.CUSTOMER_FIELD] = customerID;
+
+		// Log the operation
+		this.logger.log(Level.INFO, "Booking any room of " + name + " in "
+				+ location + " to customer " + customerID);
+		RecordPage page = this.dbAccess.updateAnyRecordIfMatches(expected, data);
+		if (page.size() == 0) {
+			throw new RoomNotFoundException();
+		}
+		HotelRoom ret = new HotelRoom(page.getRecordNumber(0), page.getRecord(0));
+		this.logger.log(Level.INFO, "Room number " + ret.getId()
+				+ " successfully booked to customer " + customerID);
+		return ret;
+	}
+
 	/*
 	 * Validates that customerId is an 8 digit number.
 	 */
@@ -209,44 +406,14 @@ public class Business extends LoggingObject {
 	 */
 	private List<HotelRoom> searchBothCriteria(String name, String location) {
 
-		String[] searchFields = new String[] { name, location };
-		// Construct logging message
-		String cad = "{" + Miscellaneous.arrayToString(searchFields) + "}";
+		// Exact matching, in a single search
+		Query query = Query.and(exactMatch(name, location));
 		// Log operation
-		this.logger.log(Level.INFO, "Searching for " + cad);
-		/*
-		 * First obtain record ids. This method does not return exact matching needed,
-		 * (see findByCriteria comments) so more logic is needed.
-		 */
-	
-		long[] recordsID = this.dbAccess.findByCriteria(searchFields);
-		// Build the result object to create the FindEvent
+		this.logger.log(Level.INFO, "Searching for " + query);
 
-		this.logger.log(Level.INFO, recordsID.length + " coincidences found");
+		long[] recordsID = this.dbAccess.findByQuery(query);
 
-		if (recordsID.length == 0) {
-			return null;
-		}
-
-		List<HotelRoom> matchingRecords = new ArrayList<HotelRoom>();
-
-		for (int i = 0; i < recordsID.length; i++) {
-			try {
-				// Read each of the matching records
-				String[] fieldValues = this.dbAccess.readRecord(recordsID[i]);
-
-				if ((name == null || fieldValues[0].equals(name))
-						&& (location == null || fieldValues[1].equals(location))) {
-
-					matchingRecords
-							.add(new HotelRoom(recordsID[i], fieldValues));
-				}
-			} catch (RecordNotFoundException e) {
-				this.logger.log(Level.WARNING, e.getMessage(), e);
-			}
-		}
-
-		return matchingRecords;
+		return readMatchingRooms(recordsID);
 
 	}
 
@@ -255,51 +422,64 @@ public class Business extends LoggingObject {
 	 */
 	private List<HotelRoom> searchAnyCriteria(String name, String location) {
 		
+		if (name == null && location == null) {
+			return null;
+		}
 		/*
-		 * Perform two searches, one for {name,null} and other for 
-		 * {null,location}
+		 * A single search returns the records matching name or location, 
+		 * without duplicates and in record number order.
 		 */
-		List<HotelRoom> nameMatchingRecords = null;
-		List<HotelRoom> locationMatchingRecords = null;
+		Query query = Query.or(exactMatch(name, location));
+		// Log operation
+		this.logger.log(Level.INFO, "Searching for " + query);
+
+		long[] recordsID = this.dbAccess.findByQuery(query);
+
+		return readMatchingRooms(recordsID);
+
+	}
+
+	/*
+	 * Exact matching conditions on the not null name and location.
+	 */
+	private static Query[] exactMatch(String name, String location) {
+		List<Query> ret = new ArrayList<Query>();
 		if (name != null) {
-			nameMatchingRecords = searchBothCriteria(name, null);
+			ret.add(Query.equalTo(0, name));
 		}
 		if (location != null) {
-			locationMatchingRecords = searchBothCriteria(null, location);
+			ret.add(Query.equalTo(1, location));
 		}
-		
-		/*
-		 * A set will be used to discard duplicates. Key here is overwritten
-		 * equals() and hash() methods in HotelRoom class.
-		 */
-		Set<HotelRoom> nonRepeatedRecords;
-		if (nameMatchingRecords == null) {
-			if (locationMatchingRecords == null) {
-				nonRepeatedRecords = null;
-			} else {
-				nonRepeatedRecords = new HashSet<HotelRoom>(
-						locationMatchingRecords);
-			}
-		} else if (locationMatchingRecords == null) {
-			nonRepeatedRecords = new HashSet<HotelRoom>(nameMatchingRecords);
+		return ret.toArray(new Query[ret.size()]);
+	}
 
-		// Both resultsets are not null
-		} else {
-			nonRepeatedRecords = new LinkedHashSet<HotelRoom>(
-					nameMatchingRecords);
-			for (HotelRoom locationMatchingRecord : locationMatchingRecords) {
-				
-				// Set discards duplicates
-				nonRepeatedRecords.add(locationMatchingRecord);
-			}
-		}
-		if (nonRepeatedRecords == null) {
+	/*
+	 * Reads the found records in a single batch, skipping the ones deleted
+	 * meanwhile. Rooms are returned in record number order. See
+	 * HotelRoom.compareTo() method.
+	 */
+	private List<HotelRoom> readMatchingRooms(long[] recordsID) {
+
+		this.logger.log(Level.INFO, recordsID.length + " coincidences found");
+
+		if (recordsID.length == 0) {
 			return null;
 		}
-		// Return an orderer list. See HotelRoom.compareTo() method.
-		List<HotelRoom> list = new ArrayList<HotelRoom>(nonRepeatedRecords);
-		Collections.sort(list);
-		return list;
+
+		List<HotelRoom> matchingRecords = new ArrayList<HotelRoom>();
+
+		// Read all the matching records in a single call
+		String[][] fieldValues = this.dbAccess.readRecords(recordsID);
+		for (int i = 0; i < recordsID.length; i++) {
+			if (fieldValues[i] != null) {
+				matchingRecords.add(new HotelRoom(recordsID[i], fieldValues[i]));
+			} else {
+				this.logger.log(Level.WARNING, "Record " + recordsID[i]
+						+ " deleted after search");
+			}
+		}
+
+		return matchingRecords;
 
 	}
 }
@@ -43,8 +43,23 @@ public class HotelRoom extends LoggingObject implements Comparable<HotelRoom> {
 	private final Date dateAvailable;
 	private String customer;
 
+	/**
+	 * Number of fields of a room record.
+	 */
+	static final int FIELD_COUNT = 7;
+
+	/**
+	 * Index of the customer field in a room record.
+	 */
+	static final int CUSTOMER_FIELD = 6;
+
+	/**
+	 * Format of the date available in the database.
+	 */
+	static final String DATE_PATTERN = "yyyy/MM/dd";
+
 	private static final DateFormat DATE_FORMAT = new SimpleDateFormat(
-			"yyyy/MM/dd");
+			DATE_PATTERN);
 
 	/**
 	 * Creates a new instance.
@@ -71,7 +86,7 @@ public class HotelRoom extends LoggingObject implements Comparable<HotelRoom> {
 			this.logger.log(Level.SEVERE, e.getMessage(), e);
 		}
 		this.dateAvailable = date;
-		this.customer = record[6];
+		this.customer = record[CUSTOMER_FIELD];
 	}
 
 	/**
@@ -154,7 +169,7 @@ public class HotelRoom extends LoggingObject implements Comparable<HotelRoom> {
 	 */
 	public void setCustomer(String customer) {
 		this.customer = customer;
-		this.record[6] = customer;
+		this.record[CUSTOMER_FIELD] = customer;
 	}
 
 	/**
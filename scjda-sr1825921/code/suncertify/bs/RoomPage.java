@@ -0,0 +1,78 @@
+/*
+ * RoomPage.java 03/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle Corporation
+ */
+
+
+package suncertify.bs;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Page of the rooms found by
+ * {@link Business#searchPage(String, String, Business.Condition, long, int)}.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 03/12/2010
+ * 
+ */
+public final class RoomPage {
+
+	private final List<HotelRoom> rooms;
+	private final long resumeToken;
+	private final boolean more;
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param rooms
+	 *            the rooms of the page.
+	 * @param resumeToken
+	 *            the token requesting the next page.
+	 * @param more
+	 *            <code>true</code> if there are more rooms.
+	 */
+	RoomPage(List<HotelRoom> rooms, long resumeToken, boolean more) {
+		this.rooms = Collections.unmodifiableList(rooms);
+		this.resumeToken = resumeToken;
+		this.more = more;
+	}
+
+	/**
+	 * Rooms getter.
+	 * 
+	 * @return the rooms of the page, in room number order.
+	 */
+	public List<HotelRoom> getRooms() {
+		return this.rooms;
+	}
+
+	/**
+	 * Resume token getter.
+	 * 
+	 * @return the token requesting the page following this one.
+	 */
+	public long getResumeToken() {
+		return this.resumeToken;
+	}
+
+	/**
+	 * Tells if there are rooms after this page.
+	 * 
+	 * @return <code>true</code> if there are more rooms.
+	 */
+	public boolean hasMore() {
+		return this.more;
+	}
+}
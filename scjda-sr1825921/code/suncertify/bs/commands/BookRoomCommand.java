@@ -1,5 +1,5 @@
 /*
- * BookCommand.java 11/10/2010
+ * BookRoomCommand.java 04/12/2010
  * 
  * Candidate: Ignacio del Valle Alles
  * Candidate ID: SR1825921
@@ -9,41 +9,40 @@
  * 
  * This class is part of the Programming Assignment of the Sun Certified
  * Developer for Java 2 Platform, Standard Edition certification program, must
- * not be used out of this context and must be used exclusively by Oracle Corporation
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
  */
 
 
 package suncertify.bs.commands;
 
 import suncertify.bs.Business;
+import suncertify.bs.HotelRoom;
 
 
 /**
  * {@link BusinessCommand} that encapsulates calls to
- * {@link Business#book(long, String, long)}.
+ * {@link Business#bookRoom(long, String)}. Its result is the booked room.
  * 
  * @author Ignacio del Valle Alles
- * @version 1.0 11/10/2010
+ * @version 1.0 04/12/2010
  */
-public class BookCommand extends BusinessCommand<Void> {
+public class BookRoomCommand extends BusinessCommand<HotelRoom> {
 
 	private final long roomNo;
 	private final String customerID;
-	private final long cookie;
 
 	/**
-	 * Creates a new instance from the {@link Business#book(long, String, long)}
+	 * Creates a new instance from the {@link Business#bookRoom(long, String)}
 	 * specified parameters.
 	 * 
 	 * @param roomNo the room number.
 	 * @param customerID customer identifying number.
-	 * @param cookie returned by <code>lock()</code> call.
 	 */
-	public BookCommand(long roomNo, String customerID, long cookie) {
+	public BookRoomCommand(long roomNo, String customerID) {
 
 		this.roomNo = roomNo;
 		this.customerID = customerID;
-		this.cookie = cookie;
 	}
 
 	/**
@@ -63,22 +62,12 @@ public class BookCommand extends BusinessCommand<Void> {
 	public String getCustomerID() {
 		return this.customerID;
 	}
-
-	/**
-	 * Returns the cookie command parameter.
-	 * 
-	 * @return the cookie specified at creation time.
-	 */
-	public long getCookie() {
-		return this.cookie;
-	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected Void doExecute() throws Exception {
-		this.business.book(this.roomNo, this.customerID, this.cookie);
-		return null;
+	protected HotelRoom doExecute() throws Exception {
+		return this.business.bookRoom(this.roomNo, this.customerID);
 	}	
 }
@@ -0,0 +1,131 @@
+/*
+ * SearchPageCommand.java 07/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+package suncertify.bs.commands;
+
+import suncertify.bs.Business;
+import suncertify.bs.RoomPage;
+import suncertify.bs.Business.Condition;
+import suncertify.db.RecordPage;
+
+
+/**
+ * {@link BusinessCommand} that encapsulates calls to
+ * {@link Business#searchPage(String, String, Condition, long, int)}. Its
+ * result is a page of the matching rooms, and the command requesting the
+ * following page is returned by {@link #next()}.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 07/12/2010
+ */
+public class SearchPageCommand extends BusinessCommand<RoomPage> {
+
+	private final String name;
+	private final String location;
+	private final Condition condition;
+	private final long resumeToken;
+	private final int pageSize;
+
+	/**
+	 * Creates a new instance requesting the first page of a search.
+	 * 
+	 * @param name the hotel name.
+	 * @param location the hotel location.
+	 * @param condition
+	 *            determines if the condition is "and"
+	 *            ({@link Condition#MATCH_BOTH}) or "or"
+	 *            ({@link Condition#MATCH_ANY})
+	 * @param pageSize the maximum number of rooms of each page.
+	 */
+	public SearchPageCommand(String name, String location,
+			Condition condition, int pageSize) {
+
+		this(name, location, condition, RecordPage.FIRST, pageSize);
+	}
+
+	private SearchPageCommand(String name, String location,
+			Condition condition, long resumeToken, int pageSize) {
+
+		this.name = name;
+		this.location = location;
+		this.condition = condition;
+		this.resumeToken = resumeToken;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Returns the name command parameter.
+	 * 
+	 * @return the name specified at creation time.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the location command parameter.
+	 * 
+	 * @return the location specified at creation time.
+	 */
+	public String getLocation() {
+		return this.location;
+	}
+
+	/**
+	 * Returns the condition command parameter.
+	 * 
+	 * @return the condition specified at creation time.
+	 */
+	public Condition getCondition() {
+		return this.condition;
+	}
+
+	/**
+	 * Tells if the command requests the first page of the search.
+	 * 
+	 * @return <code>true</code> if it is the first page.
+	 */
+	public boolean isFirstPage() {
+		return this.resumeToken == RecordPage.FIRST;
+	}
+
+	/**
+	 * Returns the command requesting the page following the result of this
+	 * one.
+	 * 
+	 * @return the next page command.
+	 * @throws IllegalStateException
+	 *             if this command has not been executed, or there are no rooms
+	 *             after its result.
+	 */
+	public SearchPageCommand next() {
+		RoomPage page = getResult();
+		if (page == null || !page.hasMore()) {
+			throw new IllegalStateException("There is no next page");
+		}
+		return new SearchPageCommand(this.name, this.location, this.condition,
+				page.getResumeToken(), this.pageSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected RoomPage doExecute() throws Exception {
+		return this.business.searchPage(this.name, this.location,
+				this.condition, this.resumeToken, this.pageSize);
+	}
+
+}
@@ -20,8 +20,13 @@ import java.rmi.RemoteException;
 import suncertify.commons.LoggingObject;
 import suncertify.db.DBAccess;
 import suncertify.db.DuplicateKeyException;
+import suncertify.db.LockTimeoutException;
+import suncertify.db.Query;
 import suncertify.db.RecordNotFoundException;
+import suncertify.db.RecordPage;
 import suncertify.db.SecurityException;
+import suncertify.db.StaleRecordException;
+import suncertify.db.VersionedRecord;
 import suncertify.db.impl.RuntimeIOException;
 import suncertify.server.spec.RemoteDBAccess;
 
@@ -86,6 +91,71 @@ public class RemoteDataAdapter extends LoggingObject implements DBAccess {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] findByAnyCriteria(String[] criteria) {
+		
+		try {
+			return this.remoteDBAccess.findByAnyCriteria(criteria);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] findByRange(String[] min, String[] max) {
+		
+		try {
+			return this.remoteDBAccess.findByRange(min, max);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] findBySubstring(String[] criteria) {
+		
+		try {
+			return this.remoteDBAccess.findBySubstring(criteria);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] findByQuery(Query query) {
+		
+		try {
+			return this.remoteDBAccess.findByQuery(query);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RecordPage findPage(Query query, long resumeToken, int pageSize) {
+		
+		try {
+			return this.remoteDBAccess.findPage(query, resumeToken, pageSize);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -112,6 +182,19 @@ public class RemoteDataAdapter extends LoggingObject implements DBAccess {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[][] readRecords(long[] recNos) {
+		
+		try {
+			return this.remoteDBAccess.readRecords(recNos);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -140,4 +223,126 @@ public class RemoteDataAdapter extends LoggingObject implements DBAccess {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateRecords(long[] recNos, String[][] data, long[] lockCookies)
+			throws RecordNotFoundException, SecurityException {
+		
+		try {
+			this.remoteDBAccess.updateRecords(recNos, data, lockCookies);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] updateRecordIfMatches(long recNo, String[] expected, String[] data)
+			throws RecordNotFoundException, StaleRecordException {
+		
+		try {
+			return this.remoteDBAccess.updateRecordIfMatches(recNo, expected, data);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RecordPage updateAnyRecordIfMatches(String[] expected, String[] data) {
+		
+		try {
+			return this.remoteDBAccess.updateAnyRecordIfMatches(expected, data);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void renewLock(long recNo, long cookie) throws SecurityException {
+		
+		try {
+			this.remoteDBAccess.renewLock(recNo, cookie);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long tryLockRecord(long recNo, long timeoutMillis)
+			throws RecordNotFoundException, LockTimeoutException {
+		
+		try {
+			return this.remoteDBAccess.tryLockRecord(recNo, timeoutMillis);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] lockRecords(long[] recNos) throws RecordNotFoundException {
+		
+		try {
+			return this.remoteDBAccess.lockRecords(recNos);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unlockRecords(long[] recNos, long[] cookies) throws SecurityException {
+		
+		try {
+			this.remoteDBAccess.unlockRecords(recNos, cookies);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public VersionedRecord readVersionedRecord(long recNo)
+			throws RecordNotFoundException {
+		
+		try {
+			return this.remoteDBAccess.readVersionedRecord(recNo);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long updateRecordIfVersion(long recNo, String[] data, long expectedVersion)
+			throws RecordNotFoundException, StaleRecordException {
+		
+		try {
+			return this.remoteDBAccess.updateRecordIfVersion(recNo, data, expectedVersion);
+		} catch (RemoteException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
 }
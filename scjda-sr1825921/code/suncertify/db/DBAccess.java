@@ -49,6 +49,93 @@ public interface DBAccess {
   	public void updateRecord(long recNo, String[] data, long lockCookie)
   			throws RecordNotFoundException, SecurityException;
 
+	/**
+	 * Reads a record together with its version, the value to pass to 
+	 * {@link #updateRecordIfVersion(long, String[], long)} to modify it afterwards.
+	 * 
+	 * @param recNo the record identifying number.
+	 * @return the record values and version.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 */
+	public VersionedRecord readVersionedRecord(long recNo)
+			throws RecordNotFoundException;
+
+	/**
+	 * Modifies the fields of a record only if it has not been modified since its 
+	 * version was read, as a single operation that never waits for record locks:
+	 * it fails if the record is locked by a client. The new value for field n appears
+	 * in data[n].
+	 * 
+	 * @param recNo the record number.
+	 * @param data the record values.
+	 * @param expectedVersion the version read with 
+	 *         {@link #readVersionedRecord(long)}.
+	 * @return the new version of the record.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws StaleRecordException if the record version is not expectedVersion, 
+	 *         or the record is locked.
+	 *         The exception carries the current record values.
+	 */
+  	public long updateRecordIfVersion(long recNo, String[] data, long expectedVersion)
+  			throws RecordNotFoundException, StaleRecordException;
+
+	/**
+	 * Reads several records at once, as returned by the search methods.
+	 * 
+	 * @param recNos the record identifying numbers.
+	 * @return an array with the values of each record, in the order of recNos, with 
+	 *         null for the records that do not exist.
+	 */
+	public String[][] readRecords(long[] recNos);
+
+	/**
+	 * Modifies the fields of several records at once. The new value for field n of 
+	 * the record recNos[i] appears in data[i][n]. Either all the records are modified
+	 * or none is.
+	 * 
+	 * @param recNos the record numbers.
+	 * @param data the record values.
+	 * @param lockCookies the cookie values, in the order of recNos.
+	 * @throws RecordNotFoundException if any of the records does not exist.
+	 * @throws SecurityException if any of the records is locked with a cookie other 
+	 *         than its lockCookie.
+	 * @throws IllegalArgumentException if the array lengths differ.
+	 */
+  	public void updateRecords(long[] recNos, String[][] data, long[] lockCookies)
+  			throws RecordNotFoundException, SecurityException;
+
+	/**
+	 * Modifies the fields of a record if its current values match the expected ones,
+	 * as a single operation that locks and unlocks the record itself. A null value in
+	 * expected[n] matches any field value, and a non-null one only an equal value. The 
+	 * new value for field n appears in data[n], and a null value keeps the current one.
+	 * 
+	 * @param recNo the record number.
+	 * @param expected the expected record values.
+	 * @param data the record values.
+	 * @return the record values after the modification.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws StaleRecordException if the record values do not match the expected ones.
+	 * @throws IllegalArgumentException if expected or data do not have a value per field.
+	 */
+  	public String[] updateRecordIfMatches(long recNo, String[] expected, String[] data)
+  			throws RecordNotFoundException, StaleRecordException;
+
+	/**
+	 * Modifies the fields of any one of the records whose current values match the
+	 * expected ones, with the semantics of 
+	 * {@link #updateRecordIfMatches(long, String[], String[])}. Allows to claim one of
+	 * several equivalent records (as any available room of a hotel) in a single 
+	 * operation, without every client contending for the same record.
+	 * 
+	 * @param expected the expected record values.
+	 * @param data the record values.
+	 * @return a page with the number and values of the modified record, empty if no 
+	 *         record matches.
+	 * @throws IllegalArgumentException if expected or data do not have a value per field.
+	 */
+  	public RecordPage updateAnyRecordIfMatches(String[] expected, String[] data);
+
 
 	/**
 	 * Deletes a record, making the record number and associated disk storage available
@@ -74,6 +161,65 @@ public interface DBAccess {
 	 */
   	public long[] findByCriteria(String[] criteria);
 
+	/**
+	 * Returns an array of record numbers that match any of the specified criteria. 
+	 * Field n in the database file is described by criteria[n], as in 
+	 * {@link #findByCriteria(String[])}, but a record matches if at least one of the 
+	 * non-null values in criteria matches its field.
+     * 
+	 * @param criteria the filter criteria array.
+	 * @return the array of record numbers.
+	 */
+  	public long[] findByAnyCriteria(String[] criteria);
+
+	/**
+	 * Returns an array of record numbers whose field values are within the specified 
+	 * bounds. Field n in the database file is bounded by min[n] and max[n], both 
+	 * inclusive. A null value is unbounded. Numeric values (optionally preceded by a 
+	 * currency symbol, as "$150.00") are compared as decimals, and the rest (as dates in
+	 * yyyy/MM/dd format) as text.
+     * 
+	 * @param min the lower bounds array.
+	 * @param max the upper bounds array.
+	 * @return the array of record numbers.
+	 */
+  	public long[] findByRange(String[] min, String[] max);
+
+	/**
+	 * Returns an array of record numbers whose field values contain the specified 
+	 * criteria. Field n in the database file is described by criteria[n]. A null value
+	 * in criteria[n] matches any field value. A non-null value in criteria[n] matches 
+	 * any field value that contains criteria[n]. (For example, "view" matches 
+	 * "Grandview").
+     * 
+	 * @param criteria the filter criteria array.
+	 * @return the array of record numbers.
+	 */
+  	public long[] findBySubstring(String[] criteria);
+
+	/**
+	 * Returns an array of record numbers that match the specified query, combining
+	 * exact, prefix and range conditions on fields (see {@link Query}).
+     * 
+	 * @param query the query.
+	 * @return the array of record numbers.
+	 */
+  	public long[] findByQuery(Query query);
+
+	/**
+	 * Returns a page of the records that match the specified query, in record number 
+	 * order, starting after the record number resumeToken. The first page is requested 
+	 * with {@link RecordPage#FIRST}, and the following ones with the 
+	 * {@link RecordPage#getResumeToken()} of the previous page.
+     * 
+	 * @param query the query.
+	 * @param resumeToken the record number to start after.
+	 * @param pageSize the maximum number of records of the page.
+	 * @return the page, with the record values.
+	 * @throws IllegalArgumentException if query is null or pageSize is not positive.
+	 */
+  	public RecordPage findPage(Query query, long resumeToken, int pageSize);
+
 	/**
 	 * Creates a new record in the database (possibly reusing a deleted entry).
 	 * 
@@ -89,7 +235,8 @@ public interface DBAccess {
 	 * Returned value is a cookie that must be used when the record is unlocked,
 	 * updated, or deleted. If the specified record is already locked by a different
 	 * client, the current thread gives up the CPU and consumes no CPU cycles until the 
-	 * record is unlocked.
+	 * record is unlocked. If locks are granted for a limited lease time, the lock is 
+	 * released when it expires unless it is renewed (see {@link #renewLock(long, long)}).
 	 * 
 	 * @param recNo the record number.
 	 * @return a cookie value. A long that demonstrate the lock ownership.
@@ -98,6 +245,33 @@ public interface DBAccess {
   	public long lockRecord(long recNo)
   			throws RecordNotFoundException;
 
+	/**
+	 * Locks a record as {@link #lockRecord(long)}, but if the record is already locked 
+	 * by a different client, waits at most the specified time for it to be unlocked.
+	 * 
+	 * @param recNo the record number.
+	 * @param timeoutMillis the maximum time to wait, in milliseconds.
+	 * @return a cookie value. A long that demonstrate the lock ownership.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws LockTimeoutException if the record is still locked when the time elapses.
+	 */
+  	public long tryLockRecord(long recNo, long timeoutMillis)
+  			throws RecordNotFoundException, LockTimeoutException;
+
+	/**
+	 * Locks several records at once, as a single operation that either locks all of
+	 * them or none, with the semantics of {@link #lockRecord(long)}. The records are 
+	 * locked in record number order, whatever the order given, so concurrent calls 
+	 * locking overlapping records can not deadlock.
+	 * 
+	 * @param recNos the record numbers.
+	 * @return the cookie values, in the order of recNos.
+	 * @throws RecordNotFoundException if any of the records does not exist.
+	 * @throws IllegalArgumentException if recNos contains duplicated numbers.
+	 */
+  	public long[] lockRecords(long[] recNos)
+  			throws RecordNotFoundException;
+
 	/**
 	 * Releases the lock on a record. Cookie must be the cookie returned when the record 
 	 * was locked; otherwise throws SecurityException.
@@ -108,4 +282,29 @@ public interface DBAccess {
 	 */
   	public void unlock(long recNo, long cookie)
   			throws SecurityException;
+
+	/**
+	 * Releases the locks on several records at once. Either all the locks are released
+	 * or none is.
+	 * 
+	 * @param recNos the record numbers.
+	 * @param cookies the result of <code>lockRecords(recNos)</code> execution.
+	 * @throws SecurityException if any of the cookies is not valid.
+	 * @throws IllegalArgumentException if the array lengths differ, or recNos
+	 *         contains duplicated numbers.
+	 */
+  	public void unlockRecords(long[] recNos, long[] cookies)
+  			throws SecurityException;
+
+	/**
+	 * Extends the lease of the lock on a record by a whole lease time, if locks are
+	 * granted for a limited lease time. Cookie must be the cookie returned when the 
+	 * record was locked; otherwise throws SecurityException.
+	 * 
+	 * @param recNo the record number.
+	 * @param cookie the result of <code>lockRecord(recNo)</code> execution.
+	 * @throws SecurityException if the cookie is not valid, or the lease has expired.
+	 */
+  	public void renewLock(long recNo, long cookie)
+  			throws SecurityException;
 }
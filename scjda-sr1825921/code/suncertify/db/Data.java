@@ -17,11 +17,17 @@
 package suncertify.db;
 
 import static suncertify.commons.Miscellaneous.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import suncertify.commons.LoggingObject;
 import suncertify.db.spec.DataAccessObject;
 import suncertify.db.spec.FinderObject;
 import suncertify.db.spec.LockManager;
+import suncertify.db.spec.Versioned;
 
 
 /**
@@ -38,6 +44,7 @@ public final class Data extends LoggingObject implements DBAccess {
 	protected final DataAccessObject<Long, String[]> dao;
 	protected final FinderObject<Long, String[]> finder;
 	protected final LockManager<Long, Long> lockManager;
+	private final Random random = new Random();
 
 	/**
 	 * Creates a new instance from the specified parameters.
@@ -93,7 +100,9 @@ public final class Data extends LoggingObject implements DBAccess {
 	 * Modifies the fields of a record. The new value for field n appears in
 	 * data[n].<br>
 	 * First validates the cookie and then delegates the update to referenced
-	 * DAO.
+	 * DAO, keeping the lease of the lock pinned meanwhile (see
+	 * {@link LockManager#pin(Object, Object)}), so it can not expire between
+	 * the validation and the update.
 	 * 
 	 * @param recNo
 	 *            the record number.
@@ -115,18 +124,251 @@ public final class Data extends LoggingObject implements DBAccess {
 		/*
 		 * Verify locking. -> SecurityException
 		 */
-		this.validateCookie(recNo, lockCookie);
+		pinLock(recNo, lockCookie);
+		try {
+			/*
+			 * Perform the modification
+			 */
+			this.dao.update(recNo, data);
+		} finally {
+			unpinLock(recNo, lockCookie);
+		}
+		this.logger.log(Level.CONFIG, "updateRecord() ended sucesfully");
+	}
+
+	/**
+	 * Reads several records at once. The reads are delegated to the referenced
+	 * DAO in a single batch, that reads them in storage order.
+	 * 
+	 * @param recNos record numbers, returned by {@link #findByCriteria(String[])}.
+	 * @return an array with the field values of each record, in the order of recNos,
+	 *         with <code>null</code> for the records that do not exist.
+	 * @see DBAccess#readRecords(long[])
+	 */
+	public String[][] readRecords(long[] recNos) {
+		this.logger.log(Level.CONFIG, "Called readRecords(" + recNos.length + " records)");
+		String[][] ret = this.dao.findByPrimaryKeys(toObjectArray(recNos));
+		this.logger.log(Level.CONFIG, "Returned " + ret.length + " records");
+		return ret;
+	}
 
+	/**
+	 * Modifies the fields of several records at once.<br>
+	 * First validates every cookie and then delegates the update of the whole 
+	 * batch to referenced DAO, keeping the leases of the locks pinned meanwhile.
+	 * 
+	 * @param recNos
+	 *            the record numbers.
+	 * @param data
+	 *            the record values.
+	 * @param lockCookies
+	 *            the cookie locking values, in the order of recNos.
+	 * @throws RecordNotFoundException if any of the records does not exist.
+	 * @throws SecurityException
+	 *             if any of lockCookies is not the record locking cookie.
+	 * @see DBAccess#updateRecords(long[], String[][], long[])
+	 * @see #lockRecord(long)
+	 */
+	public void updateRecords(long[] recNos, String[][] data, long[] lockCookies)
+			throws RecordNotFoundException, SecurityException {
+
+		this.logger.log(Level.CONFIG, "Called updateRecords(" + recNos.length + " records)");
+		if (recNos.length != data.length || recNos.length != lockCookies.length) {
+			throw new IllegalArgumentException("recNos, data and lockCookies lengths differ");
+		}
 		/*
-		 * Perform the modification
+		 * Verify locking. -> SecurityException
 		 */
-		this.dao.update(recNo, data);
-		this.logger.log(Level.CONFIG, "updateRecord() ended sucesfully");
+		int pinned = 0;
+		try {
+			for (; pinned < recNos.length; pinned++) {
+				pinLock(recNos[pinned], lockCookies[pinned]);
+			}
+
+			/*
+			 * Perform the modification
+			 */
+			this.dao.update(toObjectArray(recNos), data);
+		} finally {
+			for (int i = 0; i < pinned; i++) {
+				unpinLock(recNos[i], lockCookies[i]);
+			}
+		}
+		this.logger.log(Level.CONFIG, "updateRecords() ended sucesfully");
+	}
+
+	/**
+	 * Modifies the fields of a record if its current values match the expected ones.
+	 * <br>
+	 * The record is locked, read, verified, updated and unlocked here, so the lock is
+	 * only held for the duration of the local operations, and remote clients perform 
+	 * the whole modification in a single call.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param expected
+	 *            the expected record values, <code>null</code> values match any.
+	 * @param data
+	 *            the record values, <code>null</code> values keep the current ones.
+	 * @return the record values after the modification.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws StaleRecordException
+	 *             if the record values do not match the expected ones.
+	 * @see DBAccess#updateRecordIfMatches(long, String[], String[])
+	 */
+	@SuppressWarnings("boxing")
+	public String[] updateRecordIfMatches(long recNo, String[] expected, String[] data)
+			throws RecordNotFoundException, StaleRecordException {
+
+		this.logger.log(Level.CONFIG, "Called updateRecordIfMatches(" + recNo + ",{" 
+				+ arrayToString(expected) + "},{" + arrayToString(data) + "})");
+		long cookie = this.lockManager == null ? 0 : this.lockManager.lock(recNo);
+		try {
+			String[] ret = updateLockedRecord(recNo, expected, data);
+			this.logger.log(Level.CONFIG, "Returned {" + arrayToString(ret) + "}");
+			return ret;
+		} finally {
+			releaseLock(recNo, cookie);
+		}
+	}
+
+	/**
+	 * Reads a record together with its version.<br>
+	 * Delegates to referenced DAO, bypassing any record cache, so the values 
+	 * correspond to the version.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @return the record values and version.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @see DBAccess#readVersionedRecord(long)
+	 */
+	@SuppressWarnings("boxing")
+	public VersionedRecord readVersionedRecord(long recNo) throws RecordNotFoundException {
+		this.logger.log(Level.CONFIG, "Called readVersionedRecord(" + recNo + ")");
+		Versioned<String[]> versioned = this.dao.findVersionedByPrimaryKey(recNo);
+		this.logger.log(Level.CONFIG, "Returned version " + versioned.getVersion());
+		return new VersionedRecord(versioned.getRecord(), versioned.getVersion());
+	}
+
+	/**
+	 * Modifies the fields of a record if its version is the expected one.<br>
+	 * The version is compared and the record updated by referenced DAO as a 
+	 * single atomic operation. This method never waits for record locks: if the
+	 * record is locked by a client, that may be between its read and its write,
+	 * the update fails as if the version did not match.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param data
+	 *            the record values.
+	 * @param expectedVersion
+	 *            the version the record must have.
+	 * @return the new version of the record.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws StaleRecordException
+	 *             if the record version is not the expected one, or the record
+	 *             is locked.
+	 * @see DBAccess#updateRecordIfVersion(long, String[], long)
+	 */
+	@SuppressWarnings("boxing")
+	public long updateRecordIfVersion(long recNo, String[] data, long expectedVersion)
+			throws RecordNotFoundException, StaleRecordException {
+
+		this.logger.log(Level.CONFIG, "Called updateRecordIfVersion(" + recNo + ",{" 
+				+ arrayToString(data) + "}," + expectedVersion + ")");
+		long cookie = 0;
+		if (this.lockManager != null) {
+			Long lockCookie = this.lockManager.tryLock(recNo);
+			if (lockCookie == null) {
+				throw new StaleRecordException("Record number " + recNo 
+						+ " is locked by other client", this.dao.findByPrimaryKey(recNo));
+			}
+			cookie = lockCookie;
+		}
+		try {
+			long ret = this.dao.updateIfVersion(recNo, data, expectedVersion);
+			if (ret == DataAccessObject.VERSION_MISMATCH) {
+				throw new StaleRecordException("Record number " + recNo 
+						+ " has been modified", this.dao.findByPrimaryKey(recNo));
+			}
+			this.logger.log(Level.CONFIG, "Returned version " + ret);
+			return ret;
+		} finally {
+			releaseLock(recNo, cookie);
+		}
+	}
+
+	/**
+	 * Modifies the fields of one of the records whose current values match the 
+	 * expected ones, as a single operation that locks and unlocks the record itself.
+	 * <br>
+	 * The candidate records are obtained from the specified in construction
+	 * {@link suncertify.db.spec.FinderObject} implementation, and tried starting at a 
+	 * random one, so concurrent callers spread over the candidates. Records locked by
+	 * other clients are skipped, and only waited for if no other candidate can be 
+	 * modified.
+	 * 
+	 * @param expected
+	 *            the expected record values, <code>null</code> values match any.
+	 * @param data
+	 *            the record values, <code>null</code> values keep the current ones.
+	 * @return a page with the number and values of the modified record, empty if 
+	 *         no record matches.
+	 * @see DBAccess#updateAnyRecordIfMatches(String[], String[])
+	 */
+	@SuppressWarnings("boxing")
+	public RecordPage updateAnyRecordIfMatches(String[] expected, String[] data) {
+
+		this.logger.log(Level.CONFIG, "Called updateAnyRecordIfMatches({" 
+				+ arrayToString(expected) + "},{" + arrayToString(data) + "})");
+		List<Query> conditions = new ArrayList<Query>();
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i] != null) {
+				conditions.add(Query.equalTo(i, expected[i]));
+			}
+		}
+		Long[] candidates = this.finder.findByQuery(Query.and(conditions
+				.toArray(new Query[conditions.size()])));
+		
+		/*
+		 * First pass, skipping the records locked by other clients
+		 */
+		List<Long> busy = new ArrayList<Long>();
+		int start = candidates.length == 0 ? 0 : this.random.nextInt(candidates.length);
+		for (int i = 0; i < candidates.length; i++) {
+			long recNo = candidates[(start + i) % candidates.length];
+			Long cookie = this.lockManager == null ? Long.valueOf(0) : this.lockManager
+					.tryLock(recNo);
+			if (cookie == null) {
+				busy.add(recNo);
+				continue;
+			}
+			String[] record = tryUpdateLockedRecord(recNo, cookie, expected, data);
+			if (record != null) {
+				return updatedPage(recNo, record);
+			}
+		}
+		
+		/*
+		 * Second pass, waiting for them. Their owners may not modify them
+		 */
+		for (Long recNo : busy) {
+			String[] record = tryUpdateLockedRecord(recNo, this.lockManager.lock(recNo), 
+					expected, data);
+			if (record != null) {
+				return updatedPage(recNo, record);
+			}
+		}
+		this.logger.log(Level.CONFIG, "No record modified");
+		return new RecordPage(new long[0], new String[0][], RecordPage.FIRST, false);
 	}
 
 	/**
 	 * Deletes a record, making the record number and associated disk storage
 	 * available for reuse.
+	 * The lease of the lock is kept pinned from the validation of the cookie to
+	 * the end of the deletion.
 	 * 
 	 * @param recNo
 	 *            the record number.
@@ -151,12 +393,15 @@ public final class Data extends LoggingObject implements DBAccess {
 		/*
 		 * Verify locking. -> SecurityException
 		 */
-		validateCookie(recNo, lockCookie);
-
-		/*
-		 * Perform the modification
-		 */
-		this.dao.delete(recNo);
+		pinLock(recNo, lockCookie);
+		try {
+			/*
+			 * Perform the modification
+			 */
+			this.dao.delete(recNo);
+		} finally {
+			unpinLock(recNo, lockCookie);
+		}
 		
 		this.logger.log(Level.CONFIG, "deleteRecord() ended sucesfully");
 	}
@@ -175,16 +420,130 @@ public final class Data extends LoggingObject implements DBAccess {
 		
 		this.logger.log(Level.CONFIG, "Called findByCriteria({" + arrayToString(criteria)+"})");
 		
-		Long[] pks = this.finder.findByCriteria(criteria);
-		long[] ret = new long[pks.length];
+		long[] ret = toPrimitive(this.finder.findByCriteria(criteria));
+		this.logger.log(Level.CONFIG, "Returned {" + longArraytoString(ret)+"}");
+		return ret;
+	}
 
-		for (int i = 0; i < ret.length; i++) {
-			ret[i] = pks[i];
-		}
+	/**
+	 * Returns an array of record numbers that match any of the specified criteria. The
+	 * implementation is delegated to the specified in construction
+	 * {@link suncertify.db.spec.FinderObject} implementation.
+	 * 
+	 * @param criteria the filter object.
+	 * @return the array of record numbers.
+	 * @see DBAccess#findByAnyCriteria(String[])
+	 */
+	public long[] findByAnyCriteria(String[] criteria) {
+		
+		this.logger.log(Level.CONFIG, "Called findByAnyCriteria({" + arrayToString(criteria)+"})");
+		
+		long[] ret = toPrimitive(this.finder.findByAnyCriteria(criteria));
+		this.logger.log(Level.CONFIG, "Returned {" + longArraytoString(ret)+"}");
+		return ret;
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the specified 
+	 * bounds. The implementation is delegated to the specified in construction
+	 * {@link suncertify.db.spec.FinderObject} implementation.
+	 * 
+	 * @param min the lower bounds.
+	 * @param max the upper bounds.
+	 * @return the array of record numbers.
+	 * @see DBAccess#findByRange(String[], String[])
+	 */
+	public long[] findByRange(String[] min, String[] max) {
+		
+		this.logger.log(Level.CONFIG, "Called findByRange({" + arrayToString(min)+"},{" + arrayToString(max)+"})");
+		
+		long[] ret = toPrimitive(this.finder.findByRange(min, max));
+		this.logger.log(Level.CONFIG, "Returned {" + longArraytoString(ret)+"}");
+		return ret;
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the specified 
+	 * criteria. The implementation is delegated to the specified in construction
+	 * {@link suncertify.db.spec.FinderObject} implementation.
+	 * 
+	 * @param criteria the filter object.
+	 * @return the array of record numbers.
+	 * @see DBAccess#findBySubstring(String[])
+	 */
+	public long[] findBySubstring(String[] criteria) {
+		
+		this.logger.log(Level.CONFIG, "Called findBySubstring({" + arrayToString(criteria)+"})");
+		
+		long[] ret = toPrimitive(this.finder.findBySubstring(criteria));
 		this.logger.log(Level.CONFIG, "Returned {" + longArraytoString(ret)+"}");
 		return ret;
 	}
 
+	/**
+	 * Returns an array of record numbers that match the specified query. The 
+	 * implementation is delegated to the specified in construction
+	 * {@link suncertify.db.spec.FinderObject} implementation.
+	 * 
+	 * @param query the query.
+	 * @return the array of record numbers.
+	 * @see DBAccess#findByQuery(Query)
+	 */
+	public long[] findByQuery(Query query) {
+		
+		this.logger.log(Level.CONFIG, "Called findByQuery(" + query + ")");
+		
+		long[] ret = toPrimitive(this.finder.findByQuery(query));
+		this.logger.log(Level.CONFIG, "Returned {" + longArraytoString(ret)+"}");
+		return ret;
+	}
+
+	/**
+	 * Returns a page of the records that match the specified query, following the 
+	 * record number resumeToken. The record numbers are obtained from the specified 
+	 * in construction {@link suncertify.db.spec.FinderObject} implementation, asking 
+	 * for one more than the page size to know if there are more pages, and the 
+	 * records are read in the server in a single batch. Records deleted meanwhile are skipped.
+	 * 
+	 * @param query the query.
+	 * @param resumeToken the record number to start after.
+	 * @param pageSize the maximum number of records of the page.
+	 * @return the page.
+	 * @see DBAccess#findPage(Query, long, int)
+	 */
+	@SuppressWarnings("boxing")
+	public RecordPage findPage(Query query, long resumeToken, int pageSize) {
+		
+		this.logger.log(Level.CONFIG, "Called findPage(" + query + "," + resumeToken + "," 
+				+ pageSize + ")");
+		if (query == null) {
+			throw new IllegalArgumentException("query must be not null");
+		}
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be positive");
+		}
+		
+		Long[] pks = this.finder.findByQuery(query, resumeToken < 0 ? null : resumeToken, 
+				pageSize < Integer.MAX_VALUE ? pageSize + 1 : pageSize);
+		int size = Math.min(pks.length, pageSize);
+		String[][] found = this.dao.findByPrimaryKeys(Arrays.copyOf(pks, size));
+		long[] recNos = new long[size];
+		String[][] records = new String[size][];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (found[i] != null) {
+				records[n] = found[i];
+				recNos[n++] = pks[i];
+			} else {
+				this.logger.log(Level.INFO, "Record deleted after search: " + pks[i]);
+			}
+		}
+		RecordPage ret = new RecordPage(Arrays.copyOf(recNos, n), Arrays.copyOf(records, n), 
+				size == 0 ? resumeToken : pks[size - 1], pks.length > pageSize);
+		this.logger.log(Level.CONFIG, "Returned " + n + " records, more=" + ret.hasMore());
+		return ret;
+	}
+
 	/**
 	 * Creates a new record in the database (possibly reusing a deleted entry).
 	 * 
@@ -222,35 +581,117 @@ public final class Data extends LoggingObject implements DBAccess {
 		 * Record existence pre-verification
 		 */
 		readRecord(recNo);
-		try {
-			long ret = 0;
-			if (this.lockManager != null) {
-				ret = this.lockManager.lock(recNo);
-
-				/*
-				 * Record existence post-verification. (After lock acquired)
-				 */
-				try {
-					readRecord(recNo);
-				} catch (RecordNotFoundException e) {
-					this.lockManager.unlock(recNo, ret);
-					throw new RecordNotFoundException(
-							"Error locking record number " + recNo
-									+ ". This record has been deleted");
-				}
+		long ret = 0;
+		if (this.lockManager != null) {
+			ret = this.lockManager.lock(recNo);
 
+			/*
+			 * Record existence post-verification. (After lock acquired)
+			 */
+			try {
+				readRecord(recNo);
+			} catch (RecordNotFoundException e) {
+				releaseLock(recNo, ret);
+				throw new RecordNotFoundException(
+						"Error locking record number " + recNo
+								+ ". This record has been deleted");
 			}
-			this.logger.log(Level.CONFIG, "Returned " + ret);
-			return ret;
-			
+
+		}
+		this.logger.log(Level.CONFIG, "Returned " + ret);
+		return ret;
+	}
+
+	/**
+	 * Locks a record as {@link #lockRecord(long)}, but if the record is already
+	 * locked by a different client, waits at most the specified time for it to
+	 * be unlocked.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param timeoutMillis
+	 *            the maximum time to wait, in milliseconds.
+	 * @return a cookie value.
+	 * @throws RecordNotFoundException if the record does not exist.
+	 * @throws LockTimeoutException if the record is still locked when the time 
+	 *         elapses.
+	 * @see DBAccess#tryLockRecord(long, long)
+	 */
+	@SuppressWarnings("boxing")
+	public long tryLockRecord(long recNo, long timeoutMillis)
+			throws RecordNotFoundException, LockTimeoutException {
+		this.logger.log(Level.CONFIG, "Called tryLockRecord(" + recNo + "," 
+				+ timeoutMillis + ")");
+		/*
+		 * Record existence pre-verification
+		 */
+		readRecord(recNo);
+		long ret = 0;
+		if (this.lockManager != null) {
+			Long cookie = this.lockManager.tryLock(recNo, timeoutMillis,
+					TimeUnit.MILLISECONDS);
+			if (cookie == null) {
+				throw new LockTimeoutException("Record number " + recNo
+						+ " still locked after " + timeoutMillis + " ms");
+			}
+			ret = cookie;
+
 			/*
-			 * The following exceptions should never be thrown.
+			 * Record existence post-verification. (After lock acquired)
 			 */
-		} catch (SecurityException e) {
-			this.logger.log(Level.SEVERE,
-					"This exception should had never been thrown", e);
-			throw new Error(e);
+			try {
+				readRecord(recNo);
+			} catch (RecordNotFoundException e) {
+				releaseLock(recNo, ret);
+				throw new RecordNotFoundException(
+						"Error locking record number " + recNo
+								+ ". This record has been deleted");
+			}
+		}
+		this.logger.log(Level.CONFIG, "Returned " + ret);
+		return ret;
+	}
+
+	/**
+	 * Locks several records at once, as a single operation that either locks
+	 * all of them or none. The records are locked in record number order (see
+	 * {@link LockManager#lockAll(List)}), so concurrent calls can not deadlock.
+	 * 
+	 * @param recNos
+	 *            the record numbers.
+	 * @return the cookie values, in the order of recNos.
+	 * @throws RecordNotFoundException if any of the records does not exist.
+	 * @throws IllegalArgumentException if recNos contains duplicated numbers.
+	 * @see DBAccess#lockRecords(long[])
+	 */
+	@SuppressWarnings("boxing")
+	public long[] lockRecords(long[] recNos) throws RecordNotFoundException {
+		this.logger.log(Level.CONFIG, "Called lockRecords(" + recNos.length + " records)");
+		/*
+		 * Records existence pre-verification
+		 */
+		verifyExistence(recNos);
+		long[] ret = new long[recNos.length];
+		if (this.lockManager != null) {
+			List<Long> cookies = this.lockManager.lockAll(Arrays.asList(toObjectArray(recNos)));
+			for (int i = 0; i < ret.length; i++) {
+				ret[i] = cookies.get(i);
+			}
+
+			/*
+			 * Records existence post-verification. (After locks acquired)
+			 */
+			try {
+				verifyExistence(recNos);
+			} catch (RecordNotFoundException e) {
+				for (int i = 0; i < ret.length; i++) {
+					releaseLock(recNos[i], ret[i]);
+				}
+				throw e;
+			}
 		}
+		this.logger.log(Level.CONFIG, "Returned " + ret.length + " cookies");
+		return ret;
 	}
 
 	/**
@@ -278,15 +719,191 @@ public final class Data extends LoggingObject implements DBAccess {
 		this.logger.log(Level.CONFIG, "deleteRecord() ended sucesfully");
 	}
 
+	/**
+	 * Releases the locks on several records at once. Either all the locks are
+	 * released or none is: every cookie is validated while holding the locks,
+	 * so none of them can expire in between (see
+	 * {@link LockManager#unlockAll(List, List)}).
+	 * 
+	 * @param recNos
+	 *            the record numbers.
+	 * @param cookies values returned by lockRecords(), in the order of recNos.
+	 * @throws SecurityException if any of the cookies is not valid.
+	 * @throws IllegalArgumentException if the array lengths differ, or recNos
+	 *         contains duplicated numbers.
+	 * @see #lockRecords(long[])
+	 * @see DBAccess#unlockRecords(long[], long[])
+	 */
+	@SuppressWarnings("boxing")
+	public void unlockRecords(long[] recNos, long[] cookies) throws SecurityException {
+
+		this.logger.log(Level.CONFIG, "Called unlockRecords(" + recNos.length + " records)");
+		if (recNos.length != cookies.length) {
+			throw new IllegalArgumentException("recNos and cookies lengths differ");
+		}
+		if (this.lockManager != null) {
+			this.lockManager.unlockAll(Arrays.asList(toObjectArray(recNos)),
+					Arrays.asList(toObjectArray(cookies)));
+		} else {
+			this.logger.log(Level.WARNING, "Locking is disabled!");
+		}
+	}
+
+	/**
+	 * Extends the lease of the lock on a record, if the lock manager grants
+	 * locks for a limited lease time (see {@link LockManager#renew(Object, Object)}).
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param cookie value returned by lock().
+	 * @throws SecurityException if the cookie is not valid, or the lease has expired.
+	 * @see #lockRecord(long)
+	 * @see DBAccess#renewLock(long, long)
+	 */
+	@SuppressWarnings("boxing")
+	public void renewLock(long recNo, long cookie) throws SecurityException {
+
+		this.logger.log(Level.CONFIG, "Called renewLock(" + recNo+","+cookie+")");
+		
+		if (this.lockManager != null) {
+			this.lockManager.renew(recNo, cookie);
+		} else {
+			this.logger.log(Level.WARNING, "Locking is disabled!");
+		}
+	}
+
+	/*
+	 * Unboxes the primary keys returned by the finder
+	 */
+	@SuppressWarnings("boxing")
+	private static long[] toPrimitive(Long[] pks) {
+		long[] ret = new long[pks.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = pks[i];
+		}
+		return ret;
+	}
+
 	/*
-	 * Delegates cookie validation to the this.lockManager, if this is not null
+	 * Boxes record numbers for the DAO batch methods
 	 */
 	@SuppressWarnings("boxing")
-	private void validateCookie(long recNo, long lockCookie)
-			throws SecurityException {
-		if (this.lockManager != null
-				&& !this.lockManager.isValidCookie(recNo, lockCookie)) {
-			throw new SecurityException("Cookie verification failed");
+	private static Long[] toObjectArray(long[] recNos) {
+		Long[] ret = new Long[recNos.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = recNos[i];
+		}
+		return ret;
+	}
+
+	/*
+	 * Verifies and modifies a record locked by the caller
+	 */
+	private String[] updateLockedRecord(long recNo, String[] expected, String[] data)
+			throws RecordNotFoundException, StaleRecordException {
+		String[] current = this.dao.findByPrimaryKey(recNo);
+		if (expected.length != current.length || data.length != current.length) {
+			throw new IllegalArgumentException("expected and data must have " 
+					+ current.length + " values");
+		}
+		
+		/*
+		 * Verify the current values
+		 */
+		for (int i = 0; i < current.length; i++) {
+			if (expected[i] != null && !expected[i].equals(current[i])) {
+				throw new StaleRecordException("Record number " + recNo 
+						+ " has been modified", current);
+			}
+		}
+
+		/*
+		 * Perform the modification
+		 */
+		String[] values = current.clone();
+		for (int i = 0; i < values.length; i++) {
+			if (data[i] != null) {
+				values[i] = data[i];
+			}
+		}
+		this.dao.update(recNo, values);
+		return this.dao.findByPrimaryKey(recNo);
+	}
+
+	/*
+	 * Verifies and modifies a record locked with the cookie, and unlocks it.
+	 * Returns null if the record has been deleted or modified since the search
+	 */
+	private String[] tryUpdateLockedRecord(long recNo, long cookie, String[] expected, 
+			String[] data) {
+		try {
+			return updateLockedRecord(recNo, expected, data);
+		} catch (RecordNotFoundException e) {
+			return null;
+		} catch (StaleRecordException e) {
+			return null;
+		} finally {
+			releaseLock(recNo, cookie);
+		}
+	}
+
+	/*
+	 * Returns the page of a record modified by updateAnyRecordIfMatches
+	 */
+	@SuppressWarnings("boxing")
+	private RecordPage updatedPage(long recNo, String[] record) {
+		this.logger.log(Level.CONFIG, "Modified record " + recNo);
+		return new RecordPage(new long[] { recNo }, new String[][] { record }, recNo, 
+				false);
+	}
+
+	/*
+	 * Throws RecordNotFoundException if any of the records does not exist
+	 */
+	private void verifyExistence(long[] recNos) throws RecordNotFoundException {
+		String[][] records = readRecords(recNos);
+		for (int i = 0; i < records.length; i++) {
+			if (records[i] == null) {
+				throw new RecordNotFoundException("Record number " + recNos[i]
+						+ " does not exist");
+			}
+		}
+	}
+
+	/*
+	 * Releases a lock taken by this class, if locking is enabled
+	 */
+	@SuppressWarnings("boxing")
+	private void releaseLock(long recNo, long cookie) {
+		if (this.lockManager != null) {
+			try {
+				this.lockManager.unlock(recNo, cookie);
+			} catch (SecurityException e) {
+				// Only possible if the lease of the lock expired meanwhile
+				this.logger.log(Level.WARNING, "Lock of record " + recNo
+						+ " released before the end of the operation", e);
+			}
+		}
+	}
+
+	/*
+	 * Validates the cookie and keeps the lease of the lock from expiring until
+	 * unpinLock, if locking is enabled
+	 */
+	@SuppressWarnings("boxing")
+	private void pinLock(long recNo, long lockCookie) throws SecurityException {
+		if (this.lockManager != null) {
+			this.lockManager.pin(recNo, lockCookie);
+		}
+	}
+
+	/*
+	 * Undoes pinLock, if locking is enabled
+	 */
+	@SuppressWarnings("boxing")
+	private void unpinLock(long recNo, long lockCookie) {
+		if (this.lockManager != null) {
+			this.lockManager.unpin(recNo, lockCookie);
 		}
 	}
 }
@@ -0,0 +1,49 @@
+/*
+ * LockTimeoutException.java 07/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle 
+ * Corporation.
+ */
+
+
+package suncertify.db;
+
+
+/**
+ * The Exception thrown when a lock can not be acquired within the specified
+ * time, because another client holds it (see 
+ * {@link DBAccess#tryLockRecord(long, long)}).
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 07/12/2010
+ *
+ */
+public class LockTimeoutException extends Exception{
+	
+	static final long serialVersionUID = -3185626218459912772L;
+	
+	/**
+	 * Constructs a new <code>LockTimeoutException</code>.
+	 */
+	public LockTimeoutException(){
+		super();
+	}
+	
+	/**
+	 * Constructs a new <code>LockTimeoutException</code> with the specified message.
+	 * 
+	 * @param message the message String.
+	 */
+	public LockTimeoutException(String message){
+		super(message);
+	}
+
+}
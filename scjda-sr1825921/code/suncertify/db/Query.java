@@ -0,0 +1,412 @@
+/*
+ * Query.java 02/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle 
+ * Corporation.
+ */
+
+
+package suncertify.db;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Search expression over the field values of the records (see
+ * {@link DBAccess#findByQuery(Query)}), combining exact, prefix and range
+ * conditions on single fields with AND, OR and NOT. For example, the non
+ * smoking rooms of hotel "Palace" in any location starting with "Small":
+ * <blockquote>
+ * 
+ * <pre>
+ * Query.and(Query.equalTo(0, &quot;Palace&quot;), Query.startsWith(1, &quot;Small&quot;),
+ * 		Query.not(Query.equalTo(3, &quot;Y&quot;)))
+ * </pre>
+ * 
+ * </blockquote>
+ * Field values are compared trimmed and case sensitive. Range bounds are
+ * compared as in {@link DBAccess#findByRange(String[], String[])}. A
+ * condition on a field the records do not have never matches.
+ * <p>
+ * Queries are immutable and serializable, so they can be sent to the server.
+ * Equal queries are compiled once by the server and reused by later
+ * searches.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 02/12/2010
+ */
+public abstract class Query implements Serializable {
+
+	private static final long serialVersionUID = 6203856135520713413L;
+
+	/**
+	 * Operation performed by a query.
+	 */
+	private enum Operator {
+		EQUAL_TO, STARTS_WITH, BETWEEN, AND, OR, NOT;
+	}
+
+	/*
+	 * Only the nested classes extend this class
+	 */
+	private Query() {
+		// Nothing to do.
+	}
+
+	/**
+	 * Returns a query matching the records whose field value is equal to the
+	 * specified one.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the field value.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if fieldNo is negative or value is <code>null</code>.
+	 */
+	public static Query equalTo(int fieldNo, String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value must be not null");
+		}
+		return new Condition(Operator.EQUAL_TO, fieldNo, value, null);
+	}
+
+	/**
+	 * Returns a query matching the records whose field value begins with the
+	 * specified prefix, as {@link DBAccess#findByCriteria(String[])} does.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param prefix
+	 *            the prefix.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if fieldNo is negative or prefix is <code>null</code>.
+	 */
+	public static Query startsWith(int fieldNo, String prefix) {
+		if (prefix == null) {
+			throw new IllegalArgumentException("prefix must be not null");
+		}
+		return new Condition(Operator.STARTS_WITH, fieldNo, prefix, null);
+	}
+
+	/**
+	 * Returns a query matching the records whose field value is within the
+	 * specified bounds, as {@link DBAccess#findByRange(String[], String[])}
+	 * does.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param min
+	 *            the lower bound, inclusive. <code>null</code> if unbounded.
+	 * @param max
+	 *            the upper bound, inclusive. <code>null</code> if unbounded.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if fieldNo is negative.
+	 */
+	public static Query between(int fieldNo, String min, String max) {
+		return new Condition(Operator.BETWEEN, fieldNo, min, max);
+	}
+
+	/**
+	 * Returns a query matching the records matched by all the specified
+	 * queries. With no queries, it matches any record.
+	 * 
+	 * @param queries
+	 *            the queries.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if a query is <code>null</code>.
+	 */
+	public static Query and(Query... queries) {
+		return new Composite(Operator.AND, queries);
+	}
+
+	/**
+	 * Returns a query matching the records matched by any of the specified
+	 * queries. With no queries, it matches no record.
+	 * 
+	 * @param queries
+	 *            the queries.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if a query is <code>null</code>.
+	 */
+	public static Query or(Query... queries) {
+		return new Composite(Operator.OR, queries);
+	}
+
+	/**
+	 * Returns a query matching the records not matched by the specified one.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the new query.
+	 * @throws IllegalArgumentException
+	 *             if query is <code>null</code>.
+	 */
+	public static Query not(Query query) {
+		return new Composite(Operator.NOT, query);
+	}
+
+	/**
+	 * Visits this query, its operands first.
+	 * 
+	 * @param <T>
+	 *            the result type of the visitor.
+	 * @param visitor
+	 *            the visitor.
+	 * @return the result of the visitor for this query.
+	 */
+	public abstract <T> T accept(Visitor<T> visitor);
+
+	/**
+	 * Receives the parts of a query (see {@link Query#accept(Visitor)}), as
+	 * the server does to compile them.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 * @version 1.0 02/12/2010
+	 * 
+	 * @param <T>
+	 *            the result type.
+	 */
+	public interface Visitor<T> {
+
+		/**
+		 * Visits a {@link Query#equalTo(int, String)} query.
+		 * 
+		 * @param fieldNo
+		 *            the field index.
+		 * @param value
+		 *            the field value.
+		 * @return the result.
+		 */
+		public T visitEqualTo(int fieldNo, String value);
+
+		/**
+		 * Visits a {@link Query#startsWith(int, String)} query.
+		 * 
+		 * @param fieldNo
+		 *            the field index.
+		 * @param prefix
+		 *            the prefix.
+		 * @return the result.
+		 */
+		public T visitStartsWith(int fieldNo, String prefix);
+
+		/**
+		 * Visits a {@link Query#between(int, String, String)} query.
+		 * 
+		 * @param fieldNo
+		 *            the field index.
+		 * @param min
+		 *            the lower bound, <code>null</code> if unbounded.
+		 * @param max
+		 *            the upper bound, <code>null</code> if unbounded.
+		 * @return the result.
+		 */
+		public T visitBetween(int fieldNo, String min, String max);
+
+		/**
+		 * Visits a {@link Query#and(Query...)} query.
+		 * 
+		 * @param operands
+		 *            the results of the operands.
+		 * @return the result.
+		 */
+		public T visitAnd(List<T> operands);
+
+		/**
+		 * Visits a {@link Query#or(Query...)} query.
+		 * 
+		 * @param operands
+		 *            the results of the operands.
+		 * @return the result.
+		 */
+		public T visitOr(List<T> operands);
+
+		/**
+		 * Visits a {@link Query#not(Query)} query.
+		 * 
+		 * @param operand
+		 *            the result of the operand.
+		 * @return the result.
+		 */
+		public T visitNot(T operand);
+	}
+
+	/**
+	 * Condition on a field.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Condition extends Query {
+
+		private static final long serialVersionUID = -1954321076457826118L;
+
+		private final Operator operator;
+		private final int fieldNo;
+		private final String value; // or lower bound
+		private final String max;
+
+		Condition(Operator operator, int fieldNo, String value, String max) {
+			if (fieldNo < 0) {
+				throw new IllegalArgumentException(
+						"fieldNo must be not negative");
+			}
+			this.operator = operator;
+			this.fieldNo = fieldNo;
+			this.value = value;
+			this.max = max;
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			switch (this.operator) {
+			case EQUAL_TO:
+				return visitor.visitEqualTo(this.fieldNo, this.value);
+			case STARTS_WITH:
+				return visitor.visitStartsWith(this.fieldNo, this.value);
+			default:
+				return visitor.visitBetween(this.fieldNo, this.value, this.max);
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new Object[] { this.operator,
+					Integer.valueOf(this.fieldNo), this.value, this.max });
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Condition)) {
+				return false;
+			}
+			Condition other = (Condition) obj;
+			return this.operator == other.operator
+					&& this.fieldNo == other.fieldNo
+					&& equal(this.value, other.value)
+					&& equal(this.max, other.max);
+		}
+
+		@Override
+		public String toString() {
+			switch (this.operator) {
+			case EQUAL_TO:
+				return "#" + this.fieldNo + " = " + quote(this.value);
+			case STARTS_WITH:
+				return "#" + this.fieldNo + " ^= " + quote(this.value);
+			default:
+				return "#" + this.fieldNo + " in [" + quote(this.value) + ", "
+						+ quote(this.max) + "]";
+			}
+		}
+
+		private static boolean equal(String s1, String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+
+		private static String quote(String value) {
+			return value == null ? "*" : "\"" + value + "\"";
+		}
+	}
+
+	/**
+	 * Combination of queries.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Composite extends Query {
+
+		private static final long serialVersionUID = 4457936301879451670L;
+
+		private final Operator operator;
+		private final Query[] operands;
+
+		Composite(Operator operator, Query... operands) {
+			if (operands == null) {
+				throw new IllegalArgumentException("queries must be not null");
+			}
+			for (Query operand : operands) {
+				if (operand == null) {
+					throw new IllegalArgumentException(
+							"queries must be not null");
+				}
+			}
+			this.operator = operator;
+			this.operands = operands.clone();
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			List<T> results = new ArrayList<T>(this.operands.length);
+			for (Query operand : this.operands) {
+				results.add(operand.accept(visitor));
+			}
+			switch (this.operator) {
+			case AND:
+				return visitor.visitAnd(results);
+			case OR:
+				return visitor.visitOr(results);
+			default:
+				return visitor.visitNot(results.get(0));
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(this.operands) * 31
+					+ this.operator.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Composite)) {
+				return false;
+			}
+			Composite other = (Composite) obj;
+			return this.operator == other.operator
+					&& Arrays.equals(this.operands, other.operands);
+		}
+
+		@Override
+		public String toString() {
+			if (this.operator == Operator.NOT) {
+				return "NOT " + toString(this.operands[0]);
+			}
+			if (this.operands.length == 0) {
+				return this.operator == Operator.AND ? "TRUE" : "FALSE";
+			}
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < this.operands.length; i++) {
+				if (i > 0) {
+					sb.append(" ").append(this.operator).append(" ");
+				}
+				sb.append(toString(this.operands[i]));
+			}
+			return sb.toString();
+		}
+
+		/*
+		 * Operands that are combinations go between parenthesis
+		 */
+		private static String toString(Query operand) {
+			return operand instanceof Composite ? "(" + operand + ")"
+					: operand.toString();
+		}
+	}
+}
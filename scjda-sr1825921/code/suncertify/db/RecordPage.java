@@ -0,0 +1,118 @@
+/*
+ * RecordPage.java 03/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle 
+ * Corporation.
+ */
+
+
+package suncertify.db;
+
+import java.io.Serializable;
+
+
+/**
+ * Page of the records matching a query, returned by
+ * {@link DBAccess#findPage(Query, long, int)}. Holds the record values, so
+ * they do not have to be read one by one.
+ * <p>
+ * Pages are ordered by record number. The next page is requested with the
+ * {@link #getResumeToken() resume token} of the current one: the last
+ * record number examined. No state is kept by the server between pages, so
+ * records created, updated or deleted meanwhile are seen by the following
+ * pages if they are after the token.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 03/12/2010
+ */
+public final class RecordPage implements Serializable {
+
+	private static final long serialVersionUID = -5820419735530297281L;
+
+	/**
+	 * Resume token requesting the first page.
+	 */
+	public static final long FIRST = -1;
+
+	private final long[] recordNumbers;
+	private final String[][] records;
+	private final long resumeToken;
+	private final boolean more;
+
+	/**
+	 * Creates a new page.
+	 * 
+	 * @param recordNumbers
+	 *            the record numbers.
+	 * @param records
+	 *            the record values, in the same order.
+	 * @param resumeToken
+	 *            the last record number examined.
+	 * @param more
+	 *            <code>true</code> if there are more matching records.
+	 */
+	RecordPage(long[] recordNumbers, String[][] records, long resumeToken,
+			boolean more) {
+		this.recordNumbers = recordNumbers;
+		this.records = records;
+		this.resumeToken = resumeToken;
+		this.more = more;
+	}
+
+	/**
+	 * Returns the number of records of this page.
+	 * 
+	 * @return the number of records.
+	 */
+	public int size() {
+		return this.recordNumbers.length;
+	}
+
+	/**
+	 * Returns the number of a record of this page.
+	 * 
+	 * @param index
+	 *            the record index in the page.
+	 * @return the record number.
+	 */
+	public long getRecordNumber(int index) {
+		return this.recordNumbers[index];
+	}
+
+	/**
+	 * Returns the values of a record of this page.
+	 * 
+	 * @param index
+	 *            the record index in the page.
+	 * @return the record values.
+	 */
+	public String[] getRecord(int index) {
+		return this.records[index].clone();
+	}
+
+	/**
+	 * Returns the token requesting the page following this one.
+	 * 
+	 * @return the last record number examined.
+	 */
+	public long getResumeToken() {
+		return this.resumeToken;
+	}
+
+	/**
+	 * Tells if there are matching records after this page.
+	 * 
+	 * @return <code>true</code> if there are more records.
+	 */
+	public boolean hasMore() {
+		return this.more;
+	}
+}
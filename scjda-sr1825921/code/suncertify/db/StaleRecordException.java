@@ -0,0 +1,57 @@
+/*
+ * StaleRecordException.java 04/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle 
+ * Corporation.
+ */
+
+
+package suncertify.db;
+
+
+/**
+ * The Exception thrown when a conditional update finds the record in a state
+ * other than the expected one (see 
+ * {@link DBAccess#updateRecordIfMatches(long, String[], String[])}). Carries 
+ * the current values of the record, so the caller does not need to read it 
+ * again.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 04/12/2010
+ *
+ */
+public class StaleRecordException extends Exception{
+	
+	static final long serialVersionUID = 5148860542193547316L;
+	
+	private final String[] currentRecord;
+	
+	/**
+	 * Constructs a new <code>StaleRecordException</code> with the specified message.
+	 * 
+	 * @param message the message String.
+	 * @param currentRecord the current values of the record.
+	 */
+	public StaleRecordException(String message, String[] currentRecord){
+		super(message);
+		this.currentRecord = currentRecord.clone();
+	}
+	
+	/**
+	 * Returns the values of the record when the update was rejected.
+	 * 
+	 * @return a copy of the record values.
+	 */
+	public String[] getCurrentRecord(){
+		return this.currentRecord.clone();
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * VersionedRecord.java 08/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db;
+
+import java.io.Serializable;
+
+
+/**
+ * The values of a record together with its version, returned by
+ * {@link DBAccess#readVersionedRecord(long)}. The version changes with every
+ * modification of the record, and is used to modify it only if nobody else
+ * has done it since it was read (see
+ * {@link DBAccess#updateRecordIfVersion(long, String[], long)}).
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 08/12/2010
+ */
+public final class VersionedRecord implements Serializable {
+
+	private static final long serialVersionUID = 2976251309425818146L;
+
+	private final String[] values;
+	private final long version;
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param values
+	 *            the record values.
+	 * @param version
+	 *            the version of the record.
+	 */
+	public VersionedRecord(String[] values, long version) {
+		this.values = values;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the record values.
+	 * 
+	 * @return an array where each element is a record value.
+	 */
+	public String[] getValues() {
+		return this.values;
+	}
+
+	/**
+	 * Returns the version of the record.
+	 * 
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+}
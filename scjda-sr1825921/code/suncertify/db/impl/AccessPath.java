@@ -0,0 +1,57 @@
+/*
+ * AccessPath.java 01/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+
+/**
+ * Index able to find the records whose field value starts with a prefix,
+ * with the semantics of {@link DefaultFinderImp#findByCriteria(String[])}.
+ * Used by {@link PlannerFinderImp} to choose how to answer a search.
+ * <p>
+ * Implementations must be thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 01/12/2010
+ */
+interface AccessPath {
+
+	/**
+	 * Returns the indexed field.
+	 * 
+	 * @return the field index.
+	 */
+	int getFieldNo();
+
+	/**
+	 * Returns the number of records a lookup would return, without building
+	 * the result.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return the number of records.
+	 */
+	long estimateRows(String prefix);
+
+	/**
+	 * Returns the records whose value starts with the specified prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return a new bitmap of record numbers.
+	 */
+	CompressedBitmap lookup(String prefix);
+}
@@ -0,0 +1,170 @@
+/*
+ * AllocationMap.java 04/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.BitSet;
+
+
+/**
+ * In-memory image of the record slots of a data file: number of slots, a
+ * bitmap with the live (not deleted) ones and a stack of the free (deleted)
+ * ones, so slot allocation and live records enumeration do not need to access
+ * the file.<br>
+ * Record numbers are limited to the <code>int</code> range.
+ * <p>
+ * Instances of this class are not thread-safe. The owner must guard them with
+ * the same lock used to access the file.
+ * </p>
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 04/11/2010
+ */
+final class AllocationMap {
+
+	private static final int INITIAL_FREE_CAPACITY = 16;
+
+	private final BitSet live = new BitSet();
+	private long[] freeSlots = new long[INITIAL_FREE_CAPACITY];
+	private int freeCount;
+	private long size;
+	private int liveCount;
+
+	/**
+	 * Returns the number of record slots, live or deleted.
+	 * 
+	 * @return the number of slots.
+	 */
+	long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of live records.
+	 * 
+	 * @return the number of live records.
+	 */
+	int getLiveCount() {
+		return this.liveCount;
+	}
+
+	/**
+	 * Tests if the specified slot holds a live record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @return <code>true</code> if the record exists and is not deleted.
+	 */
+	boolean isLive(long recNo) {
+		return recNo >= 0 && recNo < this.size && this.live.get((int) recNo);
+	}
+
+	/**
+	 * Adds a new slot at the end.
+	 * 
+	 * @param isLive
+	 *            the state of the new slot.
+	 * @return the number of the new slot.
+	 */
+	long append(boolean isLive) {
+		if (this.size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Maximum number of records reached");
+		}
+		long recNo = this.size++;
+		if (isLive) {
+			this.live.set((int) recNo);
+			this.liveCount++;
+		} else {
+			pushFreeSlot(recNo);
+		}
+		return recNo;
+	}
+
+	/**
+	 * Removes the last slot. Used to undo a failed {@link #append(boolean)}.
+	 */
+	void removeLast() {
+		long recNo = this.size - 1;
+		if (this.live.get((int) recNo)) {
+			this.live.clear((int) recNo);
+			this.liveCount--;
+		} else if (this.freeCount > 0
+				&& this.freeSlots[this.freeCount - 1] == recNo) {
+			this.freeCount--;
+		}
+		this.size--;
+	}
+
+	/**
+	 * Takes a free slot, marking it as live.
+	 * 
+	 * @return the record number of the slot, or <code>-1</code> if there is
+	 *         no free slot.
+	 */
+	long allocate() {
+		if (this.freeCount == 0) {
+			return -1;
+		}
+		long recNo = this.freeSlots[--this.freeCount];
+		this.live.set((int) recNo);
+		this.liveCount++;
+		return recNo;
+	}
+
+	/**
+	 * Marks the specified live slot as deleted, making it available for reuse.
+	 * Also used to give back a slot taken by {@link #allocate()} that could
+	 * not be used.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 */
+	void release(long recNo) {
+		if (this.live.get((int) recNo)) {
+			this.live.clear((int) recNo);
+			this.liveCount--;
+			pushFreeSlot(recNo);
+		}
+	}
+
+	/**
+	 * Returns the live record numbers in ascending order.
+	 * 
+	 * @return an array of record numbers.
+	 */
+	long[] getLiveRecords() {
+		long[] ret = new long[this.liveCount];
+		int i = 0;
+		for (int recNo = this.live.nextSetBit(0); recNo >= 0; recNo = this.live
+				.nextSetBit(recNo + 1)) {
+			ret[i++] = recNo;
+		}
+		return ret;
+	}
+
+	/*
+	 * Pushes a slot on the free stack
+	 */
+	private void pushFreeSlot(long recNo) {
+		if (this.freeCount == this.freeSlots.length) {
+			long[] newFreeSlots = new long[this.freeSlots.length * 2];
+			System.arraycopy(this.freeSlots, 0, newFreeSlots, 0,
+					this.freeCount);
+			this.freeSlots = newFreeSlots;
+		}
+		this.freeSlots[this.freeCount++] = recNo;
+	}
+}
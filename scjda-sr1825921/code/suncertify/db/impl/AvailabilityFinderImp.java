@@ -0,0 +1,326 @@
+/*
+ * AvailabilityFinderImp.java 05/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation keeping the set of <i>available</i>
+ * records, those whose value of a given field (the customer holding the
+ * booking) is empty.
+ * <p>
+ * The set is built at creation time with a scan of the records, and kept up
+ * to date listening to the changes of the data access object (see
+ * {@link DataAccessListener}), so instances must be created before the
+ * database starts to be modified.
+ * <p>
+ * Queries requiring the field to be empty (an {@link Query#equalTo(int, String)}
+ * condition with an empty value, alone or in a {@link Query#and(Query...)}
+ * expression) only read the available records, verifying the whole query on
+ * them. The rest of searches are delegated to a fallback finder.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 05/12/2010
+ */
+public final class AvailabilityFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final FinderObject<Long, String[]> fallback;
+	private final int fieldNo;
+	private final CompressedBitmap available = new CompressedBitmap();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new instance, building the set of available records.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param fallback
+	 *            the finder used in searches that can not use the set.
+	 * @param fieldNo
+	 *            the field whose empty value makes a record available.
+	 * @throws IllegalArgumentException
+	 *             if dao or fallback are <code>null</code>, or fieldNo is
+	 *             negative.
+	 */
+	@SuppressWarnings("boxing")
+	public AvailabilityFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> fallback, int fieldNo) {
+
+		if (dao == null || fallback == null) {
+			throw new IllegalArgumentException(
+					"dao and fallback must be not null");
+		}
+		if (fieldNo < 0) {
+			throw new IllegalArgumentException("Invalid field " + fieldNo);
+		}
+		this.dao = dao;
+		this.fallback = fallback;
+		this.fieldNo = fieldNo;
+
+		/*
+		 * Build the set
+		 */
+		this.lock.writeLock().lock();
+		try {
+			this.dao.addDataAccessListener(new IndexUpdater());
+			RecordCursor<Long, String[]> cursor = this.dao.scan();
+			try {
+				while (cursor.next()) {
+					if (isAvailable(cursor.getRecord())) {
+						this.available.add(cursor.getPrimaryKey());
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		this.logger.log(Level.INFO, "Availability index built for field "
+				+ fieldNo + ", " + this.available.getCardinality()
+				+ " records available");
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria.
+	 * Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+		return this.fallback.findByCriteria(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria. Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+		return this.fallback.findByAnyCriteria(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds. Delegated to the fallback finder.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		return this.fallback.findByRange(min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria. Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		return this.fallback.findBySubstring(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query, with
+	 * the semantics of {@link DefaultFinderImp#findByQuery(Query)}. If the
+	 * query requires the record to be available, the available records are
+	 * read in a single batch (see
+	 * {@link DataAccessObject#findByPrimaryKeys(Object[])}) and verified.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+
+		if (query == null
+				|| !query.accept(new AvailabilityTest()).booleanValue()) {
+			return this.fallback.findByQuery(query);
+		}
+
+		Long[] candidates;
+		this.lock.readLock().lock();
+		try {
+			candidates = this.available.toArray();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		/*
+		 * Verify the candidates. Records changed meanwhile are verified with
+		 * their current values
+		 */
+		RecordFilter matcher = CompiledQuery.compile(query);
+		String[][] records = this.dao.findByPrimaryKeys(candidates);
+		List<Long> ret = new ArrayList<Long>();
+		for (int i = 0; i < candidates.length; i++) {
+			if (records[i] != null && matcher.matches(records[i])) {
+				ret.add(candidates[i]);
+			}
+		}
+		return ret.toArray(new Long[ret.size()]);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.fallback.findByQuery(query, after, limit);
+	}
+
+	/**
+	 * Returns the number of available records.
+	 * 
+	 * @return the number of records whose field is empty.
+	 */
+	public int getAvailableCount() {
+		this.lock.readLock().lock();
+		try {
+			return this.available.getCardinality();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private boolean isAvailable(String[] record) {
+		return this.fieldNo < record.length
+				&& record[this.fieldNo].length() == 0;
+	}
+
+	/**
+	 * Tells if a query only matches available records.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class AvailabilityTest implements Query.Visitor<Boolean> {
+
+		public Boolean visitEqualTo(int field, String value) {
+			return Boolean.valueOf(field == AvailabilityFinderImp.this.fieldNo
+					&& value.length() == 0);
+		}
+
+		public Boolean visitStartsWith(int field, String prefix) {
+			return Boolean.FALSE;
+		}
+
+		public Boolean visitBetween(int field, String min, String max) {
+			return Boolean.FALSE;
+		}
+
+		public Boolean visitAnd(List<Boolean> operands) {
+			return Boolean.valueOf(operands.contains(Boolean.TRUE));
+		}
+
+		public Boolean visitOr(List<Boolean> operands) {
+			return Boolean.valueOf(!operands.isEmpty()
+					&& !operands.contains(Boolean.FALSE));
+		}
+
+		public Boolean visitNot(Boolean operand) {
+			return Boolean.FALSE;
+		}
+	}
+
+	/**
+	 * Keeps the set up to date.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexUpdater implements
+			DataAccessListener<Long, String[]> {
+
+		@SuppressWarnings("boxing")
+		public void recordInserted(Long pk, String[] record) {
+			if (!isAvailable(record)) {
+				return;
+			}
+			AvailabilityFinderImp.this.lock.writeLock().lock();
+			try {
+				AvailabilityFinderImp.this.available.add(pk);
+			} finally {
+				AvailabilityFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			boolean wasAvailable = isAvailable(oldRecord);
+			boolean available = isAvailable(newRecord);
+			if (wasAvailable == available) {
+				return;
+			}
+			AvailabilityFinderImp.this.lock.writeLock().lock();
+			try {
+				if (available) {
+					AvailabilityFinderImp.this.available.add(pk);
+				} else {
+					AvailabilityFinderImp.this.available.remove(pk);
+				}
+			} finally {
+				AvailabilityFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			AvailabilityFinderImp.this.lock.writeLock().lock();
+			try {
+				AvailabilityFinderImp.this.available.remove(pk);
+			} finally {
+				AvailabilityFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+	}
+}
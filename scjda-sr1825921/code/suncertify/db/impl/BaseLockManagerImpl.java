@@ -15,7 +15,17 @@
 
 package suncertify.db.impl;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -32,6 +42,12 @@ import suncertify.db.spec.LockManager;
  * instances (this {@link Lock} implementation can be changed overriding
  * <code>protected Lock createNewLock()</code> method).
  * <p>
+ * The map is a {@link ConcurrentHashMap} striped by the number of processors,
+ * and the elements in it are referenced and released with atomic operations on
+ * a reference counter, so threads locking different keys never wait for each
+ * other. Elements no longer referenced are removed from the map and kept in a
+ * bounded pool to be reused by later keys.
+ * <p>
  * When a call to <code>lock(key)</code> is performed two things may happen:
  * <ol>
  * <li>If the map does not hold a Lock for that key, a new Lock is created, and
@@ -43,9 +59,27 @@ import suncertify.db.spec.LockManager;
  * condition is passed a cookie is generated, binded to lock and returned to the
  * client. This cookie must be used in order to perform the release of the lock
  * (see {@link #unlock(Object, Object) unlock(K lockKey, C cookie)}) <br>
+ * A call to <code>tryLock(key, timeout, unit)</code> does the same, but awaits
+ * the condition up to the specified time, returning <code>null</code> if the
+ * lock is still owned (<code>tryLock(key)</code> does not wait at all).<br>
+ * A call to <code>lockAll(keys)</code> locks each key in their natural
+ * ordering, releasing the locks already acquired if one fails.<br>
  * A call to <code>unlock()</code> validates the key-cookie pair, finds the lock
  * by the specified key, enters the lock, and signals the condition, resuming
  * the next waiting thread.<br>
+ * A call to <code>unlockAll(keys, cookies)</code> enters the locks of every
+ * key in their natural ordering, and only if all the key-cookie pairs are
+ * valid releases them.<br>
+ * <br>
+ * Locks can be granted for a limited lease time, given at construction. A
+ * lock whose lease expires is released as if its owner had unlocked it, so its
+ * cookie is no longer valid, and the next waiting thread is resumed. The owner
+ * can extend the lease calling {@link #renew(Object, Object) renew(K lockKey,
+ * C cookie)}. Leases expire in a {@link TimerWheel}, where scheduling and
+ * cancelling them takes constant time. While the owner holds the lock pinned
+ * (see {@link #pin(Object, Object) pin(K lockKey, C cookie)}) an expired lease
+ * is only marked, and the lock is released by the last
+ * {@link #unpin(Object, Object) unpin(K lockKey, C cookie)}.<br>
  * <br>
  * Concrete subclasses must implement the method <code>C createCookie()</code>
  * in order to specify how cookies are created.
@@ -61,15 +95,55 @@ import suncertify.db.spec.LockManager;
 public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 		LockManager<K, C> {
 
-	private final Map<K, LockingElement<C>> lockMap = new HashMap<K, LockingElement<C>>();
+	// Maximum number of unused locking elements kept for reuse
+	private static final int MAX_POOL_SIZE = 1024;
+
+	// Lease timer wheel settings
+	private static final int WHEEL_SIZE = 512;
+	private static final int TICKS_PER_LEASE = 64;
+	private static final long MIN_TICK_MILLIS = 10;
+
+	private final ConcurrentMap<K, LockingElement<C>> lockMap = new ConcurrentHashMap<K, LockingElement<C>>(
+			16, 0.75f, 4 * Runtime.getRuntime().availableProcessors());
+	private final Queue<LockingElement<C>> pool = new ConcurrentLinkedQueue<LockingElement<C>>();
+	private final AtomicInteger poolSize = new AtomicInteger();
+	private final long leaseMillis;
+	private final TimerWheel wheel; // null if leases are disabled
+
+	/**
+	 * Creates a new instance whose locks are held until they are released.
+	 */
+	protected BaseLockManagerImpl() {
+		this(0);
+	}
+
+	/**
+	 * Creates a new instance whose locks expire after the specified lease
+	 * time, unless they are renewed.
+	 * 
+	 * @param leaseMillis
+	 *            the lease time in milliseconds. Zero or a negative value
+	 *            disables leases.
+	 */
+	protected BaseLockManagerImpl(long leaseMillis) {
+		if (leaseMillis > 0) {
+			this.leaseMillis = leaseMillis;
+			this.wheel = new TimerWheel(Math.max(MIN_TICK_MILLIS, leaseMillis
+					/ TICKS_PER_LEASE), WHEEL_SIZE);
+		} else {
+			this.leaseMillis = 0;
+			this.wheel = null;
+		}
+	}
 
 	@Override
 	/**
 	 * {@inheritDoc}
 	 */
 	public final boolean isValidCookie(K lockKey, C cookie) {
-		LockingElement<C> lockingElement = this.lockMap.get(lockKey);
-		if (lockingElement != null && lockingElement.getCookie().equals(cookie)) {
+		LockingElement<C> lockingElement = findLockingElement(lockKey);
+		if (lockingElement != null && cookie != null
+				&& cookie.equals(lockingElement.getCookie())) {
 			return true;
 		}
 		return false;
@@ -84,11 +158,10 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 				.fine("Entered lock method. (threadId="
 						+ Thread.currentThread().getId() + ", lockKey="
 						+ lockKey + ")");
-		LockingElement<C> lockingElement = getLockingElement(lockKey);
-		this.logger.finest("Incrementing reference counter. (thread"
+		LockingElement<C> lockingElement = referenceLockingElement(lockKey);
+		this.logger.finest("Incremented reference counter. (thread"
 				+ Thread.currentThread().getId() + ", lockKey=" + lockKey
 				+ ", counter=" + lockingElement.getReferenceCounter() + ")");
-		lockingElement.incrementReferenceCounter();
 		Lock l = lockingElement.getLock();
 		Condition condition = lockingElement.getCondition();
 		l.lock();
@@ -113,11 +186,12 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 							+ Thread.currentThread().getId() + ", lockKey="
 							+ lockKey + ", counter="
 							+ lockingElement.getReferenceCounter() + ")");
-					lockingElement.decrementReferenceCounter();
-					this.logger.finest("Decremented reference counter. (thread"
+					// Pass on a signal this thread may have consumed
+					condition.signal();
+					releaseLockingElement(lockingElement);
+					this.logger.finest("Released locking element. (thread"
 							+ Thread.currentThread().getId() + ", lockKey="
-							+ lockKey + ", counter="
-							+ lockingElement.getReferenceCounter() + ")");
+							+ lockKey + ")");
 					throw new RuntimeException(e);
 				}
 			}
@@ -126,7 +200,7 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 							+ Thread.currentThread().getId() + ", lockKey="
 							+ lockKey + ", counter="
 							+ lockingElement.getReferenceCounter() + ")");
-			lockingElement.setCookie(createCookie());
+			grant(lockKey, lockingElement);
 		} finally {
 			this.logger
 					.finest("Exiting lock synchronization block method. (threadId="
@@ -145,6 +219,90 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 		return cookie;
 	}
 
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final List<C> lockAll(List<? extends K> lockKeys) {
+
+		Integer[] order = getCanonicalOrder(lockKeys);
+		List<C> ret = new ArrayList<C>(Collections.<C> nCopies(order.length,
+				null));
+		int acquired = 0;
+		try {
+			for (; acquired < order.length; acquired++) {
+				int index = order[acquired].intValue();
+				ret.set(index, lock(lockKeys.get(index)));
+			}
+		} finally {
+			/*
+			 * Release the locks already acquired if one failed
+			 */
+			if (acquired < order.length) {
+				for (int i = acquired - 1; i >= 0; i--) {
+					int index = order[i].intValue();
+					try {
+						unlock(lockKeys.get(index), ret.get(index));
+					} catch (SecurityException e) {
+						// The lease expired meanwhile
+						this.logger.fine("Lock already released. (lockKey="
+								+ lockKeys.get(index) + ")");
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final C tryLock(K lockKey) {
+		return tryLock(lockKey, 0, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final C tryLock(K lockKey, long timeout, TimeUnit unit) {
+		LockingElement<C> lockingElement = referenceLockingElement(lockKey);
+		Lock l = lockingElement.getLock();
+		Condition condition = lockingElement.getCondition();
+		long nanos = unit.toNanos(timeout);
+		l.lock();
+		try {
+			while (lockingElement.getCookie() != null && nanos > 0) {
+				try {
+					nanos = condition.awaitNanos(nanos);
+				} catch (InterruptedException e) {
+					this.logger.info("Awaiting thread interrupted. (threadId="
+							+ Thread.currentThread().getId() + ", lockKey="
+							+ lockKey + ")");
+					// Pass on a signal this thread may have consumed
+					condition.signal();
+					releaseLockingElement(lockingElement);
+					throw new RuntimeException(e);
+				}
+			}
+			if (lockingElement.getCookie() == null) {
+				grant(lockKey, lockingElement);
+				this.logger.fine("Lock adquired. (threadId="
+						+ Thread.currentThread().getId() + ", lockKey="
+						+ lockKey + ")");
+				return lockingElement.getCookie();
+			}
+		} finally {
+			l.unlock();
+		}
+		this.logger.fine("Lock not adquired in time. (threadId="
+				+ Thread.currentThread().getId() + ", lockKey=" + lockKey
+				+ ")");
+		releaseLockingElement(lockingElement);
+		return null;
+	}
+
 	@Override
 	/**
 	 * {@inheritDoc}
@@ -155,14 +313,10 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 				.fine("Entering unlock method. (threadId="
 						+ Thread.currentThread().getId() + ", lockKey="
 						+ lockKey + ")");
-		if (!isValidCookie(lockKey, cookie)) {
-			String msg = "Illegal unlock. There is no lock with key = "
-					+ lockKey + " and cookie = " + cookie;
-			this.logger.warning(msg);
-			throw new SecurityException(msg);
+		LockingElement<C> lockingElement = findLockingElement(lockKey);
+		if (lockingElement == null || cookie == null) {
+			throw illegalCall("unlock", lockKey, cookie);
 		}
-
-		LockingElement<C> lockingElement = getLockingElement(lockKey);
 		Lock l = lockingElement.getLock();
 		Condition condition = lockingElement.getCondition();
 
@@ -173,14 +327,16 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 						+ lockKey + ", counter="
 						+ lockingElement.getReferenceCounter() + ")");
 		try {
+			/*
+			 * Validated while holding the lock, so that two threads can not
+			 * release the same lock
+			 */
+			if (!cookie.equals(lockingElement.getCookie())
+					|| !lockKey.equals(lockingElement.getKey())) {
+				throw illegalCall("unlock", lockKey, cookie);
+			}
 			lockingElement.setCookie(null);
-			this.logger
-					.finest("Decrementing reference counter. (thread"
-							+ Thread.currentThread().getId() + ", lockKey="
-							+ lockKey + ", counter="
-							+ lockingElement.getReferenceCounter() + ")");
-			lockingElement.decrementReferenceCounter();
-			tryLockingElementRemoval(lockKey);
+			cancelLease(lockingElement);
 			this.logger
 					.finest("Notify other thread. (threadId="
 							+ Thread.currentThread().getId() + ", lockKey="
@@ -195,41 +351,316 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 							+ lockingElement.getReferenceCounter() + ")");
 			l.unlock();
 		}
+		releaseLockingElement(lockingElement);
+	}
 
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final void unlockAll(List<? extends K> lockKeys,
+			List<? extends C> cookies) throws SecurityException {
+
+		if (lockKeys.size() != cookies.size()) {
+			throw new IllegalArgumentException(
+					"lockKeys and cookies sizes differ");
+		}
+		Integer[] order = getCanonicalOrder(lockKeys);
+		List<LockingElement<C>> lockingElements = new ArrayList<LockingElement<C>>(
+				order.length);
+		boolean released = false;
+		try {
+			/*
+			 * Enter every lock in canonical order, so concurrent calls can not
+			 * deadlock, validating the cookies while holding them
+			 */
+			for (int i = 0; i < order.length; i++) {
+				int index = order[i].intValue();
+				K lockKey = lockKeys.get(index);
+				C cookie = cookies.get(index);
+				LockingElement<C> lockingElement = findLockingElement(lockKey);
+				if (lockingElement == null || cookie == null) {
+					throw illegalCall("unlock", lockKey, cookie);
+				}
+				lockingElement.getLock().lock();
+				lockingElements.add(lockingElement);
+				if (!cookie.equals(lockingElement.getCookie())
+						|| !lockKey.equals(lockingElement.getKey())) {
+					throw illegalCall("unlock", lockKey, cookie);
+				}
+			}
+			for (LockingElement<C> lockingElement : lockingElements) {
+				lockingElement.setCookie(null);
+				cancelLease(lockingElement);
+				lockingElement.getCondition().signal();
+			}
+			released = true;
+		} finally {
+			for (LockingElement<C> lockingElement : lockingElements) {
+				lockingElement.getLock().unlock();
+			}
+		}
+		if (released) {
+			for (LockingElement<C> lockingElement : lockingElements) {
+				releaseLockingElement(lockingElement);
+			}
+		}
+	}
+
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final void renew(K lockKey, C cookie) throws SecurityException {
+
+		LockingElement<C> lockingElement = findLockingElement(lockKey);
+		if (lockingElement == null || cookie == null) {
+			throw illegalCall("lease renewal", lockKey, cookie);
+		}
+		Lock l = lockingElement.getLock();
+		l.lock();
+		try {
+			if (!cookie.equals(lockingElement.getCookie())
+					|| !lockKey.equals(lockingElement.getKey())) {
+				throw illegalCall("lease renewal", lockKey, cookie);
+			}
+			if (this.wheel != null) {
+				cancelLease(lockingElement);
+				lockingElement.setExpiryPending(false);
+				lockingElement.setLease(this.wheel.schedule(new LeaseExpiry(
+						lockKey, lockingElement, cookie), this.leaseMillis));
+			}
+		} finally {
+			l.unlock();
+		}
+	}
+
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final void pin(K lockKey, C cookie) throws SecurityException {
+
+		LockingElement<C> lockingElement = findLockingElement(lockKey);
+		if (lockingElement == null || cookie == null) {
+			throw illegalCall("pin", lockKey, cookie);
+		}
+		Lock l = lockingElement.getLock();
+		l.lock();
+		try {
+			if (!cookie.equals(lockingElement.getCookie())
+					|| !lockKey.equals(lockingElement.getKey())) {
+				throw illegalCall("pin", lockKey, cookie);
+			}
+			lockingElement.setPins(lockingElement.getPins() + 1);
+		} finally {
+			l.unlock();
+		}
+	}
+
+	@Override
+	/**
+	 * {@inheritDoc}
+	 */
+	public final void unpin(K lockKey, C cookie) {
+
+		LockingElement<C> lockingElement = findLockingElement(lockKey);
+		if (lockingElement == null || cookie == null) {
+			return;
+		}
+		boolean expired = false;
+		Lock l = lockingElement.getLock();
+		l.lock();
+		try {
+			if (!cookie.equals(lockingElement.getCookie())
+					|| !lockKey.equals(lockingElement.getKey())
+					|| lockingElement.getPins() == 0) {
+				return;
+			}
+			lockingElement.setPins(lockingElement.getPins() - 1);
+			if (lockingElement.getPins() == 0
+					&& lockingElement.isExpiryPending()) {
+				expire(lockingElement);
+				expired = true;
+			}
+		} finally {
+			l.unlock();
+		}
+		if (expired) {
+			this.logger.info("Lease expired while pinned. Lock released. "
+					+ "(lockKey=" + lockKey + ")");
+			releaseLockingElement(lockingElement);
+		}
+	}
+
+	/**
+	 * Returns the lease time of the locks.
+	 * 
+	 * @return the lease time in milliseconds, zero if leases are disabled.
+	 */
+	public final long getLeaseMillis() {
+		return this.leaseMillis;
+	}
+
+	/**
+	 * Stops the thread expiring the leases, if any. Locks granted afterwards
+	 * are held until they are released.
+	 */
+	public void shutdown() {
+		if (this.wheel != null) {
+			this.wheel.shutdown();
+		}
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		shutdown();
 	}
 
 	/*
-	 * Getter with lazy initialization
+	 * Returns the indexes of the keys sorted by the natural ordering of the
+	 * keys, rejecting duplicated keys
 	 */
-	private synchronized LockingElement<C> getLockingElement(K lockKey) {
-		LockingElement<C> lockingElement = this.lockMap.get(lockKey);
-		if (lockingElement == null) {
-			lockingElement = new LockingElement<C>();
-			lockingElement.setLock(createNewLock());
-			lockingElement
-					.setCondition(lockingElement.getLock().newCondition());
-			this.lockMap.put(lockKey, lockingElement);
+	private Integer[] getCanonicalOrder(final List<? extends K> lockKeys) {
+		Integer[] ret = new Integer[lockKeys.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = Integer.valueOf(i);
 		}
-		return lockingElement;
+		Arrays.sort(ret, new Comparator<Integer>() {
+			@SuppressWarnings("unchecked")
+			public int compare(Integer i1, Integer i2) {
+				return ((Comparable<Object>) lockKeys.get(i1.intValue()))
+						.compareTo(lockKeys.get(i2.intValue()));
+			}
+		});
+		for (int i = 1; i < ret.length; i++) {
+			if (lockKeys.get(ret[i].intValue()).equals(
+					lockKeys.get(ret[i - 1].intValue()))) {
+				throw new IllegalArgumentException("Duplicated lock key "
+						+ lockKeys.get(ret[i].intValue()));
+			}
+		}
+		return ret;
+	}
+
+	private SecurityException illegalCall(String operation, K lockKey,
+			C cookie) {
+		String msg = "Illegal " + operation + ". There is no lock with key = "
+				+ lockKey + " and cookie = " + cookie;
+		this.logger.warning(msg);
+		return new SecurityException(msg);
+	}
+
+	/*
+	 * Sets a new cookie and starts its lease. Must be called holding the lock
+	 * of the element
+	 */
+	private void grant(K lockKey, LockingElement<C> lockingElement) {
+		C cookie = createCookie();
+		lockingElement.setCookie(cookie);
+		lockingElement.setPins(0);
+		lockingElement.setExpiryPending(false);
+		if (this.wheel != null) {
+			lockingElement.setLease(this.wheel.schedule(new LeaseExpiry(lockKey,
+					lockingElement, cookie), this.leaseMillis));
+		}
+	}
+
+	/*
+	 * Must be called holding the lock of the element
+	 */
+	private void cancelLease(LockingElement<C> lockingElement) {
+		TimerWheel.Timeout lease = lockingElement.getLease();
+		if (lease != null) {
+			lease.cancel();
+			lockingElement.setLease(null);
+		}
+	}
+
+	/*
+	 * Releases the lock of an expired lease. Must be called holding the lock of
+	 * the element
+	 */
+	private void expire(LockingElement<C> lockingElement) {
+		lockingElement.setCookie(null);
+		lockingElement.setLease(null);
+		lockingElement.setExpiryPending(false);
+		lockingElement.getCondition().signal();
+	}
+
+	/*
+	 * Returns the element of the key, creating it if needed, and increments its
+	 * reference counter, so the element can not be removed before the caller
+	 * releases it
+	 */
+	private LockingElement<C> referenceLockingElement(K lockKey) {
+		while (true) {
+			LockingElement<C> lockingElement = this.lockMap.get(lockKey);
+			if (lockingElement == null) {
+				lockingElement = newLockingElement(lockKey);
+				LockingElement<C> current = this.lockMap.putIfAbsent(lockKey,
+						lockingElement);
+				if (current == null) {
+					return lockingElement;
+				}
+				releaseLockingElement(lockingElement);
+				lockingElement = current;
+			}
+			if (lockingElement.incrementReferenceCounter()) {
+				/*
+				 * The element may have been removed and reused meanwhile
+				 */
+				if (this.lockMap.get(lockKey) == lockingElement) {
+					return lockingElement;
+				}
+				releaseLockingElement(lockingElement);
+			}
+			Thread.yield();
+		}
+	}
+
+	private LockingElement<C> findLockingElement(K lockKey) {
+		return this.lockMap.get(lockKey);
 	}
 
 	/*
-	 * Removes the LockingElement from the internal map if it is not longer
-	 * needed
+	 * Decrements the reference counter of the element, removing it from the
+	 * internal map if it is not longer needed
 	 */
-	private synchronized void tryLockingElementRemoval(K lockKey) {
-		LockingElement<C> lockingElement = this.lockMap.get(lockKey);
-		if (lockingElement != null && lockingElement.getReferenceCounter() == 0) {
+	private void releaseLockingElement(LockingElement<C> lockingElement) {
+		if (lockingElement.decrementReferenceCounter()) {
 			this.logger
 					.fine("Removing unused locking element from cache. (thread"
 							+ Thread.currentThread().getId() + ", lockKey="
-							+ lockKey + ", counter="
-							+ lockingElement.getReferenceCounter() + ")");
-			this.lockMap.remove(lockKey);
-			System.gc();
+							+ lockingElement.getKey() + ")");
+			this.lockMap.remove(lockingElement.getKey(), lockingElement);
+			if (this.poolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+				lockingElement.setKey(null);
+				this.pool.offer(lockingElement);
+			} else {
+				this.poolSize.decrementAndGet();
+			}
 		}
 	}
 
+	/*
+	 * Returns an element of the pool, or a new one, referenced once
+	 */
+	private LockingElement<C> newLockingElement(K lockKey) {
+		LockingElement<C> lockingElement = this.pool.poll();
+		if (lockingElement != null) {
+			this.poolSize.decrementAndGet();
+		} else {
+			lockingElement = new LockingElement<C>();
+			lockingElement.setLock(createNewLock());
+			lockingElement
+					.setCondition(lockingElement.getLock().newCondition());
+		}
+		lockingElement.setKey(lockKey);
+		lockingElement.reset();
+		return lockingElement;
+	}
+
 	/*
 	 * Extension points
 	 */
@@ -241,8 +672,55 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 	}
 
 	/**
-	 * This class is used to bind together the cookie, the lock and the
-	 * condition. Also provides an internal counter to be managed by its
+	 * Releases a lock whose lease has expired, if it is still held with the
+	 * same cookie, or leaves it to the last unpin if the lock is pinned.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 * @version 1.0 06/12/2010
+	 */
+	private final class LeaseExpiry implements Runnable {
+
+		private final K lockKey;
+		private final LockingElement<C> lockingElement;
+		private final C cookie;
+
+		LeaseExpiry(K lockKey, LockingElement<C> lockingElement, C cookie) {
+			this.lockKey = lockKey;
+			this.lockingElement = lockingElement;
+			this.cookie = cookie;
+		}
+
+		public void run() {
+			boolean expired = false;
+			Lock l = this.lockingElement.getLock();
+			l.lock();
+			try {
+				if (this.cookie.equals(this.lockingElement.getCookie())
+						&& this.lockKey.equals(this.lockingElement.getKey())) {
+					if (this.lockingElement.getPins() > 0) {
+						// Released by the last unpin
+						this.lockingElement.setLease(null);
+						this.lockingElement.setExpiryPending(true);
+					} else {
+						expire(this.lockingElement);
+						expired = true;
+					}
+				}
+			} finally {
+				l.unlock();
+			}
+			if (expired) {
+				BaseLockManagerImpl.this.logger
+						.info("Lease expired. Lock released. (lockKey="
+								+ this.lockKey + ")");
+				releaseLockingElement(this.lockingElement);
+			}
+		}
+	}
+
+	/**
+	 * This class is used to bind together the key, the cookie, the lock and
+	 * the condition. Also provides an internal counter to be managed by its
 	 * clients.
 	 * 
 	 * @author Ignacio del Valle Alles
@@ -253,10 +731,24 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 	 */
 	final class LockingElement<T> {
 
-		private T cookie;
+		private volatile K key;
+		private volatile T cookie;
 		private Lock lock;
 		private Condition condition;
-		private long referenceCounter;
+		// Guarded by lock
+		private TimerWheel.Timeout lease;
+		private int pins;
+		private boolean expiryPending;
+		// Negative once the element is removed
+		private final AtomicInteger referenceCounter = new AtomicInteger(-1);
+
+		K getKey() {
+			return this.key;
+		}
+
+		void setKey(K key) {
+			this.key = key;
+		}
 
 		T getCookie() {
 			return this.cookie;
@@ -278,20 +770,67 @@ public abstract class BaseLockManagerImpl<K, C> extends LoggingObject implements
 			return this.condition;
 		}
 
+		TimerWheel.Timeout getLease() {
+			return this.lease;
+		}
+
+		void setLease(TimerWheel.Timeout lease) {
+			this.lease = lease;
+		}
+
 		void setCondition(Condition condition) {
 			this.condition = condition;
 		}
 
-		synchronized void incrementReferenceCounter() {
-			this.referenceCounter++;
+		int getPins() {
+			return this.pins;
+		}
+
+		void setPins(int pins) {
+			this.pins = pins;
+		}
+
+		boolean isExpiryPending() {
+			return this.expiryPending;
+		}
+
+		void setExpiryPending(boolean expiryPending) {
+			this.expiryPending = expiryPending;
+		}
+
+		/*
+		 * Sets the counter of an element not yet shared to one
+		 */
+		void reset() {
+			this.referenceCounter.set(1);
+		}
+
+		/*
+		 * Returns false if the element has been removed
+		 */
+		boolean incrementReferenceCounter() {
+			while (true) {
+				int count = this.referenceCounter.get();
+				if (count < 0) {
+					return false;
+				}
+				if (this.referenceCounter.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
 		}
 
-		synchronized void decrementReferenceCounter() {
-			this.referenceCounter--;
+		/*
+		 * Returns true if the caller released the last reference and must
+		 * remove the element
+		 */
+		boolean decrementReferenceCounter() {
+			return this.referenceCounter.decrementAndGet() == 0
+					&& this.referenceCounter.compareAndSet(0, -1);
 		}
 
-		long getReferenceCounter() {
-			return this.referenceCounter;
+		int getReferenceCounter() {
+			return this.referenceCounter.get();
 		}
 	}
-}
\ No newline at end of file
+}
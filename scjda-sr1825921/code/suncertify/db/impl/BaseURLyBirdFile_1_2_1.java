@@ -0,0 +1,1673 @@
+/*
+ * BaseURLyBirdFile_1_2_1.java 02/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import suncertify.db.*;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.RecordCursor;
+import suncertify.db.spec.RecordView;
+import suncertify.db.spec.Versioned;
+import suncertify.commons.LoggingObject;
+
+
+/**
+ * Abstract implementation of {@link suncertify.db.spec.DataAccessObject}
+ * interface for accessing URLBird 1.2.1 binary database files. <br>
+ * Instances of this class are thread-safe, and so can be used by several
+ * threads concurrently. Reads are performed under the read lock of a
+ * {@link ReadWriteLock}, so they run in parallel; writes take the write lock.
+ * <p>
+ * Only database files with magic cookie equal to
+ * {@link #SUPPORTED_MAGIC_COOKIE} are supported, having the following format:<br>
+ * <blockquote>
+ * 
+ * <pre>
+ * &lt;i&gt;
+ * &lt;b&gt;Header section:&lt;/b&gt;
+ * 4 byte numeric, magic cookie value. Identifies this as a data file
+ * 4 byte numeric, total overall length in bytes of each record
+ * 2 byte numeric, number of fields in each record
+ * 
+ * &lt;b&gt;Schema section:&lt;/b&gt;
+ * Repeated for each field in a record:
+ * 2 byte numeric, length in bytes of field name
+ * n bytes (defined by previous entry), field name
+ * 2 byte numeric, field length in bytes
+ * end of repeating block
+ * 
+ * &lt;b&gt;Data section:&lt;/b&gt;
+ * Repeat to end of file:
+ * 1 byte &quot;deleted&quot; flag. 0 implies valid record, 1 implies deleted
+ * record
+ * Record containing fields in order specified in schema section, no
+ * separators between fields, each field fixed length at maximum specified
+ * in schema information
+ * 
+ * End of file
+ * 
+ * All numeric values are stored in the header information use the formats
+ * of the DataInputStream and DataOutputStream classes. All text values,
+ * and all fields (which are text only), contain only 8 bit characters,
+ * null terminated if less than the maximum length for the field. The
+ * character encoding is 8 bit US ASCII.
+ * &lt;/i&gt;
+ * </pre>
+ * 
+ * </blockquote>
+ * <p>
+ * Record deletion is performed logically (tagging the record as deleted).<br>
+ * Deleted records are reused in record creation.
+ * <p>
+ * The deleted flags are read once at creation time into an in-memory
+ * {@link AllocationMap}, kept up to date by the write methods, so reusing a
+ * deleted record, counting records and enumerating the live ones do not
+ * access the file.
+ * <p>
+ * Records are encoded and decoded by a {@link RecordCodec} built from the
+ * schema section, working on per thread buffers. Callers only needing to test
+ * field values can use {@link #findViewByPrimaryKey(Long)}, avoiding to decode
+ * every field.<br>
+ * Registered {@link DataAccessListener}s are notified holding the write lock,
+ * so they see the changes in the order they are performed.<br>
+ * {@link #scan()} reads the data section sequentially in chunks of
+ * {@link #SCAN_CHUNK_SIZE} bytes, each one under a single acquisition of the
+ * read lock.<br>
+ * Batch operations ({@link #findByPrimaryKeys(Long[])} and
+ * {@link #update(Long[], String[][])}) acquire the lock once and access the
+ * records in file order. Batch reads read nearby records with a single IO
+ * operation.
+ * <p>
+ * When writes are forced to the storage device is decided by the
+ * {@link DurabilityMode} set with
+ * {@link #setDurabilityMode(DurabilityMode, long)}. In
+ * {@link DurabilityMode#GROUP_COMMIT} mode writers wait for the force once
+ * the write lock has been released, so concurrent writes share it (see
+ * {@link GroupCommitter}).
+ * <p>
+ * If a {@link WriteAheadLog} is enabled with
+ * {@link #enableWriteAheadLog(long)}, writes only log the changed bytes of
+ * the record, and keep the new record in memory. Changed records are written
+ * back to the data file, in file order, by checkpoints performed when the log
+ * reaches a given size (or {@link #checkpoint()} is called), so the data file
+ * is never left with a torn record. A log left by a previous execution is
+ * always replayed at creation time.
+ * <p>
+ * Every change of a record gives it a new version, returned by
+ * {@link #findVersionedByPrimaryKey(Long)} and checked by
+ * {@link #updateIfVersion(Long, String[], long)}. The versions are kept in a
+ * {@link VersionMap}, created by the first of these calls, which reserves
+ * blocks of versions in a file named as the database file plus
+ * <code>.ver</code>. Instances never asked for a version do not create it.
+ * <p>
+ * This class reads the header and schema sections and implements the record
+ * format. Concrete subclasses decide how the data section bytes are accessed,
+ * implementing the following methods. Reading methods can be invoked by
+ * several threads at a time, so they must not rely on shared state like a
+ * file pointer:
+ * <blockquote>
+ * <ul>
+ * <li><code>protected void readRecordBytes(long recNo, byte[] buffer)</code></li>
+ * <li><code>protected void readRecordsBytes(long firstRecNo, int count, byte[] buffer)</code></li>
+ * <li><code>protected void writeRecordBytes(long recNo, byte[] buffer)</code></li>
+ * <li><code>protected long getFileLength()</code></li>
+ * <li><code>protected void setFileLength(long length)</code></li>
+ * <li><code>protected void force()</code></li>
+ * <li><code>protected void close()</code></li>
+ * </ul>
+ * </blockquote>
+ * 
+ * @author Ignacio del Valle Alles.
+ * @version 1.0 02/11/2010
+ * @see suncertify.db.spec.DataAccessObject
+ */
+public abstract class BaseURLyBirdFile_1_2_1 extends LoggingObject implements
+		DataAccessObject<Long, String[]> {
+
+	/**
+	 * Supported maginc cookie.
+	 */
+	public static final int SUPPORTED_MAGIC_COOKIE = 257;
+
+	/**
+	 * Approximate size in bytes of the reads performed by {@link #scan()}.
+	 */
+	public static final int SCAN_CHUNK_SIZE = 1024 * 1024;
+
+	/*
+	 * Private constants
+	 */
+	private static final String DB_CHARSET = "US-ASCII";
+
+	// Buffer size used to read the deleted flags at creation time
+	private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+	/*
+	 * Maximum number of unrequested records between two records read with a
+	 * single IO operation by findByPrimaryKeys
+	 */
+	private static final int COALESCE_GAP = 8;
+
+	/*
+	 * Instance fields section
+	 */
+	private final File file; // wrapped file
+	private long startOfSchemaSection; // file position, byte number
+	private long startOfDataSection; // file position, byte number
+	private URLyBirdFileHeader header; // header section
+	private DataSchema schema; // information about fields
+	private RecordCodec codec; // record format
+	// live/deleted state of the record slots
+	private final AllocationMap allocationMap = new AllocationMap();
+	// versions of the record slots, created on demand, changed with the
+	// write lock
+	private volatile VersionMap versionMap;
+	// read lock for record reads, write lock for changes
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// tracks the writes forced to the storage device
+	private final GroupCommitter committer = new GroupCommitter() {
+		@Override
+		void force() throws IOException {
+			WriteAheadLog log = BaseURLyBirdFile_1_2_1.this.wal;
+			if (log != null) {
+				log.force();
+			} else {
+				BaseURLyBirdFile_1_2_1.this.force();
+			}
+		}
+	};
+	private volatile DurabilityMode durabilityMode = DurabilityMode.OS_BUFFERED;
+	private volatile long durabilityMillis;
+	private Timer forceTimer; // periodic force, guarded by the instance monitor
+	/*
+	 * Write-ahead log, guarded by the lock (written with the write lock)
+	 */
+	private volatile WriteAheadLog wal;
+	private long checkpointBytes;
+	// Records changed since the last checkpoint
+	private final TreeMap<Long, byte[]> dirtyRecords = new TreeMap<Long, byte[]>();
+	private final List<DataAccessListener<Long, String[]>> listeners = new CopyOnWriteArrayList<DataAccessListener<Long, String[]>>();
+
+	/**
+	 * Creates a new instance associated with the specified database file,
+	 * reading its header and schema sections.
+	 * 
+	 * @param file
+	 *            the database file.
+	 * @throws IOException if an error occurs.
+	 * @throws NotSupportedDataBaseException if the file format is not supported.
+	 */
+	protected BaseURLyBirdFile_1_2_1(File file) throws IOException,
+			NotSupportedDataBaseException {
+
+		/*
+		 * Checks if the specified file exists.
+		 */
+		boolean existsFile = file.exists();
+		if (!existsFile) {
+			throw new FileNotFoundException("Could not find file: '"
+					+ file.getAbsolutePath() + "'");
+		}
+		this.file = file;
+
+		/*
+		 * Read the following file sections.
+		 */
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			readHeaderSection(raf);
+			readSchemaSection(raf);
+		} finally {
+			raf.close();
+		}
+		WriteAheadLog.replay(WriteAheadLog.getLogFile(file),
+				file, this.startOfDataSection, getRecordSize());
+		loadAllocationMap();
+	}
+
+	/**
+	 * Updates the recNo-th record of the data file.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @param data
+	 *            the record field values.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo does not belong to any record.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public void update(Long recNo, String[] data)
+			throws RecordNotFoundException {
+
+		long seq;
+		this.lock.writeLock().lock();
+		try {
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			seq = write(recNo, data);
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		commit(seq);
+
+	}
+
+	/**
+	 * Updates the recNo-th record of the data file only if its version is the
+	 * expected one. Versions are kept by a {@link VersionMap}.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @param data
+	 *            the record field values.
+	 * @param expectedVersion
+	 *            the version the record must have.
+	 * @return the new version of the record, or {@link #VERSION_MISMATCH} if
+	 *         it was not updated.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo does not belong to any record.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public long updateIfVersion(Long recNo, String[] data, long expectedVersion)
+			throws RecordNotFoundException {
+
+		long seq;
+		long version;
+		this.lock.writeLock().lock();
+		try {
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			VersionMap versions = getVersionMap();
+			if (versions.get(recNo) != expectedVersion) {
+				return VERSION_MISMATCH;
+			}
+			seq = write(recNo, data);
+			version = versions.get(recNo);
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		commit(seq);
+		return version;
+	}
+
+	/**
+	 * Updates the specified records of the data file, holding the write lock
+	 * once. Every record is verified and encoded before any is written, so a
+	 * missing record or an invalid value leaves all of them unchanged. Records
+	 * are written in file order, and in {@link DurabilityMode#GROUP_COMMIT}
+	 * mode the whole batch waits for a single force.
+	 * 
+	 * @param recNos
+	 *            the record id numbers.
+	 * @param data
+	 *            the record field values, in the order of recNos.
+	 * @throws RecordNotFoundException
+	 *             if any of the specified recNos does not belong to any
+	 *             record.
+	 * @throws IllegalArgumentException
+	 *             if recNos and data lengths differ.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public void update(Long[] recNos, String[][] data)
+			throws RecordNotFoundException {
+
+		if (recNos.length != data.length) {
+			throw new IllegalArgumentException(
+					"recNos and data lengths differ");
+		}
+		long seq;
+		this.lock.writeLock().lock();
+		try {
+			/*
+			 * Verify and encode everything first
+			 */
+			byte[][] buffers = new byte[recNos.length][];
+			long[] order = new long[recNos.length];
+			for (int i = 0; i < recNos.length; i++) {
+				// Throw RecordNotFoundException if record is deleted
+				verifyRecNotDeleted(recNos[i]);
+				buffers[i] = new byte[getRecordSize()];
+				this.codec.encode(false, data[i], buffers[i]);
+				order[i] = sortKey(recNos[i], i);
+			}
+
+			/*
+			 * Write in file order. A repeated record takes the last values
+			 */
+			Arrays.sort(order);
+			for (Long recNo : recNos) {
+				incrementVersion(recNo);
+			}
+			for (long key : order) {
+				long recNo = key >>> 32;
+				byte[] buffer = buffers[(int) key];
+				String[] oldRecord = readForListeners(recNo);
+				storeRecord(recNo, buffer);
+				if (oldRecord != null) {
+					fireRecordUpdated(recNo, oldRecord, this.codec
+							.decode(buffer));
+				}
+			}
+			seq = this.committer.written();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		commit(seq);
+	}
+
+	/**
+	 * Creates a new record in data file, possibly reusing a deleted entry.
+	 * 
+	 * @param data
+	 *            record field values.
+	 * @return the record id number.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public Long insert(String[] data) {
+
+		Long recNo;
+		long seq;
+		this.lock.writeLock().lock();
+		try {
+			/*
+			 * Encode the record first, so invalid values do not take a slot
+			 */
+			byte[] buffer = this.codec.getThreadBuffer();
+			this.codec.encode(false, data, buffer);
+
+			/*
+			 * Take a deleted record from the allocation map
+			 */
+			long freeRecNo = this.allocationMap.allocate();
+			if (freeRecNo >= 0) {
+				try {
+					storeRecord(freeRecNo, buffer);
+				} catch (IOException e) {
+					this.allocationMap.release(freeRecNo);
+					throw e;
+				}
+				recNo = freeRecNo;
+			} else {
+				/*
+				 * If no deleted record is found, append a new record to the
+				 * file
+				 */
+				recNo = appendRecord(buffer);
+			}
+			incrementVersion(recNo);
+			seq = this.committer.written();
+			if (!this.listeners.isEmpty()) {
+				fireRecordInserted(recNo, this.codec.decode(buffer));
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		commit(seq);
+		return recNo;
+
+	}
+
+	/**
+	 * Sets the recNo-th record to a <i>deleted</i> state. Makes it available
+	 * for reuse.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo is out of bounds.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public void delete(Long recNo) throws RecordNotFoundException {
+
+		long seq;
+		this.lock.writeLock().lock();
+		try {
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			// Update deleted flag
+			byte[] buffer = this.codec.getThreadBuffer();
+			loadRecord(recNo, buffer);
+			String[] oldRecord = this.listeners.isEmpty() ? null : this.codec
+					.decode(buffer);
+			buffer[0] = RecordCodec.DELETED_FLAG;
+			incrementVersion(recNo);
+			storeRecord(recNo, buffer);
+			this.allocationMap.release(recNo);
+			seq = this.committer.written();
+			if (oldRecord != null) {
+				fireRecordDeleted(recNo, oldRecord);
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		commit(seq);
+	}
+
+	/**
+	 * Returns the recNo-th record in the data file.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @return the record field values.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo is out of bounds.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public String[] findByPrimaryKey(Long recNo)
+			throws RecordNotFoundException {
+
+		this.lock.readLock().lock();
+		try {
+
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			byte[] buffer = this.codec.getThreadBuffer();
+			loadRecord(recNo, buffer);
+			return this.codec.decode(buffer);
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the recNo-th record in the data file together with its version,
+	 * both read holding the read lock.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @return the record field values and version.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo is out of bounds.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public Versioned<String[]> findVersionedByPrimaryKey(Long recNo)
+			throws RecordNotFoundException {
+
+		this.lock.readLock().lock();
+		try {
+
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			byte[] buffer = this.codec.getThreadBuffer();
+			loadRecord(recNo, buffer);
+			return new Versioned<String[]>(this.codec.decode(buffer),
+					getVersionMap().get(recNo));
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the specified records of the data file, holding the read lock
+	 * once. Records are read in file order, and records close to each other
+	 * are read with a single IO operation.
+	 * 
+	 * @param recNos
+	 *            the record id numbers.
+	 * @return the record field values, in the order of recNos, with
+	 *         <code>null</code> for the records out of bounds or deleted.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public String[][] findByPrimaryKeys(Long[] recNos) {
+
+		String[][] ret = new String[recNos.length][];
+		int recordSize = getRecordSize();
+		int maxRun = Math.max(1, SCAN_CHUNK_SIZE / recordSize);
+		byte[] record = new byte[recordSize];
+		byte[] chunk = null;
+		this.lock.readLock().lock();
+		try {
+			/*
+			 * Sort the existing records in file order
+			 */
+			long[] order = new long[recNos.length];
+			int count = 0;
+			for (int i = 0; i < recNos.length; i++) {
+				if (recNos[i] != null && this.allocationMap.isLive(recNos[i])) {
+					order[count++] = sortKey(recNos[i], i);
+				}
+			}
+			Arrays.sort(order, 0, count);
+
+			int i = 0;
+			while (i < count) {
+				/*
+				 * Find the run of records read at once
+				 */
+				long first = order[i] >>> 32;
+				int j = i + 1;
+				while (j < count) {
+					long recNo = order[j] >>> 32;
+					if (recNo - (order[j - 1] >>> 32) > COALESCE_GAP + 1
+							|| recNo - first >= maxRun) {
+						break;
+					}
+					j++;
+				}
+				int runLength = (int) ((order[j - 1] >>> 32) - first + 1);
+				if (chunk == null || chunk.length < runLength * recordSize) {
+					chunk = new byte[runLength * recordSize];
+				}
+				readRecordsBytes(first, runLength, chunk);
+
+				/*
+				 * Decode the requested ones, with the image pending of
+				 * checkpoint if any
+				 */
+				for (; i < j; i++) {
+					long recNo = order[i] >>> 32;
+					byte[] dirty = this.wal == null ? null : this.dirtyRecords
+							.get(recNo);
+					if (dirty != null) {
+						System.arraycopy(dirty, 0, record, 0, recordSize);
+					} else {
+						System.arraycopy(chunk, (int) (recNo - first)
+								* recordSize, record, 0, recordSize);
+					}
+					ret[(int) order[i]] = this.codec.decode(record);
+				}
+			}
+			return ret;
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a view of the recNo-th record in the data file, decoding its
+	 * field values only when requested.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @return a view over a private copy of the record bytes.
+	 * @throws RecordNotFoundException
+	 *             if the the specified recNo is out of bounds or deleted.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	@SuppressWarnings("boxing")
+	public RecordView findViewByPrimaryKey(Long recNo)
+			throws RecordNotFoundException {
+
+		this.lock.readLock().lock();
+		try {
+			// Throw RecordNotFoundException if record is deleted
+			verifyRecNotDeleted(recNo);
+
+			byte[] buffer = new byte[getRecordSize()];
+			loadRecord(recNo, buffer);
+			return new ByteRecordView(this.codec, buffer);
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns all the records in the file
+	 * 
+	 * @return an array of positions
+	 */
+	@SuppressWarnings("boxing")
+	public Long[] findAll() {
+		long[] liveRecords;
+		this.lock.readLock().lock();
+		try {
+			liveRecords = this.allocationMap.getLiveRecords();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		Long[] ret = new Long[liveRecords.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = liveRecords[i];
+		}
+		return ret;
+	}
+
+	/**
+	 * Sets when writes are forced to the storage device.
+	 * 
+	 * @param mode
+	 *            the durability mode.
+	 * @param millis
+	 *            the period between forces in
+	 *            {@link DurabilityMode#PERIODIC_FORCE} mode, or the time a
+	 *            group commit waits for more writes to join in
+	 *            {@link DurabilityMode#GROUP_COMMIT} mode.
+	 * @throws IllegalArgumentException
+	 *             if mode is <code>null</code>, or millis is not positive in
+	 *             {@link DurabilityMode#PERIODIC_FORCE} mode.
+	 */
+	public synchronized void setDurabilityMode(DurabilityMode mode, long millis) {
+
+		if (mode == null) {
+			throw new IllegalArgumentException("mode must be not null");
+		}
+		if (mode == DurabilityMode.PERIODIC_FORCE && millis <= 0) {
+			throw new IllegalArgumentException(
+					"millis must be positive in PERIODIC_FORCE mode");
+		}
+		if (this.forceTimer != null) {
+			this.forceTimer.cancel();
+			this.forceTimer = null;
+		}
+		this.durabilityMode = mode;
+		this.durabilityMillis = millis;
+		if (mode == DurabilityMode.PERIODIC_FORCE) {
+			this.forceTimer = new Timer("Force " + this.file.getName(), true);
+			this.forceTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						BaseURLyBirdFile_1_2_1.this.committer.forcePending();
+					} catch (IOException e) {
+						BaseURLyBirdFile_1_2_1.this.logger.log(Level.SEVERE,
+								"Periodic force failed", e);
+					}
+				}
+			}, millis, millis);
+		}
+		this.logger.log(Level.INFO, "Durability mode set to " + mode + " ("
+				+ millis + " ms)");
+	}
+
+	/**
+	 * Returns a cursor over the live records, in file order.
+	 * 
+	 * @return a new cursor.
+	 */
+	@SuppressWarnings("boxing")
+	public RecordCursor<Long, String[]> scan() {
+		return new ScanCursor(0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a cursor over the live records with record numbers in the
+	 * specified range, in file order.
+	 * 
+	 * @param from
+	 *            first record number, inclusive.
+	 * @param to
+	 *            last record number, exclusive.
+	 * @return a new cursor.
+	 */
+	@SuppressWarnings("boxing")
+	public RecordCursor<Long, String[]> scan(Long from, Long to) {
+		return new ScanCursor(Math.max(0, from), to);
+	}
+
+	/**
+	 * Returns the number of records (deleted or not) in the data file.
+	 * 
+	 * @return the number of records.
+	 */
+	public long getNumberOfRecords() {
+		this.lock.readLock().lock();
+		try {
+			return getSize();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Registers a listener to be notified of the record changes.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void addDataAccessListener(
+			DataAccessListener<Long, String[]> listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a listener.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void removeDataAccessListener(
+			DataAccessListener<Long, String[]> listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Enables the write-ahead log of this file, named as the database file
+	 * plus <code>.wal</code>. Does nothing if it is already enabled.
+	 * 
+	 * @param checkpointBytes
+	 *            log size that triggers a checkpoint.
+	 * @throws IllegalArgumentException
+	 *             if checkpointBytes is not positive.
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	public void enableWriteAheadLog(long checkpointBytes) {
+
+		if (checkpointBytes <= 0) {
+			throw new IllegalArgumentException(
+					"checkpointBytes must be positive");
+		}
+		this.lock.writeLock().lock();
+		try {
+			this.checkpointBytes = checkpointBytes;
+			if (this.wal == null) {
+				this.wal = new WriteAheadLog(WriteAheadLog
+						.getLogFile(this.file));
+				this.logger.log(Level.INFO, "Write-ahead log " + this.wal
+						+ " enabled, checkpoint every " + checkpointBytes
+						+ " bytes");
+			}
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes back to the data file the records changed since the last
+	 * checkpoint, and empties the write-ahead log. Does nothing if the log is
+	 * not enabled.
+	 * 
+	 * @throws RuntimeIOException
+	 *             if an IO error occurs.
+	 */
+	public void checkpoint() {
+		this.lock.writeLock().lock();
+		try {
+			doCheckpoint();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the current durability mode.
+	 * 
+	 * @return the durability mode.
+	 */
+	public DurabilityMode getDurabilityMode() {
+		return this.durabilityMode;
+	}
+
+	/**
+	 * Returns the database file.
+	 * 
+	 * @return the file specified at creation time.
+	 */
+	public final File getFile() {
+		return this.file;
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		synchronized (this) {
+			if (this.forceTimer != null) {
+				this.forceTimer.cancel();
+			}
+		}
+		if (this.wal != null) {
+			doCheckpoint();
+			this.wal.close();
+		}
+		close();
+	}
+
+	/*
+	 * Extension points
+	 */
+
+	/**
+	 * Reads the whole recNo-th record (deleted flag included) into the
+	 * specified buffer. The record number has already been validated.<br>
+	 * Invoked under the read lock, concurrently with other reads.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @param buffer
+	 *            a buffer of {@link #getRecordSize()} bytes.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void readRecordBytes(long recNo, byte[] buffer)
+			throws IOException;
+
+	/**
+	 * Reads consecutive records (deleted flags included) into the specified
+	 * buffer. The record numbers have already been validated.<br>
+	 * Invoked under the read lock, concurrently with other reads.
+	 * 
+	 * @param firstRecNo
+	 *            the first record id number.
+	 * @param count
+	 *            the number of records.
+	 * @param buffer
+	 *            a buffer of at least <code>count</code> *
+	 *            {@link #getRecordSize()} bytes.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void readRecordsBytes(long firstRecNo, int count,
+			byte[] buffer) throws IOException;
+
+	/**
+	 * Writes the whole recNo-th record (deleted flag included) from the
+	 * specified buffer. The record number has already been validated.<br>
+	 * Invoked under the write lock.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @param buffer
+	 *            a buffer of {@link #getRecordSize()} bytes.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void writeRecordBytes(long recNo, byte[] buffer)
+			throws IOException;
+
+	/**
+	 * Returns the current length of the database file.
+	 * 
+	 * @return the length in bytes.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract long getFileLength() throws IOException;
+
+	/**
+	 * Sets the length of the database file. Subclasses can keep preallocated
+	 * space after it, as long as the space is zero filled (see
+	 * {@link #getUsedLength()}).
+	 * 
+	 * @param length
+	 *            the new length in bytes.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void setFileLength(long length) throws IOException;
+
+	/**
+	 * Forces the writes performed to the storage device. It can be invoked
+	 * concurrently with reads and writes.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void force() throws IOException;
+
+	/**
+	 * Releases the resources associated to the database file.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	protected abstract void close() throws IOException;
+
+	/**
+	 * Returns the file position where the data section starts.
+	 * 
+	 * @return the byte number.
+	 */
+	protected final long getStartOfDataSection() {
+		return this.startOfDataSection;
+	}
+
+	/**
+	 * Returns the size in bytes of a record in the data section, deleted flag
+	 * included.
+	 * 
+	 * @return an integer.
+	 */
+	protected final int getRecordSize() {
+		return this.codec.getRecordSize();
+	}
+
+	/**
+	 * Returns the file position of the specified record.
+	 * 
+	 * @param recNo
+	 *            the record id number.
+	 * @return the byte number.
+	 */
+	protected final long getRecordPosition(long recNo) {
+		return this.startOfDataSection + getRecordSize() * recNo;
+	}
+
+	/**
+	 * Returns the length of the file used by the header, schema and data
+	 * sections. It can be smaller than the length of the file if the file has
+	 * unused space at its end.<br>
+	 * Invoked at creation time, or under the write lock.
+	 * 
+	 * @return the byte number where the data section ends.
+	 */
+	protected final long getUsedLength() {
+		return getRecordPosition(getSize());
+	}
+
+	/*
+	 * Reads the current image of a record: the one pending of checkpoint, or
+	 * the one in the file.
+	 */
+	private void loadRecord(long recNo, byte[] buffer) throws IOException {
+		if (this.wal != null) {
+			byte[] dirty = this.dirtyRecords.get(recNo);
+			if (dirty != null) {
+				System.arraycopy(dirty, 0, buffer, 0, buffer.length);
+				return;
+			}
+		}
+		readRecordBytes(recNo, buffer);
+	}
+
+	/*
+	 * Writes a record: directly to the file, or to the log and memory if the
+	 * write-ahead log is enabled. Called holding the write lock.
+	 */
+	private void storeRecord(long recNo, byte[] buffer) throws IOException {
+
+		if (this.wal == null) {
+			writeRecordBytes(recNo, buffer);
+			return;
+		}
+
+		/*
+		 * Log only the changed range
+		 */
+		byte[] previous = new byte[buffer.length];
+		loadRecord(recNo, previous);
+		int from = 0;
+		while (from < buffer.length && buffer[from] == previous[from]) {
+			from++;
+		}
+		if (from == buffer.length) {
+			return;
+		}
+		int to = buffer.length;
+		while (buffer[to - 1] == previous[to - 1]) {
+			to--;
+		}
+		this.wal.append(recNo, buffer, from, to);
+
+		// previous array is reused as the new image
+		System.arraycopy(buffer, from, previous, from, to - from);
+		this.dirtyRecords.put(recNo, previous);
+
+		if (this.wal.size() >= this.checkpointBytes) {
+			/*
+			 * The write is already logged, a failed checkpoint does not make
+			 * it fail. The next one will write the records back.
+			 */
+			try {
+				doCheckpoint();
+			} catch (IOException e) {
+				this.logger.log(Level.SEVERE, "Checkpoint failed", e);
+			}
+		}
+	}
+
+	/*
+	 * Writes back the dirty records in file order, then empties the log.
+	 * Called holding the write lock.
+	 */
+	private void doCheckpoint() throws IOException {
+		if (this.wal == null) {
+			return;
+		}
+		int records = this.dirtyRecords.size();
+		for (Map.Entry<Long, byte[]> entry : this.dirtyRecords.entrySet()) {
+			writeRecordBytes(entry.getKey(), entry.getValue());
+		}
+		force();
+		this.wal.reset();
+		this.dirtyRecords.clear();
+		this.logger.log(Level.FINE, "Checkpoint: " + records
+				+ " records written back");
+	}
+
+	/*
+	 * Returns the version map, creating it on first use. Records not changed
+	 * before get its base version, newer than any version given before
+	 */
+	private VersionMap getVersionMap() throws IOException {
+		VersionMap ret = this.versionMap;
+		if (ret == null) {
+			synchronized (this) {
+				ret = this.versionMap;
+				if (ret == null) {
+					ret = new VersionMap(VersionMap.getVersionFile(this.file));
+					this.versionMap = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Gives a new version to a record slot, if versions are in use. Must be
+	 * called holding the write lock
+	 */
+	private void incrementVersion(long recNo) throws IOException {
+		VersionMap versions = this.versionMap;
+		if (versions != null) {
+			versions.increment(recNo);
+		}
+	}
+
+	/*
+	 * Writes the values of a live record, giving it a new version, and
+	 * notifies the listeners. Must be called holding the write lock
+	 */
+	private long write(long recNo, String[] data) throws IOException {
+		String[] oldRecord = readForListeners(recNo);
+		byte[] buffer = this.codec.getThreadBuffer();
+		this.codec.encode(false, data, buffer);
+		incrementVersion(recNo);
+		storeRecord(recNo, buffer);
+		long seq = this.committer.written();
+		if (oldRecord != null) {
+			fireRecordUpdated(recNo, oldRecord, this.codec.decode(buffer));
+		}
+		return seq;
+	}
+
+	/*
+	 * Returns the current values of a record, or null if there are no
+	 * listeners to notify
+	 */
+	private String[] readForListeners(long recNo) throws IOException {
+		if (this.listeners.isEmpty()) {
+			return null;
+		}
+		byte[] buffer = new byte[getRecordSize()];
+		loadRecord(recNo, buffer);
+		return this.codec.decode(buffer);
+	}
+
+	/*
+	 * Listener notification. A failing listener does not make the write fail.
+	 */
+	@SuppressWarnings("boxing")
+	private void fireRecordInserted(long recNo, String[] record) {
+		for (DataAccessListener<Long, String[]> listener : this.listeners) {
+			try {
+				listener.recordInserted(recNo, record);
+			} catch (RuntimeException e) {
+				this.logger.log(Level.SEVERE, "Listener failed", e);
+			}
+		}
+	}
+
+	@SuppressWarnings("boxing")
+	private void fireRecordUpdated(long recNo, String[] oldRecord,
+			String[] newRecord) {
+		for (DataAccessListener<Long, String[]> listener : this.listeners) {
+			try {
+				listener.recordUpdated(recNo, oldRecord, newRecord);
+			} catch (RuntimeException e) {
+				this.logger.log(Level.SEVERE, "Listener failed", e);
+			}
+		}
+	}
+
+	@SuppressWarnings("boxing")
+	private void fireRecordDeleted(long recNo, String[] oldRecord) {
+		for (DataAccessListener<Long, String[]> listener : this.listeners) {
+			try {
+				listener.recordDeleted(recNo, oldRecord);
+			} catch (RuntimeException e) {
+				this.logger.log(Level.SEVERE, "Listener failed", e);
+			}
+		}
+	}
+
+	/*
+	 * Waits for the specified write to be durable, if the durability mode
+	 * requires it.
+	 */
+	private void commit(long seq) {
+		if (this.durabilityMode == DurabilityMode.GROUP_COMMIT) {
+			try {
+				this.committer.awaitDurable(seq, this.durabilityMillis);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+	}
+
+	/*
+	 * Adds a new record at the end of the file.
+	 */
+	@SuppressWarnings("boxing")
+	private Long appendRecord(byte[] buffer) {
+
+		try {
+			long initialLength = getFileLength();
+			long recNo = this.allocationMap.getSize();
+			// Increase file length to add a new record
+			setFileLength(getRecordPosition(recNo + 1));
+			this.allocationMap.append(true);
+
+			/*
+			 * Update new record (last record) content.
+			 */
+			try {
+				storeRecord(recNo, buffer);
+			} catch (IOException e) {
+				this.logger.log(Level.INFO, e.getMessage());
+				this.allocationMap.removeLast();
+				setFileLength(initialLength);
+				throw (e);
+			}
+			return recNo;
+		} catch (IOException e) {
+			throw new RuntimeIOException(
+					"IO Exception found when adding new record. " + e);
+		}
+	}
+
+	/*
+	 * Packs a record number (high bits) and its index in a batch (low bits),
+	 * so sorting the keys sorts the batch in file order
+	 */
+	private static long sortKey(long recNo, int index) {
+		return recNo << 32 | index;
+	}
+
+	/*
+	 * Gets the number of records (deleted or not) in the data file. Called
+	 * holding the lock.
+	 */
+	private long getSize() {
+		return this.allocationMap.getSize();
+	}
+
+	/*
+	 * Reads the deleted flag of every record, building the allocation map
+	 */
+	private void loadAllocationMap() throws IOException {
+
+		/*
+		 * number of recs = (records section length) / (record length)
+		 */
+		long numberOfRecords = (this.file.length() - this.startOfDataSection)
+				/ getRecordSize();
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(this.file), SCAN_BUFFER_SIZE));
+		byte[] buffer = new byte[getRecordSize()];
+		// Slots at the end of the file that have never been written
+		long unusedSlots = 0;
+		try {
+			in.skipBytes((int) this.startOfDataSection);
+			for (long recNo = 0; recNo < numberOfRecords; recNo++) {
+				in.readFully(buffer);
+				this.allocationMap
+						.append(buffer[0] != RecordCodec.DELETED_FLAG);
+				unusedSlots = isZeroFilled(buffer) ? unusedSlots + 1 : 0;
+			}
+		} finally {
+			in.close();
+		}
+
+		/*
+		 * Fields are written blank padded, so trailing zero filled slots have
+		 * never been written: they are space preallocated by a subclass (see
+		 * MappedURLyBirdFile_1_2_1) that was not closed
+		 */
+		for (long i = 0; i < unusedSlots; i++) {
+			this.allocationMap.removeLast();
+		}
+		this.logger.log(Level.INFO, "Allocation map loaded: "
+				+ this.allocationMap.getLiveCount() + " records in use, "
+				+ (numberOfRecords - unusedSlots) + " in file, "
+				+ unusedSlots + " unused slots ignored");
+	}
+
+	private static boolean isZeroFilled(byte[] buffer) {
+		for (int i = 0; i < buffer.length; i++) {
+			if (buffer[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * This method validates the record number
+	 */
+	private void verifyRecNoInOfBounds(long recNo)
+			throws RecordNotFoundException {
+
+		if (recNo < 0 || recNo > getSize() - 1) {
+			throw new RecordNotFoundException("Record number out of bounds");
+		}
+	}
+
+	/*
+	 * This method validates the record is not deleted
+	 */
+	private void verifyRecNotDeleted(long recNo)
+			throws RecordNotFoundException {
+
+		verifyRecNoInOfBounds(recNo);
+		if (!this.allocationMap.isLive(recNo)) {
+			throw new RecordNotFoundException("Could not find record number "
+					+ recNo + ". This record has been deleted");
+		}
+	}
+
+	/*
+	 * Reading of the header section of the file
+	 */
+	private void readHeaderSection(RandomAccessFile raf) throws IOException,
+			NotSupportedDataBaseException {
+
+		raf.seek(0);
+
+		// Magic cookie
+		int magic = raf.readInt();
+
+		// Total overall length in bytes of each record
+		int bpr = raf.readInt();
+
+		// Number of fields in each record
+		short fpr = raf.readShort();
+
+		this.header = new URLyBirdFileHeader(magic, bpr, fpr);
+		this.startOfSchemaSection = raf.getFilePointer();
+	}
+
+	/*
+	 * Reading of the schema section of the file
+	 */
+	private void readSchemaSection(RandomAccessFile raf) throws IOException {
+
+		raf.seek(this.startOfSchemaSection);
+		DBField[] fields = new DBField[this.header.getFieldsNo()];
+
+		// for each field
+		for (int i = 0; i < fields.length; i++) {
+
+			// Length in bytes of field name
+			short nameBytes = raf.readShort();
+
+			// Stores field name
+			byte[] nameBuffer = new byte[nameBytes];
+			raf.readFully(nameBuffer);
+			String fieldName = new String(nameBuffer, DB_CHARSET);
+
+			// Field length in bytes
+			short fieldBytes = raf.readShort();
+
+			fields[i] = new DBField(fieldName, fieldBytes);
+		}
+
+		this.schema = new DataSchema(fields);
+		this.startOfDataSection = raf.getFilePointer();
+
+		String[] names = new String[fields.length];
+		int[] lengths = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			names[i] = fields[i].getName();
+			lengths[i] = fields[i].getLength();
+		}
+		this.codec = new RecordCodec(names, lengths);
+
+	}
+
+	/**
+	 * Cursor reading the data section in chunks. Each chunk is read, and the
+	 * records pending of checkpoint copied over it, holding the read lock.
+	 * 
+	 * @author Ignacio del Valle Alles.
+	 */
+	private final class ScanCursor implements RecordCursor<Long, String[]> {
+
+		private final int recordSize = getRecordSize();
+		private final int recordsPerChunk = Math.max(1, SCAN_CHUNK_SIZE
+				/ this.recordSize);
+		private byte[] chunk = new byte[this.recordsPerChunk * this.recordSize];
+		private final byte[] current = new byte[this.recordSize];
+		private final ByteRecordView view = new ByteRecordView(
+				BaseURLyBirdFile_1_2_1.this.codec, this.current);
+
+		private final long to; // end of the range, exclusive
+		private long chunkFirstRecNo; // recNo of the first record in chunk
+		private int chunkCount; // records in chunk
+		private int index = -1; // current record in chunk
+		private boolean positioned;
+
+		/**
+		 * Creates a cursor over the specified range of records.
+		 * 
+		 * @param from
+		 *            first record number, inclusive.
+		 * @param to
+		 *            last record number, exclusive.
+		 */
+		ScanCursor(long from, long to) {
+			this.chunkFirstRecNo = from;
+			this.to = to;
+		}
+
+		public boolean next() {
+			this.positioned = false;
+			while (true) {
+				this.index++;
+				if (this.index >= this.chunkCount) {
+					if (!readNextChunk()) {
+						return false;
+					}
+					this.index = 0;
+				}
+				int offset = this.index * this.recordSize;
+				if (this.chunk[offset] != RecordCodec.DELETED_FLAG) {
+					System.arraycopy(this.chunk, offset, this.current, 0,
+							this.recordSize);
+					this.positioned = true;
+					return true;
+				}
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public Long getPrimaryKey() {
+			verifyPositioned();
+			return this.chunkFirstRecNo + this.index;
+		}
+
+		public String[] getRecord() {
+			verifyPositioned();
+			return BaseURLyBirdFile_1_2_1.this.codec.decode(this.current);
+		}
+
+		public RecordView getRecordView() {
+			verifyPositioned();
+			return this.view;
+		}
+
+		public void close() {
+			this.chunk = null;
+			this.chunkCount = 0;
+			this.positioned = false;
+		}
+
+		/*
+		 * Reads the chunk following the current one
+		 */
+		private boolean readNextChunk() {
+			if (this.chunk == null) {
+				return false;
+			}
+			long first = this.chunkFirstRecNo + this.chunkCount;
+			BaseURLyBirdFile_1_2_1.this.lock.readLock().lock();
+			try {
+				long size = Math.min(getSize(), this.to);
+				if (first >= size) {
+					this.chunkCount = 0;
+					return false;
+				}
+				int count = (int) Math.min(this.recordsPerChunk, size - first);
+				readRecordsBytes(first, count, this.chunk);
+				if (BaseURLyBirdFile_1_2_1.this.wal != null) {
+					for (Map.Entry<Long, byte[]> entry : BaseURLyBirdFile_1_2_1.this.dirtyRecords
+							.subMap(first, first + count).entrySet()) {
+						System.arraycopy(entry.getValue(), 0, this.chunk,
+								(int) (entry.getKey() - first)
+										* this.recordSize, this.recordSize);
+					}
+				}
+				this.chunkFirstRecNo = first;
+				this.chunkCount = count;
+				return true;
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			} finally {
+				BaseURLyBirdFile_1_2_1.this.lock.readLock().unlock();
+			}
+		}
+
+		private void verifyPositioned() {
+			if (!this.positioned) {
+				throw new IllegalStateException(
+						"Cursor not positioned on a record");
+			}
+		}
+	}
+
+	/**
+	 * This class encapsulates the schema information in a URLyBird database
+	 * file header section (see {@link BaseURLyBirdFile_1_2_1}).
+	 * 
+	 * @author Ignacio del Valle Alles.
+	 */
+	private class URLyBirdFileHeader {
+
+		private static final String COOKIE_EX = "URLyBird 1.2.1: Database file format not supported";
+		private static final String INCOMPATIBLE_EX = "Incompatible file header";
+
+		// bytes per record
+		private int recordLength;
+
+		// fields per record
+		private short fieldsNo;
+
+		/**
+		 * Constructs a new <code>URLyBirdFileHeader</code> object.
+		 * 
+		 * @param magic
+		 *            an integer that identifies the URLyBirdFile
+		 * @param recordLength
+		 *            the length of each record, in bytes
+		 * @param fieldsNo
+		 *            the number of fields of the database
+		 * @throws DataSourceCreationException
+		 */
+		URLyBirdFileHeader(int magic, int recordLength, short fieldsNo)
+				throws NotSupportedDataBaseException {
+
+			this.recordLength = recordLength;
+			this.fieldsNo = fieldsNo;
+
+			if (magic != SUPPORTED_MAGIC_COOKIE) {
+				throw new NotSupportedDataBaseException(COOKIE_EX);
+			}
+			if (recordLength < 1 || fieldsNo < 1) {
+				throw new NotSupportedDataBaseException(INCOMPATIBLE_EX);
+			}
+
+		}
+
+		/**
+		 * Returns the record length of the file
+		 * 
+		 * @return an integer, the record length
+		 */
+		int getRecordLength() {
+			return this.recordLength;
+		}
+
+		/**
+		 * Returns the number of fields.
+		 * 
+		 * @return a short, the number of fields
+		 */
+		short getFieldsNo() {
+			return this.fieldsNo;
+		}
+
+	}
+
+	/**
+	 * This class encapsulates the schema information of a URLyBird database
+	 * file.
+	 * 
+	 * @author Ignacio del Valle Alles.
+	 */
+	private class DataSchema implements java.io.Serializable {
+
+		static final long serialVersionUID = 3366704377499621356L;
+
+		private final DBField[] fields;
+		private final int recordLength;
+
+		/**
+		 * Creates a new instance from the specified field information
+		 * 
+		 * @param fields An array with the fields definition.
+		 */
+		public DataSchema(DBField[] fields) {
+			this.fields = fields;
+			int length = 0;
+			for (int i = 0; i < fields.length; i++) {
+				length += fields[i].getLength();
+			}
+			this.recordLength = length;
+		}
+
+		/**
+		 * Returns the field at the specified position.
+		 * 
+		 * @param fieldNo
+		 *            index of element to return.
+		 * @return the DBField object at the specified position.
+		 * @throws IndexOutOfBoundsException
+		 *             if index is out of range <code>
+		 * 		  <tt>(fieldNo &lt; 0 || index &gt;= getNumberOfFields())</tt></code>
+		 */
+		public DBField getField(int fieldNo) {
+			return this.fields[fieldNo];
+		}
+
+		/**
+		 * Returns the length in bytes of a database record.
+		 * 
+		 * @return an integer
+		 */
+		public int getRecordLength() {
+			return this.recordLength;
+		}
+
+		/**
+		 * Returns the number of fields in the database.
+		 * 
+		 * @return an integer
+		 */
+		public int getNumberOfFields() {
+			return this.fields.length;
+		}
+	}
+
+	private class DBField {
+
+		private final String name;
+		private final short length; // field length in bytes
+
+		/**
+		 * Constructs a new <code>DBField</code> object with the specified
+		 * name and length.
+		 * 
+		 * @param name
+		 *            the name of the field
+		 * @param length
+		 *            the length in bytes of the field
+		 */
+		public DBField(String name, short length) {
+			this.name = name;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the name of the field.
+		 * 
+		 * @return a String representing the name of the field
+		 */
+		public String getName() {
+			return this.name.substring(0, 1).toUpperCase()
+					+ this.name.substring(1, this.name.length());
+
+		}
+
+		/**
+		 * Returns the length in bytes of the field.
+		 * 
+		 * @return a short, the length in bytes
+		 */
+		public short getLength() {
+			return this.length;
+		}
+
+	}
+
+}
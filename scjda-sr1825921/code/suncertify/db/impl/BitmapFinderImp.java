@@ -0,0 +1,368 @@
+/*
+ * BitmapFinderImp.java 22/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation keeping a {@link BitmapIndex} for each
+ * of the specified low cardinality fields.
+ * <p>
+ * The indexes are built at creation time with a scan of the records, and
+ * kept up to date listening to the changes of the data access object (see
+ * {@link DataAccessListener}), so instances must be created before the
+ * database starts to be modified.
+ * <p>
+ * Searches combine the bitmaps of the criteria on indexed fields with bitwise
+ * AND ({@link #findByCriteria(String[])}) or OR (
+ * {@link #findByAnyCriteria(String[])}). The criteria on not indexed fields,
+ * if any, are searched by a fallback finder, whose result is combined the
+ * same way. High cardinality fields (the hotel name) are better served by an
+ * {@link IndexedFinderImp} fallback.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 22/11/2010
+ */
+public final class BitmapFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final FinderObject<Long, String[]> fallback;
+	private final BitmapIndex[] indexes; // by field number, null if none
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new instance, building the indexes of the specified fields.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param fallback
+	 *            the finder used for the criteria on not indexed fields.
+	 * @param fields
+	 *            the indexed fields.
+	 * @throws IllegalArgumentException
+	 *             if dao or fallback are <code>null</code>, or a field is
+	 *             negative.
+	 */
+	@SuppressWarnings("boxing")
+	public BitmapFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> fallback, int[] fields) {
+
+		if (dao == null || fallback == null) {
+			throw new IllegalArgumentException(
+					"dao and fallback must be not null");
+		}
+		this.dao = dao;
+		this.fallback = fallback;
+
+		int maxField = -1;
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] < 0) {
+				throw new IllegalArgumentException("Invalid field " + fields[i]);
+			}
+			maxField = Math.max(maxField, fields[i]);
+		}
+		this.indexes = new BitmapIndex[maxField + 1];
+		for (int i = 0; i < fields.length; i++) {
+			this.indexes[fields[i]] = new BitmapIndex(fields[i]);
+		}
+
+		/*
+		 * Build the indexes
+		 */
+		this.lock.writeLock().lock();
+		try {
+			this.dao.addDataAccessListener(new IndexUpdater());
+			RecordCursor<Long, String[]> cursor = this.dao.scan();
+			try {
+				while (cursor.next()) {
+					String[] record = cursor.getRecord();
+					for (BitmapIndex index : this.indexes) {
+						if (index != null) {
+							index.add(cursor.getPrimaryKey(), record);
+						}
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		this.logger.log(Level.INFO, "Bitmap indexes built for fields "
+				+ Arrays.toString(fields));
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria,
+	 * with the semantics of {@link DefaultFinderImp#findByCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+		return find(criteria, false);
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria, with the semantics of
+	 * {@link DefaultFinderImp#findByAnyCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+		return find(criteria, true);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds. Delegated to the fallback finder.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		return this.fallback.findByRange(min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria. Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		return this.fallback.findBySubstring(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query.
+	 * Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		return this.fallback.findByQuery(query);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.fallback.findByQuery(query, after, limit);
+	}
+
+	/*
+	 * Combines the matches of each criteria with AND, or OR if any is true
+	 */
+	private Long[] find(String[] criteria, boolean any) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+
+		CompressedBitmap ret = null;
+		String[] residual = new String[criteria.length];
+		boolean hasResidual = false;
+		this.lock.readLock().lock();
+		try {
+			for (int j = 0; j < criteria.length; j++) {
+				if (criteria[j] == null) {
+					continue;
+				}
+				BitmapIndex index = j < this.indexes.length ? this.indexes[j]
+						: null;
+				if (index == null) {
+					residual[j] = criteria[j];
+					hasResidual = true;
+					continue;
+				}
+				CompressedBitmap found = index.find(criteria[j]);
+				if (ret == null) {
+					ret = found;
+				} else {
+					ret = any ? ret.or(found) : ret.and(found);
+				}
+				if (!any && ret.isEmpty()) {
+					return new Long[0];
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		if (ret == null) {
+			return any ? this.fallback.findByAnyCriteria(criteria)
+					: this.fallback.findByCriteria(criteria);
+		}
+		if (hasResidual) {
+			if (any) {
+				ret = ret.or(CompressedBitmap.valueOf(this.fallback
+						.findByAnyCriteria(residual)));
+			} else {
+				ret = ret.and(CompressedBitmap.valueOf(this.fallback
+						.findByCriteria(residual)));
+			}
+		}
+		return ret.toArray();
+	}
+
+	/**
+	 * Returns the access paths to the indexes, used by
+	 * {@link PlannerFinderImp}.
+	 * 
+	 * @return a path per indexed field.
+	 */
+	List<AccessPath> getAccessPaths() {
+		List<AccessPath> ret = new ArrayList<AccessPath>();
+		for (BitmapIndex index : this.indexes) {
+			if (index != null) {
+				ret.add(new IndexPath(index));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Access path to an index, guarded by the finder lock.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexPath implements AccessPath {
+
+		private final BitmapIndex index;
+
+		IndexPath(BitmapIndex index) {
+			this.index = index;
+		}
+
+		public int getFieldNo() {
+			return this.index.getFieldNo();
+		}
+
+		public long estimateRows(String prefix) {
+			BitmapFinderImp.this.lock.readLock().lock();
+			try {
+				return this.index.count(prefix);
+			} finally {
+				BitmapFinderImp.this.lock.readLock().unlock();
+			}
+		}
+
+		public CompressedBitmap lookup(String prefix) {
+			BitmapFinderImp.this.lock.readLock().lock();
+			try {
+				return this.index.find(prefix);
+			} finally {
+				BitmapFinderImp.this.lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "bitmap index on field " + this.index.getFieldNo();
+		}
+	}
+
+	/**
+	 * Keeps the indexes up to date.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexUpdater implements
+			DataAccessListener<Long, String[]> {
+
+		@SuppressWarnings("boxing")
+		public void recordInserted(Long pk, String[] record) {
+			BitmapFinderImp.this.lock.writeLock().lock();
+			try {
+				for (BitmapIndex index : BitmapFinderImp.this.indexes) {
+					if (index != null) {
+						index.add(pk, record);
+					}
+				}
+			} finally {
+				BitmapFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			BitmapFinderImp.this.lock.writeLock().lock();
+			try {
+				for (BitmapIndex index : BitmapFinderImp.this.indexes) {
+					if (index != null) {
+						index.update(pk, oldRecord, newRecord);
+					}
+				}
+			} finally {
+				BitmapFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			BitmapFinderImp.this.lock.writeLock().lock();
+			try {
+				for (BitmapIndex index : BitmapFinderImp.this.indexes) {
+					if (index != null) {
+						index.remove(pk, oldRecord);
+					}
+				}
+			} finally {
+				BitmapFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * BitmapIndex.java 22/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.TreeMap;
+
+
+/**
+ * Index of a low cardinality record field (city, room size, smoking flag...),
+ * mapping each distinct value to a {@link CompressedBitmap} of the record
+ * numbers holding it.<br>
+ * Values are kept sorted, so the records whose value starts with a prefix are
+ * the union of the bitmaps of a contiguous range of values.
+ * <p>
+ * Instances of this class are not thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 22/11/2010
+ */
+final class BitmapIndex {
+
+	private final int fieldNo;
+	private final TreeMap<String, CompressedBitmap> bitmaps = new TreeMap<String, CompressedBitmap>();
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param fieldNo
+	 *            the indexed field.
+	 */
+	BitmapIndex(int fieldNo) {
+		this.fieldNo = fieldNo;
+	}
+
+	/**
+	 * Returns the indexed field.
+	 * 
+	 * @return the field index.
+	 */
+	int getFieldNo() {
+		return this.fieldNo;
+	}
+
+	/**
+	 * Returns the number of distinct values.
+	 * 
+	 * @return the number of bitmaps.
+	 */
+	int getNumberOfKeys() {
+		return this.bitmaps.size();
+	}
+
+	/**
+	 * Adds a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values.
+	 */
+	void add(long recNo, String[] record) {
+		CompressedBitmap bitmap = this.bitmaps.get(record[this.fieldNo]);
+		if (bitmap == null) {
+			bitmap = new CompressedBitmap();
+			this.bitmaps.put(record[this.fieldNo], bitmap);
+		}
+		bitmap.add(recNo);
+	}
+
+	/**
+	 * Removes a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values when it was added.
+	 */
+	void remove(long recNo, String[] record) {
+		CompressedBitmap bitmap = this.bitmaps.get(record[this.fieldNo]);
+		if (bitmap != null) {
+			bitmap.remove(recNo);
+			if (bitmap.isEmpty()) {
+				this.bitmaps.remove(record[this.fieldNo]);
+			}
+		}
+	}
+
+	/**
+	 * Updates a record, if the indexed value has changed.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param oldRecord
+	 *            the record field values when it was added.
+	 * @param newRecord
+	 *            the new record field values.
+	 */
+	void update(long recNo, String[] oldRecord, String[] newRecord) {
+		if (!oldRecord[this.fieldNo].equals(newRecord[this.fieldNo])) {
+			remove(recNo, oldRecord);
+			add(recNo, newRecord);
+		}
+	}
+
+	/**
+	 * Returns the records whose value starts with the specified prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return a new bitmap, not shared with the index.
+	 */
+	CompressedBitmap find(String prefix) {
+		CompressedBitmap ret = new CompressedBitmap();
+		for (CompressedBitmap bitmap : this.bitmaps.subMap(prefix, true,
+				prefix + Character.MAX_VALUE, false).values()) {
+			ret = ret.or(bitmap);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of records whose value starts with the specified
+	 * prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return the number of records.
+	 */
+	long count(String prefix) {
+		long ret = 0;
+		for (CompressedBitmap bitmap : this.bitmaps.subMap(prefix, true,
+				prefix + Character.MAX_VALUE, false).values()) {
+			ret += bitmap.getCardinality();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * ByteRecordView.java 05/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.math.BigDecimal;
+
+import suncertify.db.spec.RecordView;
+
+
+/**
+ * {@link RecordView} implementation over the encoded bytes of a record,
+ * decoding field values only when they are requested.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 05/11/2010
+ */
+final class ByteRecordView implements RecordView {
+
+	private final RecordCodec codec;
+	private final byte[] buffer;
+
+	/**
+	 * Creates a new view.
+	 * 
+	 * @param codec
+	 *            the codec of the record format.
+	 * @param buffer
+	 *            the record bytes. Not copied, it must not be modified while
+	 *            the view is in use.
+	 */
+	ByteRecordView(RecordCodec codec, byte[] buffer) {
+		this.codec = codec;
+		this.buffer = buffer;
+	}
+
+	public int getNumberOfFields() {
+		return this.codec.getNumberOfFields();
+	}
+
+	public String getField(int fieldNo) {
+		return this.codec.decodeField(this.buffer, fieldNo);
+	}
+
+	public String[] getFields() {
+		return this.codec.decode(this.buffer);
+	}
+
+	public boolean fieldStartsWith(int fieldNo, String prefix) {
+		return this.codec.compareField(this.buffer, fieldNo, prefix, true) == 0;
+	}
+
+	public boolean fieldEquals(int fieldNo, String value) {
+		return this.codec.compareField(this.buffer, fieldNo, value, false) == 0;
+	}
+
+	public int compareField(int fieldNo, String value) {
+		return this.codec.compareField(this.buffer, fieldNo, value, false);
+	}
+
+	public int compareFieldNumber(int fieldNo, BigDecimal value) {
+		return this.codec.compareNumber(this.buffer, fieldNo, value);
+	}
+
+}
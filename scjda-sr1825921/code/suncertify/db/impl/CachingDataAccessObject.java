@@ -0,0 +1,539 @@
+/*
+ * CachingDataAccessObject.java 08/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.RecordCursor;
+import suncertify.db.spec.Versioned;
+
+
+/**
+ * {@link DataAccessObject} decorator keeping the most recently read records
+ * in memory, so repeated reads of the same record (existence checks in
+ * {@link suncertify.db.Data#lockRecord(long)}, the read before a booking...)
+ * do not reach the storage engine.
+ * <p>
+ * The cache is split in stripes by record number, sized on the number of
+ * processors, each one with its own monitor, so reads of different records
+ * do not contend. Every stripe is bounded by its share of an estimation of
+ * the memory used by the cached records, evicting its least recently used
+ * ones when the share is exceeded. Writes are delegated first, then the
+ * affected record is removed from the cache. A read that misses only stores
+ * its result if no write has been performed in its stripe meanwhile, so stale
+ * values are never cached.<br>
+ * Callers get their own copy of the cached array, since business objects
+ * modify it.
+ * <p>
+ * Instances of this class are thread-safe if the decorated object is.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 08/11/2010
+ */
+public final class CachingDataAccessObject extends LoggingObject implements
+		DataAccessObject<Long, String[]> {
+
+	/*
+	 * Rough memory estimations, in bytes, for a 64 bit JVM
+	 */
+	private static final int ENTRY_OVERHEAD = 96; // map entry + key + array
+	private static final int STRING_OVERHEAD = 64; // String + char[] headers
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final long maxBytes;
+	private final Stripe[] stripes;
+	private final int mask;
+
+	/**
+	 * Creates a new instance decorating the specified data access object.
+	 * 
+	 * @param dao
+	 *            the decorated object.
+	 * @param maxBytes
+	 *            the memory budget of the cache, in bytes.
+	 * @throws IllegalArgumentException
+	 *             if dao is <code>null</code> or maxBytes is not positive.
+	 */
+	public CachingDataAccessObject(DataAccessObject<Long, String[]> dao,
+			long maxBytes) {
+		if (dao == null) {
+			throw new IllegalArgumentException("dao must be not null");
+		}
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+		this.dao = dao;
+		this.maxBytes = maxBytes;
+		int concurrency = 4 * Runtime.getRuntime().availableProcessors();
+		int size = Integer.highestOneBit(concurrency);
+		if (size < concurrency) {
+			size <<= 1;
+		}
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe(Math.max(1, maxBytes / size));
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the record identified by the pk, from the cache if present.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @return a copy of the record.
+	 * @throws RecordNotFoundException
+	 *             if the record does not exists.
+	 */
+	public String[] findByPrimaryKey(Long pk) throws RecordNotFoundException {
+
+		Stripe stripe = getStripe(pk);
+		long writesBefore;
+		synchronized (stripe) {
+			String[] cached = stripe.get(pk);
+			if (cached != null) {
+				return cached.clone();
+			}
+			writesBefore = stripe.writes;
+		}
+
+		String[] record = this.dao.findByPrimaryKey(pk);
+
+		synchronized (stripe) {
+			stripe.put(pk, record, writesBefore);
+		}
+		return record;
+	}
+
+	/**
+	 * Returns the record identified by the pk and its version. Not cached,
+	 * since a cached record could be older than the version of the decorated
+	 * object until the write that changed it removes it from the cache.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @return the record and its version.
+	 * @throws RecordNotFoundException
+	 *             if the record does not exists.
+	 */
+	public Versioned<String[]> findVersionedByPrimaryKey(Long pk)
+			throws RecordNotFoundException {
+		return this.dao.findVersionedByPrimaryKey(pk);
+	}
+
+	/**
+	 * Returns the records identified by the pks, from the cache if present.
+	 * The missing ones are read from the decorated object in a single batch.
+	 * 
+	 * @param pks
+	 *            the record primary keys.
+	 * @return copies of the records, in the order of pks, with
+	 *         <code>null</code> for the records that do not exist.
+	 */
+	public String[][] findByPrimaryKeys(Long[] pks) {
+
+		String[][] ret = new String[pks.length][];
+		List<Integer> missing = new ArrayList<Integer>();
+		// Write count of the stripe of each missing record
+		long[] writesBefore = new long[pks.length];
+		for (int i = 0; i < pks.length; i++) {
+			Stripe stripe = getStripe(pks[i]);
+			synchronized (stripe) {
+				String[] cached = stripe.get(pks[i]);
+				if (cached != null) {
+					ret[i] = cached.clone();
+				} else {
+					missing.add(Integer.valueOf(i));
+					writesBefore[i] = stripe.writes;
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return ret;
+		}
+
+		Long[] missingPks = new Long[missing.size()];
+		for (int i = 0; i < missingPks.length; i++) {
+			missingPks[i] = pks[missing.get(i).intValue()];
+		}
+		String[][] records = this.dao.findByPrimaryKeys(missingPks);
+
+		for (int i = 0; i < records.length; i++) {
+			int index = missing.get(i).intValue();
+			ret[index] = records[i];
+			if (records[i] != null) {
+				Stripe stripe = getStripe(missingPks[i]);
+				synchronized (stripe) {
+					stripe.put(missingPks[i], records[i], writesBefore[index]);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Updates the record identified by this pk, and removes it from the cache.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @param record
+	 *            holds the values to update.
+	 * @throws RecordNotFoundException
+	 *             if the record can no be found.
+	 */
+	public void update(Long pk, String[] record)
+			throws RecordNotFoundException {
+		try {
+			this.dao.update(pk, record);
+		} finally {
+			invalidate(pk);
+		}
+	}
+
+	/**
+	 * Updates the record identified by this pk if its version is the expected
+	 * one, and removes it from the cache.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @param record
+	 *            holds the values to update.
+	 * @param expectedVersion
+	 *            the version the record must have.
+	 * @return the new version of the record, or {@link #VERSION_MISMATCH} if
+	 *         it was not updated.
+	 * @throws RecordNotFoundException
+	 *             if the record can no be found.
+	 */
+	public long updateIfVersion(Long pk, String[] record, long expectedVersion)
+			throws RecordNotFoundException {
+		try {
+			return this.dao.updateIfVersion(pk, record, expectedVersion);
+		} finally {
+			invalidate(pk);
+		}
+	}
+
+	/**
+	 * Updates the records identified by these pks, and removes them from the
+	 * cache.
+	 * 
+	 * @param pks
+	 *            the record primary keys.
+	 * @param records
+	 *            holds the values to update, in the order of pks.
+	 * @throws RecordNotFoundException
+	 *             if any of the records can no be found.
+	 */
+	public void update(Long[] pks, String[][] records)
+			throws RecordNotFoundException {
+		try {
+			this.dao.update(pks, records);
+		} finally {
+			for (Long pk : pks) {
+				invalidate(pk);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the record identified by this pk, and removes it from the cache.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @throws RecordNotFoundException
+	 *             if the record does not exists.
+	 */
+	public void delete(Long pk) throws RecordNotFoundException {
+		try {
+			this.dao.delete(pk);
+		} finally {
+			invalidate(pk);
+		}
+	}
+
+	/**
+	 * Creates a new persistent record from the specified values.
+	 * 
+	 * @param record
+	 *            The record create.
+	 * @return the primary key of the new record.
+	 */
+	public Long insert(String[] record) {
+		Long pk = this.dao.insert(record);
+		invalidate(pk);
+		return pk;
+	}
+
+	/**
+	 * Returns all the records. Not cached.
+	 * 
+	 * @return an array of all the primary keys.
+	 */
+	public Long[] findAll() {
+		return this.dao.findAll();
+	}
+
+	/**
+	 * Returns a cursor over the records of the decorated object. Not cached.
+	 * 
+	 * @return a new cursor.
+	 */
+	public RecordCursor<Long, String[]> scan() {
+		return this.dao.scan();
+	}
+
+	/**
+	 * Returns a cursor over a range of records of the decorated object. Not
+	 * cached.
+	 * 
+	 * @param from
+	 *            first position, inclusive.
+	 * @param to
+	 *            last position, exclusive.
+	 * @return a new cursor.
+	 */
+	public RecordCursor<Long, String[]> scan(Long from, Long to) {
+		return this.dao.scan(from, to);
+	}
+
+	/**
+	 * Returns the number of record positions of the decorated object.
+	 * 
+	 * @return the number of records.
+	 */
+	public long getNumberOfRecords() {
+		return this.dao.getNumberOfRecords();
+	}
+
+	/**
+	 * Registers a listener in the decorated object.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void addDataAccessListener(
+			DataAccessListener<Long, String[]> listener) {
+		this.dao.addDataAccessListener(listener);
+	}
+
+	/**
+	 * Unregisters a listener from the decorated object.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void removeDataAccessListener(
+			DataAccessListener<Long, String[]> listener) {
+		this.dao.removeDataAccessListener(listener);
+	}
+
+	/**
+	 * Returns the number of reads served from the cache.
+	 * 
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		long ret = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				ret += stripe.hits;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of reads delegated to the decorated object.
+	 * 
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		long ret = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				ret += stripe.misses;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of records removed from the cache to keep it in
+	 * budget.
+	 * 
+	 * @return the number of evictions.
+	 */
+	public long getEvictions() {
+		long ret = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				ret += stripe.evictions;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the estimated memory used by the cached records.
+	 * 
+	 * @return the number of bytes.
+	 */
+	public long getUsedBytes() {
+		long ret = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				ret += stripe.usedBytes;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of cached records.
+	 * 
+	 * @return the number of records.
+	 */
+	public int getSize() {
+		int ret = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				ret += stripe.records.size();
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return "CachingDataAccessObject[records=" + getSize() + ", bytes="
+				+ getUsedBytes() + "/" + this.maxBytes + ", stripes="
+				+ this.stripes.length + ", hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+
+	/*
+	 * Removes a record from the cache after a write
+	 */
+	private void invalidate(Long pk) {
+		Stripe stripe = getStripe(pk);
+		synchronized (stripe) {
+			stripe.remove(pk);
+		}
+	}
+
+	/*
+	 * Returns the stripe caching the specified record
+	 */
+	private Stripe getStripe(Long pk) {
+		long recNo = pk.longValue();
+		return this.stripes[(int) (recNo ^ (recNo >>> 32)) & this.mask];
+	}
+
+	/*
+	 * Estimated memory used by a cached record
+	 */
+	private static long estimateSize(String[] record) {
+		long ret = ENTRY_OVERHEAD + 8L * record.length;
+		for (int i = 0; i < record.length; i++) {
+			if (record[i] != null) {
+				ret += STRING_OVERHEAD + 2L * record[i].length();
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * A part of the cache, with its own budget and least recently used order.
+	 * Guarded by its own monitor.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class Stripe {
+
+		private final LinkedHashMap<Long, String[]> records = new LinkedHashMap<Long, String[]>(
+				16, 0.75f, true);
+		private final long maxBytes;
+		private long usedBytes;
+		private long writes; // number of writes performed, for stale detection
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		Stripe(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		String[] get(Long pk) {
+			String[] ret = this.records.get(pk);
+			if (ret != null) {
+				this.hits++;
+			} else {
+				this.misses++;
+			}
+			return ret;
+		}
+
+		/*
+		 * Caches a record read from the decorated object, only if it can not
+		 * have been changed concurrently
+		 */
+		void put(Long pk, String[] record, long writesBefore) {
+			if (writesBefore == this.writes && !this.records.containsKey(pk)) {
+				String[] cached = record.clone();
+				this.records.put(pk, cached);
+				this.usedBytes += estimateSize(cached);
+				evict();
+			}
+		}
+
+		void remove(Long pk) {
+			this.writes++;
+			String[] removed = this.records.remove(pk);
+			if (removed != null) {
+				this.usedBytes -= estimateSize(removed);
+			}
+		}
+
+		/*
+		 * Removes the least recently used records while out of budget
+		 */
+		private void evict() {
+			Iterator<Map.Entry<Long, String[]>> it = this.records.entrySet()
+					.iterator();
+			while (this.usedBytes > this.maxBytes && it.hasNext()) {
+				Map.Entry<Long, String[]> eldest = it.next();
+				it.remove();
+				this.usedBytes -= estimateSize(eldest.getValue());
+				this.evictions++;
+				if (CachingDataAccessObject.this.logger.isLoggable(Level.FINE)) {
+					CachingDataAccessObject.this.logger.log(Level.FINE,
+							"Evicted record " + eldest.getKey());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,526 @@
+/*
+ * CachingFinderImp.java 24/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+
+
+/**
+ * {@link FinderObject} decorator keeping the results of the most recently
+ * used searches, so repeated searches (the same city searched all day, the
+ * refresh of the last search after a booking...) do not reach the decorated
+ * finder.
+ * <p>
+ * Entries are keyed by the normalized criteria (trailing <code>null</code>
+ * values removed) and the search kind, or by the query, and bounded in number, evicting the
+ * least recently used ones. Each write reported by the data access object
+ * (see {@link DataAccessListener}) removes the entries whose criteria match
+ * the record before or after the change; other entries are not affected.
+ * Prefix and substring criteria are compared case insensitively, so that the entries of
+ * case insensitive finders are invalidated too. A search that misses only stores
+ * its result if no write has been performed meanwhile, so stale results are
+ * never cached.
+ * <p>
+ * Writes are reported holding the write lock of the data access object, so
+ * they are only queued there, without entering the cache monitor, and the
+ * next search applies the queued changes before reading the cache. If more
+ * than {@value #MAX_PENDING_CHANGES} changes are queued between searches, they
+ * are dropped and the next search clears the whole cache instead.
+ * <p>
+ * Instances of this class are thread-safe if the decorated finder is.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 24/11/2010
+ */
+public final class CachingFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	// Maximum number of changes queued before the cache is cleared instead
+	private static final int MAX_PENDING_CHANGES = 1024;
+
+	private final FinderObject<Long, String[]> finder;
+	private final int maxEntries;
+
+	/*
+	 * Fields guarded by the cache monitor
+	 */
+	private final LinkedHashMap<Search, Long[]> cache;
+	private long hits;
+	private long misses;
+	private long invalidations;
+
+	/*
+	 * Changes reported by the writes, not yet applied to the cache
+	 */
+	private final Queue<String[][]> pendingChanges = new ConcurrentLinkedQueue<String[][]>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private volatile boolean overflowed;
+	private final AtomicLong writes = new AtomicLong(); // for stale detection
+
+	/**
+	 * Creates a new instance decorating the specified finder.
+	 * 
+	 * @param dao
+	 *            the data access object searched by the finder, whose writes
+	 *            invalidate the cached results.
+	 * @param finder
+	 *            the decorated finder.
+	 * @param maxEntries
+	 *            the maximum number of cached results.
+	 * @throws IllegalArgumentException
+	 *             if dao or finder are <code>null</code>, or maxEntries is not
+	 *             positive.
+	 */
+	public CachingFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> finder, final int maxEntries) {
+		if (dao == null || finder == null) {
+			throw new IllegalArgumentException("dao and finder must be not null");
+		}
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+		this.finder = finder;
+		this.maxEntries = maxEntries;
+		this.cache = new LinkedHashMap<Search, Long[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Search, Long[]> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		dao.addDataAccessListener(new Invalidator());
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria,
+	 * from the cache if present.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+		if (criteria == null || criteria.length == 0) {
+			return this.finder.findByCriteria(criteria);
+		}
+		return find(new Search(Kind.ALL, criteria, null), criteria, null);
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria, from the cache if present.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+		if (criteria == null || criteria.length == 0) {
+			return this.finder.findByAnyCriteria(criteria);
+		}
+		return find(new Search(Kind.ANY, criteria, null), criteria, null);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds, from the cache if present.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		if (min == null || max == null) {
+			return this.finder.findByRange(min, max);
+		}
+		return find(new Search(Kind.RANGE, min, max), min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria, from the cache if present.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		if (criteria == null || criteria.length == 0) {
+			return this.finder.findBySubstring(criteria);
+		}
+		return find(new Search(Kind.SUBSTRING, criteria, null), criteria, null);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query, from
+	 * the cache if present.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		if (query == null) {
+			return this.finder.findByQuery(query);
+		}
+		return find(new Search(query), null, null);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Not cached, since pages are read once while scrolling
+	 * through the results.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.finder.findByQuery(query, after, limit);
+	}
+
+	/**
+	 * Returns the number of searches served from the cache.
+	 * 
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		synchronized (this.cache) {
+			return this.hits;
+		}
+	}
+
+	/**
+	 * Returns the number of searches delegated to the decorated finder.
+	 * 
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		synchronized (this.cache) {
+			return this.misses;
+		}
+	}
+
+	/**
+	 * Returns the number of results removed from the cache by writes.
+	 * 
+	 * @return the number of invalidations.
+	 */
+	public long getInvalidations() {
+		synchronized (this.cache) {
+			applyPendingChanges();
+			return this.invalidations;
+		}
+	}
+
+	/**
+	 * Returns the number of cached results.
+	 * 
+	 * @return the number of entries.
+	 */
+	public int getSize() {
+		synchronized (this.cache) {
+			applyPendingChanges();
+			return this.cache.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (this.cache) {
+			return "CachingFinderImp[entries=" + this.cache.size() + "/"
+					+ this.maxEntries + ", hits=" + this.hits + ", misses="
+					+ this.misses + ", invalidations=" + this.invalidations
+					+ "]";
+		}
+	}
+
+	/*
+	 * Returns the cached result, or searches and caches it
+	 */
+	private Long[] find(Search search, String[] values, String[] max) {
+
+		long writesBefore;
+		synchronized (this.cache) {
+			applyPendingChanges();
+			Long[] cached = this.cache.get(search);
+			if (cached != null) {
+				this.hits++;
+				return cached.clone();
+			}
+			this.misses++;
+			writesBefore = this.writes.get();
+		}
+
+		Long[] ret;
+		switch (search.kind) {
+		case ANY:
+			ret = this.finder.findByAnyCriteria(values);
+			break;
+		case RANGE:
+			ret = this.finder.findByRange(values, max);
+			break;
+		case SUBSTRING:
+			ret = this.finder.findBySubstring(values);
+			break;
+		case QUERY:
+			ret = this.finder.findByQuery(search.query.getQuery());
+			break;
+		default:
+			ret = this.finder.findByCriteria(values);
+		}
+
+		synchronized (this.cache) {
+			/*
+			 * Cache the result only if it can not have been changed
+			 * concurrently
+			 */
+			if (writesBefore == this.writes.get()) {
+				this.cache.put(search, ret.clone());
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Queues a record change, to be applied by the next search. Called holding
+	 * the write lock of the data access object
+	 */
+	private void recordChange(String[] oldRecord, String[] newRecord) {
+		if (!this.overflowed) {
+			if (this.pendingCount.incrementAndGet() > MAX_PENDING_CHANGES) {
+				this.pendingCount.decrementAndGet();
+				this.overflowed = true;
+			} else {
+				this.pendingChanges.offer(new String[][] { oldRecord, newRecord });
+			}
+		}
+		this.writes.incrementAndGet();
+	}
+
+	/*
+	 * Removes the results affected by the queued changes, or every result if
+	 * too many changes were queued. Must be called holding the cache monitor
+	 */
+	private void applyPendingChanges() {
+		if (this.overflowed) {
+			/*
+			 * Reset before clearing, so changes dropped meanwhile are covered
+			 */
+			this.overflowed = false;
+			this.invalidations += this.cache.size();
+			this.cache.clear();
+			this.logger.log(Level.FINE, "Too many changes queued, cache cleared");
+			while (this.pendingChanges.poll() != null) {
+				this.pendingCount.decrementAndGet();
+			}
+			return;
+		}
+		String[][] change;
+		while ((change = this.pendingChanges.poll()) != null) {
+			this.pendingCount.decrementAndGet();
+			invalidate(change[0], change[1]);
+		}
+	}
+
+	/*
+	 * Removes the results affected by a record change. Must be called holding
+	 * the cache monitor
+	 */
+	private void invalidate(String[] oldRecord, String[] newRecord) {
+		if (this.cache.isEmpty()) {
+			return;
+		}
+		String[] oldFolded = fold(oldRecord);
+		String[] newFolded = fold(newRecord);
+		Iterator<Search> it = this.cache.keySet().iterator();
+		while (it.hasNext()) {
+			Search search = it.next();
+			if ((oldRecord != null && search.matches(oldRecord, oldFolded))
+					|| (newRecord != null && search.matches(newRecord,
+							newFolded))) {
+				it.remove();
+				this.invalidations++;
+				if (this.logger.isLoggable(Level.FINE)) {
+					this.logger.log(Level.FINE, "Invalidated " + search);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Lower case copy of some values, null if values is null
+	 */
+	private static String[] fold(String[] values) {
+		if (values == null) {
+			return null;
+		}
+		String[] ret = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				ret[i] = values[i].toLowerCase(Locale.ENGLISH);
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Copy of values without trailing nulls
+	 */
+	private static String[] trim(String[] values) {
+		int length = values.length;
+		while (length > 0 && values[length - 1] == null) {
+			length--;
+		}
+		return Arrays.copyOf(values, length);
+	}
+
+	/**
+	 * Kinds of search.
+	 */
+	private enum Kind {
+		ALL, ANY, RANGE, SUBSTRING, QUERY;
+	}
+
+	/**
+	 * Cache key, the normalized criteria of a search or its query.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Search {
+
+		private final Kind kind;
+		private final String[] values; // criteria, or lower bounds
+		private final String[] max; // upper bounds, empty if not a range
+		private final RecordFilter matcher; // on folded values if not a range
+		private final CompiledQuery query; // null if not a query
+
+		Search(Kind kind, String[] values, String[] max) {
+			this.kind = kind;
+			this.query = null;
+			this.values = trim(values);
+			if (kind == Kind.RANGE) {
+				this.max = trim(max);
+				this.matcher = RecordMatcher.forRange(this.values, this.max);
+			} else if (kind == Kind.SUBSTRING) {
+				this.max = new String[0];
+				this.matcher = RecordMatcher.forSubstring(fold(this.values));
+			} else {
+				this.max = new String[0];
+				this.matcher = new RecordMatcher(fold(this.values),
+						kind == Kind.ANY);
+			}
+		}
+
+		Search(Query query) {
+			this.kind = Kind.QUERY;
+			this.values = new String[0];
+			this.max = new String[0];
+			this.query = CompiledQuery.compile(query);
+			this.matcher = this.query;
+		}
+
+		/*
+		 * Tests if a record matches, given its values and folded values
+		 */
+		boolean matches(String[] record, String[] folded) {
+			return this.matcher.matches(this.kind == Kind.RANGE
+					|| this.kind == Kind.QUERY ? record : folded);
+		}
+
+		@Override
+		public int hashCode() {
+			if (this.kind == Kind.QUERY) {
+				return this.query.getQuery().hashCode();
+			}
+			return (Arrays.hashCode(this.values) * 31 + Arrays
+					.hashCode(this.max))
+					* 31 + this.kind.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Search)) {
+				return false;
+			}
+			Search other = (Search) obj;
+			if (this.kind == Kind.QUERY) {
+				return other.kind == Kind.QUERY
+						&& this.query.getQuery().equals(other.query.getQuery());
+			}
+			return this.kind == other.kind
+					&& Arrays.equals(this.values, other.values)
+					&& Arrays.equals(this.max, other.max);
+		}
+
+		@Override
+		public String toString() {
+			if (this.kind == Kind.QUERY) {
+				return this.kind + "[" + this.query.getQuery() + "]";
+			}
+			return this.kind
+					+ Arrays.toString(this.values)
+					+ (this.kind == Kind.RANGE ? Arrays.toString(this.max)
+							: "");
+		}
+	}
+
+	/**
+	 * Queues the changes of the writes, to invalidate the results affected.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class Invalidator implements
+			DataAccessListener<Long, String[]> {
+
+		public void recordInserted(Long pk, String[] record) {
+			recordChange(null, record);
+		}
+
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			recordChange(oldRecord, newRecord);
+		}
+
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			recordChange(oldRecord, null);
+		}
+	}
+}
@@ -0,0 +1,492 @@
+/*
+ * CompiledQuery.java 02/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import suncertify.db.Query;
+import suncertify.db.spec.RecordView;
+
+
+/**
+ * {@link Query} compiled into a tree of predicates testing the encoded
+ * records directly (see {@link RecordView}), so no field value is decoded
+ * while scanning.
+ * <p>
+ * Compilation simplifies the query: nested AND and OR operations are
+ * flattened, constant operands are removed, double negations cancel out, and
+ * the operands of each operation are reordered so the cheapest ones (exact
+ * and prefix comparisons) are tested first. Range bounds are parsed once.
+ * <p>
+ * The most recently used queries are kept compiled (see
+ * {@link #compile(Query)}), so repeated searches skip compilation.
+ * <p>
+ * Instances of this class are immutable, and so thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 02/12/2010
+ */
+final class CompiledQuery implements RecordFilter {
+
+	// Number of compiled queries kept for reuse
+	private static final int CACHE_SIZE = 256;
+
+	/*
+	 * Guarded by its monitor
+	 */
+	private static final Map<Query, CompiledQuery> CACHE = new LinkedHashMap<Query, CompiledQuery>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Query, CompiledQuery> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final Query query;
+	private final Predicate predicate;
+
+	private CompiledQuery(Query query) {
+		this.query = query;
+		this.predicate = query.accept(new Compiler());
+	}
+
+	/**
+	 * Returns the compiled form of a query, compiling it if it is not among
+	 * the most recently used ones.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the compiled query.
+	 */
+	static CompiledQuery compile(Query query) {
+		synchronized (CACHE) {
+			CompiledQuery ret = CACHE.get(query);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		CompiledQuery ret = new CompiledQuery(query);
+		synchronized (CACHE) {
+			CACHE.put(query, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the source query.
+	 * 
+	 * @return the query.
+	 */
+	Query getQuery() {
+		return this.query;
+	}
+
+	/**
+	 * Tests if a record matches the query.
+	 * 
+	 * @param record
+	 *            the record view.
+	 * @return <code>true</code> if the record matches.
+	 */
+	public boolean matches(RecordView record) {
+		return this.predicate.matches(record);
+	}
+
+	/**
+	 * Tests if a record matches the query.
+	 * 
+	 * @param record
+	 *            the record field values.
+	 * @return <code>true</code> if the record matches.
+	 */
+	public boolean matches(String[] record) {
+		return this.predicate.matches(record);
+	}
+
+	@Override
+	public String toString() {
+		return this.predicate.toString();
+	}
+
+	/**
+	 * Node of a compiled query.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private abstract static class Predicate {
+
+		abstract boolean matches(RecordView record);
+
+		abstract boolean matches(String[] record);
+
+		/*
+		 * Relative cost of the test, to order operands
+		 */
+		abstract int cost();
+	}
+
+	/**
+	 * Predicate with a constant result.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Constant extends Predicate {
+
+		static final Constant TRUE = new Constant(true);
+		static final Constant FALSE = new Constant(false);
+
+		private final boolean value;
+
+		private Constant(boolean value) {
+			this.value = value;
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			return this.value;
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			return this.value;
+		}
+
+		@Override
+		int cost() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return this.value ? "TRUE" : "FALSE";
+		}
+	}
+
+	/**
+	 * Exact comparison of a field value.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class EqualTo extends Predicate {
+
+		private final int fieldNo;
+		private final String value;
+
+		EqualTo(int fieldNo, String value) {
+			this.fieldNo = fieldNo;
+			this.value = value;
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			return this.fieldNo < record.getNumberOfFields()
+					&& record.fieldEquals(this.fieldNo, this.value);
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			return this.fieldNo < record.length
+					&& record[this.fieldNo].equals(this.value);
+		}
+
+		@Override
+		int cost() {
+			return 1;
+		}
+
+		@Override
+		public String toString() {
+			return "#" + this.fieldNo + " = \"" + this.value + "\"";
+		}
+	}
+
+	/**
+	 * Prefix comparison of a field value.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class StartsWith extends Predicate {
+
+		private final int fieldNo;
+		private final String prefix;
+
+		StartsWith(int fieldNo, String prefix) {
+			this.fieldNo = fieldNo;
+			this.prefix = prefix;
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			return this.fieldNo < record.getNumberOfFields()
+					&& record.fieldStartsWith(this.fieldNo, this.prefix);
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			return this.fieldNo < record.length
+					&& record[this.fieldNo].startsWith(this.prefix);
+		}
+
+		@Override
+		int cost() {
+			return 1;
+		}
+
+		@Override
+		public String toString() {
+			return "#" + this.fieldNo + " ^= \"" + this.prefix + "\"";
+		}
+	}
+
+	/**
+	 * Range comparison of a field value, in the order of {@link RangeKey}.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Between extends Predicate {
+
+		private final int fieldNo;
+		private final RangeKey min; // null if unbounded
+		private final RangeKey max; // null if unbounded
+
+		Between(int fieldNo, String min, String max) {
+			this.fieldNo = fieldNo;
+			this.min = RangeKey.valueOf(min == null ? null : min.trim());
+			this.max = RangeKey.valueOf(max == null ? null : max.trim());
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			return this.fieldNo < record.getNumberOfFields()
+					&& (this.min == null || compare(record, this.min) >= 0)
+					&& (this.max == null || compare(record, this.max) <= 0);
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			if (this.fieldNo >= record.length) {
+				return false;
+			}
+			RangeKey key = RangeKey.valueOf(record[this.fieldNo]);
+			return (this.min == null || key.compareTo(this.min) >= 0)
+					&& (this.max == null || key.compareTo(this.max) <= 0);
+		}
+
+		/*
+		 * Compares the field value with a bound: numbers as decimals and
+		 * before text
+		 */
+		private int compare(RecordView record, RangeKey bound) {
+			BigDecimal number = bound.getNumber();
+			int ret = record.compareFieldNumber(this.fieldNo,
+					number == null ? BigDecimal.ZERO : number);
+			if (number != null) {
+				return ret == RecordView.NOT_NUMERIC ? 1 : ret;
+			}
+			return ret != RecordView.NOT_NUMERIC ? -1 : record.compareField(
+					this.fieldNo, bound.toString());
+		}
+
+		@Override
+		int cost() {
+			return 2;
+		}
+
+		@Override
+		public String toString() {
+			return "#" + this.fieldNo + " in ["
+					+ (this.min == null ? "*" : "\"" + this.min + "\"") + ", "
+					+ (this.max == null ? "*" : "\"" + this.max + "\"") + "]";
+		}
+	}
+
+	/**
+	 * Conjunction or disjunction of predicates, evaluated in order until the
+	 * result is known.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Junction extends Predicate {
+
+		private final boolean and;
+		private final Predicate[] operands;
+		private final int cost;
+
+		Junction(boolean and, List<Predicate> operands) {
+			this.and = and;
+			this.operands = operands.toArray(new Predicate[operands.size()]);
+			int sum = 1;
+			for (Predicate operand : this.operands) {
+				sum += operand.cost();
+			}
+			this.cost = sum;
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			for (Predicate operand : this.operands) {
+				if (operand.matches(record) != this.and) {
+					return !this.and;
+				}
+			}
+			return this.and;
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			for (Predicate operand : this.operands) {
+				if (operand.matches(record) != this.and) {
+					return !this.and;
+				}
+			}
+			return this.and;
+		}
+
+		@Override
+		int cost() {
+			return this.cost;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("(");
+			for (int i = 0; i < this.operands.length; i++) {
+				sb.append(i == 0 ? "" : this.and ? " AND " : " OR ").append(
+						this.operands[i]);
+			}
+			return sb.append(")").toString();
+		}
+	}
+
+	/**
+	 * Negation of a predicate.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Not extends Predicate {
+
+		private final Predicate operand;
+
+		Not(Predicate operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		boolean matches(RecordView record) {
+			return !this.operand.matches(record);
+		}
+
+		@Override
+		boolean matches(String[] record) {
+			return !this.operand.matches(record);
+		}
+
+		@Override
+		int cost() {
+			return this.operand.cost();
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + this.operand;
+		}
+	}
+
+	/**
+	 * Builds and simplifies the predicates of a query.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Compiler implements Query.Visitor<Predicate> {
+
+		private static final Comparator<Predicate> BY_COST = new Comparator<Predicate>() {
+			public int compare(Predicate p1, Predicate p2) {
+				return p1.cost() - p2.cost();
+			}
+		};
+
+		public Predicate visitEqualTo(int fieldNo, String value) {
+			return new EqualTo(fieldNo, value);
+		}
+
+		public Predicate visitStartsWith(int fieldNo, String prefix) {
+			return new StartsWith(fieldNo, prefix);
+		}
+
+		public Predicate visitBetween(int fieldNo, String min, String max) {
+			return new Between(fieldNo, min, max);
+		}
+
+		public Predicate visitAnd(List<Predicate> operands) {
+			return junction(true, operands);
+		}
+
+		public Predicate visitOr(List<Predicate> operands) {
+			return junction(false, operands);
+		}
+
+		public Predicate visitNot(Predicate operand) {
+			if (operand instanceof Constant) {
+				return operand == Constant.TRUE ? Constant.FALSE
+						: Constant.TRUE;
+			}
+			if (operand instanceof Not) {
+				return ((Not) operand).operand;
+			}
+			return new Not(operand);
+		}
+
+		/*
+		 * Flattens nested junctions of the same kind and removes constants
+		 */
+		private static Predicate junction(boolean and, List<Predicate> operands) {
+			Constant neutral = and ? Constant.TRUE : Constant.FALSE;
+			List<Predicate> flat = new ArrayList<Predicate>();
+			for (Predicate operand : operands) {
+				if (operand == neutral) {
+					continue;
+				}
+				if (operand instanceof Constant) {
+					return operand; // absorbing element
+				}
+				if (operand instanceof Junction
+						&& ((Junction) operand).and == and) {
+					Collections.addAll(flat, ((Junction) operand).operands);
+				} else {
+					flat.add(operand);
+				}
+			}
+			if (flat.isEmpty()) {
+				return neutral;
+			}
+			if (flat.size() == 1) {
+				return flat.get(0);
+			}
+			Collections.sort(flat, BY_COST);
+			return new Junction(and, flat);
+		}
+	}
+}
@@ -0,0 +1,512 @@
+/*
+ * CompressedBitmap.java 22/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Compressed set of record numbers, in the manner of <i>Roaring</i> bitmaps.
+ * <p>
+ * Values are grouped in chunks by their 16 high bits. Each chunk is stored in
+ * a container chosen by its cardinality: a sorted array of the 16 low bits
+ * for sparse chunks (up to 4096 values, 8 KB at most), or a plain bitmap of
+ * 65536 bits (8 KB) for dense ones. Intersections and unions are computed
+ * chunk by chunk, a 64 bit word at a time between bitmap containers.
+ * <p>
+ * Values must be in the range [0, 2<sup>32</sup>). Instances of this class
+ * are not thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 22/11/2010
+ */
+final class CompressedBitmap {
+
+	// Maximum cardinality of an array container
+	private static final int ARRAY_MAX_SIZE = 4096;
+
+	// Words of a bitmap container
+	private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+	private static final long MAX_VALUE = (1L << 32) - 1;
+
+	// Containers by the 16 high bits of their values
+	private final TreeMap<Integer, Container> containers = new TreeMap<Integer, Container>();
+
+	/**
+	 * Creates a bitmap with the specified values.
+	 * 
+	 * @param values
+	 *            the values.
+	 * @return a new bitmap.
+	 */
+	@SuppressWarnings("boxing")
+	static CompressedBitmap valueOf(Long[] values) {
+		CompressedBitmap ret = new CompressedBitmap();
+		for (Long value : values) {
+			ret.add(value);
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds a value.
+	 * 
+	 * @param value
+	 *            the value.
+	 */
+	@SuppressWarnings("boxing")
+	void add(long value) {
+		Integer key = highBits(value);
+		Container container = this.containers.get(key);
+		if (container == null) {
+			container = new ArrayContainer();
+		}
+		this.containers.put(key, container.add(lowBits(value)));
+	}
+
+	/**
+	 * Removes a value.
+	 * 
+	 * @param value
+	 *            the value.
+	 */
+	@SuppressWarnings("boxing")
+	void remove(long value) {
+		Integer key = highBits(value);
+		Container container = this.containers.get(key);
+		if (container != null) {
+			container = container.remove(lowBits(value));
+			if (container.getCardinality() == 0) {
+				this.containers.remove(key);
+			} else {
+				this.containers.put(key, container);
+			}
+		}
+	}
+
+	/**
+	 * Tests if a value is present.
+	 * 
+	 * @param value
+	 *            the value.
+	 * @return <code>true</code> if present.
+	 */
+	@SuppressWarnings("boxing")
+	boolean contains(long value) {
+		Container container = this.containers.get(highBits(value));
+		return container != null && container.contains(lowBits(value));
+	}
+
+	/**
+	 * Returns the number of values.
+	 * 
+	 * @return the cardinality.
+	 */
+	int getCardinality() {
+		int ret = 0;
+		for (Container container : this.containers.values()) {
+			ret += container.getCardinality();
+		}
+		return ret;
+	}
+
+	/**
+	 * Tests if the bitmap has no values.
+	 * 
+	 * @return <code>true</code> if empty.
+	 */
+	boolean isEmpty() {
+		return this.containers.isEmpty();
+	}
+
+	/**
+	 * Returns the intersection with another bitmap.
+	 * 
+	 * @param other
+	 *            the other bitmap.
+	 * @return a new bitmap.
+	 */
+	CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap ret = new CompressedBitmap();
+		Iterator<Map.Entry<Integer, Container>> it1 = this.containers
+				.entrySet().iterator();
+		Iterator<Map.Entry<Integer, Container>> it2 = other.containers
+				.entrySet().iterator();
+		Map.Entry<Integer, Container> e1 = it1.hasNext() ? it1.next() : null;
+		Map.Entry<Integer, Container> e2 = it2.hasNext() ? it2.next() : null;
+		while (e1 != null && e2 != null) {
+			int cmp = e1.getKey().compareTo(e2.getKey());
+			if (cmp == 0) {
+				Container container = e1.getValue().and(e2.getValue());
+				if (container.getCardinality() > 0) {
+					ret.containers.put(e1.getKey(), container);
+				}
+			}
+			if (cmp <= 0) {
+				e1 = it1.hasNext() ? it1.next() : null;
+			}
+			if (cmp >= 0) {
+				e2 = it2.hasNext() ? it2.next() : null;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the union with another bitmap.
+	 * 
+	 * @param other
+	 *            the other bitmap.
+	 * @return a new bitmap.
+	 */
+	CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap ret = new CompressedBitmap();
+		for (Map.Entry<Integer, Container> entry : this.containers.entrySet()) {
+			Container container = other.containers.get(entry.getKey());
+			ret.containers.put(entry.getKey(), container == null ? entry
+					.getValue().copy() : entry.getValue().or(container));
+		}
+		for (Map.Entry<Integer, Container> entry : other.containers.entrySet()) {
+			if (!ret.containers.containsKey(entry.getKey())) {
+				ret.containers.put(entry.getKey(), entry.getValue().copy());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the values in ascending order.
+	 * 
+	 * @return a new array.
+	 */
+	@SuppressWarnings("boxing")
+	Long[] toArray() {
+		Long[] ret = new Long[getCardinality()];
+		int offset = 0;
+		for (Map.Entry<Integer, Container> entry : this.containers.entrySet()) {
+			offset = entry.getValue().toArray((long) entry.getKey() << 16, ret,
+					offset);
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedBitmap[cardinality=" + getCardinality()
+				+ ", containers=" + this.containers.size() + "]";
+	}
+
+	@SuppressWarnings("boxing")
+	private static Integer highBits(long value) {
+		if (value < 0 || value > MAX_VALUE) {
+			throw new IllegalArgumentException("Value out of range: " + value);
+		}
+		return (int) (value >>> 16);
+	}
+
+	private static char lowBits(long value) {
+		return (char) value;
+	}
+
+	/**
+	 * Set of 16 bit values. Operations returning a container may return this
+	 * instance or a new one of a different kind, when the cardinality crosses
+	 * {@link CompressedBitmap#ARRAY_MAX_SIZE}.
+	 */
+	private abstract static class Container {
+
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		abstract boolean contains(char value);
+
+		abstract int getCardinality();
+
+		abstract Container and(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container copy();
+
+		/*
+		 * Stores the values, plus high, from offset. Returns the next offset.
+		 */
+		abstract int toArray(long high, Long[] dest, int offset);
+	}
+
+	/**
+	 * Sparse container, a sorted array of values.
+	 */
+	private static final class ArrayContainer extends Container {
+
+		private char[] values;
+		private int size;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		Container add(char value) {
+			int pos = Arrays.binarySearch(this.values, 0, this.size, value);
+			if (pos >= 0) {
+				return this;
+			}
+			if (this.size == ARRAY_MAX_SIZE) {
+				return toBitmap().add(value);
+			}
+			pos = -pos - 1;
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.min(
+						ARRAY_MAX_SIZE, Math.max(4, this.size * 2)));
+			}
+			System.arraycopy(this.values, pos, this.values, pos + 1, this.size
+					- pos);
+			this.values[pos] = value;
+			this.size++;
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			int pos = Arrays.binarySearch(this.values, 0, this.size, value);
+			if (pos >= 0) {
+				System.arraycopy(this.values, pos + 1, this.values, pos,
+						this.size - pos - 1);
+				this.size--;
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(this.values, 0, this.size, value) >= 0;
+		}
+
+		@Override
+		int getCardinality() {
+			return this.size;
+		}
+
+		@Override
+		Container and(Container other) {
+			char[] ret = new char[Math.min(this.size, other.getCardinality())];
+			int n = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (other.contains(this.values[i])) {
+					ret[n++] = this.values[i];
+				}
+			}
+			return new ArrayContainer(ret, n);
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			if (this.size + o.size > ARRAY_MAX_SIZE) {
+				return toBitmap().or(o);
+			}
+
+			// Merge
+			char[] ret = new char[this.size + o.size];
+			int i = 0;
+			int j = 0;
+			int n = 0;
+			while (i < this.size && j < o.size) {
+				if (this.values[i] < o.values[j]) {
+					ret[n++] = this.values[i++];
+				} else if (this.values[i] > o.values[j]) {
+					ret[n++] = o.values[j++];
+				} else {
+					ret[n++] = this.values[i++];
+					j++;
+				}
+			}
+			while (i < this.size) {
+				ret[n++] = this.values[i++];
+			}
+			while (j < o.size) {
+				ret[n++] = o.values[j++];
+			}
+			return new ArrayContainer(ret, n);
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values, this.size),
+					this.size);
+		}
+
+		@Override
+		@SuppressWarnings("boxing")
+		int toArray(long high, Long[] dest, int offset) {
+			for (int i = 0; i < this.size; i++) {
+				dest[offset++] = high | this.values[i];
+			}
+			return offset;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer ret = new BitmapContainer();
+			for (int i = 0; i < this.size; i++) {
+				ret.add(this.values[i]);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Dense container, a bitmap of 2<sup>16</sup> bits.
+	 */
+	private static final class BitmapContainer extends Container {
+
+		private final long[] words;
+		private int cardinality;
+
+		BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		Container add(char value) {
+			long bit = 1L << value;
+			int word = value >>> 6;
+			if ((this.words[word] & bit) == 0) {
+				this.words[word] |= bit;
+				this.cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			long bit = 1L << value;
+			int word = value >>> 6;
+			if ((this.words[word] & bit) != 0) {
+				this.words[word] &= ~bit;
+				this.cardinality--;
+				if (this.cardinality <= ARRAY_MAX_SIZE) {
+					return toArrayContainer();
+				}
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (this.words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		int getCardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] o = ((BitmapContainer) other).words;
+			long[] ret = new long[BITMAP_WORDS];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				ret[i] = this.words[i] & o[i];
+				n += Long.bitCount(ret[i]);
+			}
+			BitmapContainer container = new BitmapContainer(ret, n);
+			return n <= ARRAY_MAX_SIZE ? container.toArrayContainer()
+					: container;
+		}
+
+		@Override
+		Container or(Container other) {
+			long[] ret = this.words.clone();
+			int n = this.cardinality;
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				for (int i = 0; i < o.size; i++) {
+					long bit = 1L << o.values[i];
+					int word = o.values[i] >>> 6;
+					if ((ret[word] & bit) == 0) {
+						ret[word] |= bit;
+						n++;
+					}
+				}
+			} else {
+				long[] o = ((BitmapContainer) other).words;
+				n = 0;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					ret[i] |= o[i];
+					n += Long.bitCount(ret[i]);
+				}
+			}
+			return new BitmapContainer(ret, n);
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(this.words.clone(), this.cardinality);
+		}
+
+		@Override
+		@SuppressWarnings("boxing")
+		int toArray(long high, Long[] dest, int offset) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					dest[offset++] = high | (i << 6)
+							| Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+
+		private ArrayContainer toArrayContainer() {
+			char[] values = new char[this.cardinality];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					values[n++] = (char) ((i << 6) | Long
+							.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, n);
+		}
+	}
+}
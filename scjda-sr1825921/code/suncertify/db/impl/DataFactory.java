@@ -0,0 +1,300 @@
+/*
+ * DataFactory.java 02/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import suncertify.commons.PropertiesManager;
+import suncertify.db.Data;
+import suncertify.db.NotSupportedDataBaseException;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+
+
+/**
+ * Creates the {@link Data} instances used by the server and the standalone
+ * client, wiring together the implementations of the three {@link Data}
+ * concerns configured in the following <i>overridable</i> fields (see
+ * {@link PropertiesManager}).
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 02/11/2010
+ */
+public final class DataFactory {
+
+	// Force period used if none is configured, in milliseconds
+	private static final long DEFAULT_FORCE_PERIOD = 1000;
+
+	/**
+	 * Use a memory mapped storage engine ({@link MappedURLyBirdFile_1_2_1})
+	 * instead of the default one ({@link URLyBirdFile_1_2_1}). This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static boolean memoryMapped = false;
+
+	/**
+	 * Memory budget in bytes of the record cache placed in front of the
+	 * storage engine ({@link CachingDataAccessObject}). Zero or a negative
+	 * value disables the cache. This value is overwritten by
+	 * {@link PropertiesManager}.
+	 */
+	public static long recordCacheBytes = 4 * 1024 * 1024;
+
+	/**
+	 * Name of the {@link DurabilityMode} of the storage engine. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static String durabilityMode = DurabilityMode.OS_BUFFERED.name();
+
+	/**
+	 * Period between forces in {@link DurabilityMode#PERIODIC_FORCE} mode, or
+	 * time a group commit waits for more writes in
+	 * {@link DurabilityMode#GROUP_COMMIT} mode, in milliseconds. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static long durabilityMillis = 0;
+
+	/**
+	 * Use a write-ahead log (see {@link WriteAheadLog}). This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static boolean writeAheadLog = false;
+
+	/**
+	 * Write-ahead log size that triggers a checkpoint, in bytes. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static long checkpointBytes = 4 * 1024 * 1024;
+
+	/**
+	 * Number of threads used to search records. Values greater than one
+	 * select {@link ParallelFinderImp} instead of {@link DefaultFinderImp}.
+	 * This value is overwritten by {@link PropertiesManager}.
+	 */
+	public static int finderParallelism = 1;
+
+	/**
+	 * Comma separated numbers of the fields indexed by
+	 * {@link IndexedFinderImp}, for example <code>"0,1"</code> for hotel name
+	 * and location. An empty value disables the indexes. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static String indexedFields = "";
+
+	/**
+	 * Make searches on indexed fields case insensitive. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static boolean caseInsensitiveIndex = false;
+
+	/**
+	 * Comma separated numbers of the low cardinality fields indexed by
+	 * {@link BitmapFinderImp}, for example <code>"1,2,3"</code> for location,
+	 * room size and smoking flag. An empty value disables the indexes. This
+	 * value is overwritten by {@link PropertiesManager}.
+	 */
+	public static String bitmapIndexedFields = "";
+
+	/**
+	 * Choose between the prefix and bitmap indexes and a scan for each search,
+	 * from the estimated cost of each way ({@link PlannerFinderImp}). Ignored
+	 * with {@link #caseInsensitiveIndex}, whose searches can not be answered
+	 * by a scan. This value is overwritten by {@link PropertiesManager}.
+	 */
+	public static boolean queryPlanner = true;
+
+	/**
+	 * Comma separated numbers of the fields indexed by {@link RangeFinderImp},
+	 * for example <code>"4,5"</code> for rate and date available. An empty
+	 * value disables the indexes. This value is overwritten by
+	 * {@link PropertiesManager}.
+	 */
+	public static String rangeIndexedFields = "";
+
+	/**
+	 * Comma separated numbers of the fields indexed by {@link NGramFinderImp}
+	 * for substring searches, for example <code>"0,1"</code> for hotel name
+	 * and location. An empty value disables the indexes. This value is
+	 * overwritten by {@link PropertiesManager}.
+	 */
+	public static String ngramIndexedFields = "";
+
+	/**
+	 * Number of the field whose empty value marks the available records, kept
+	 * by {@link AvailabilityFinderImp}, by default the customer holding the
+	 * booking. A negative value disables the index. This value is overwritten
+	 * by {@link PropertiesManager}.
+	 */
+	public static int availabilityField = 6;
+
+	/**
+	 * Maximum number of search results cached by {@link CachingFinderImp}.
+	 * Zero disables the cache. This value is overwritten by
+	 * {@link PropertiesManager}.
+	 */
+	public static int queryCacheEntries = 128;
+
+	/**
+	 * Lease time of the record locks in milliseconds, after which a lock not
+	 * renewed is released, so a client that dies holding it does not block
+	 * the record until the server notices (see {@link BaseLockManagerImpl}).
+	 * Zero disables leases. This value is overwritten by
+	 * {@link PropertiesManager}.
+	 */
+	public static long lockLeaseMillis = 0;
+
+	/*
+	 * Tell the PropertiesManager to overwrite public static not final fields,
+	 * from previous executions stored values.
+	 */
+	static {
+		PropertiesManager.getInstance().overrideFieldValues();
+	}
+
+	/**
+	 * Creates a new {@link Data} instance for the specified database file.
+	 * <br>
+	 * Record reads and writes go through the record cache, if enabled. The
+	 * finder accesses the storage engine directly, so that scanning every
+	 * record does not evict the frequently read ones.
+	 * 
+	 * @param dbFile
+	 *            the database file.
+	 * @return the new instance.
+	 * @throws IOException
+	 *             if an error occurs.
+	 * @throws NotSupportedDataBaseException
+	 *             if the file format is not supported.
+	 */
+	public static Data createData(File dbFile) throws IOException,
+			NotSupportedDataBaseException {
+
+		DataAccessObject<Long, String[]> dao = createDataAccessObject(dbFile);
+		FinderObject<Long, String[]> finder = createFinderObject(dao);
+		DefaultLockManagerImpl<Long> lockManagerImpl = new DefaultLockManagerImpl<Long>(
+				lockLeaseMillis);
+		if (recordCacheBytes > 0) {
+			Logger.getLogger(DataFactory.class.getName()).info(
+					"Record cache enabled, " + recordCacheBytes + " bytes");
+			dao = new CachingDataAccessObject(dao, recordCacheBytes);
+		}
+		return new Data(dao, finder, lockManagerImpl);
+	}
+
+	/**
+	 * Creates the finder configured for the specified data access object.
+	 * 
+	 * @param dao
+	 *            the data access object.
+	 * @return the new finder object.
+	 */
+	public static FinderObject<Long, String[]> createFinderObject(
+			DataAccessObject<Long, String[]> dao) {
+
+		FinderObject<Long, String[]> scanFinder;
+		if (finderParallelism > 1) {
+			Logger.getLogger(DataFactory.class.getName()).info(
+					"Creating parallel finder, " + finderParallelism
+							+ " threads");
+			scanFinder = new ParallelFinderImp(dao, finderParallelism);
+		} else {
+			scanFinder = new DefaultFinderImp(dao);
+		}
+		FinderObject<Long, String[]> ret = scanFinder;
+		IndexedFinderImp prefixIndexes = null;
+		BitmapFinderImp bitmapIndexes = null;
+		if (indexedFields.trim().length() > 0) {
+			prefixIndexes = new IndexedFinderImp(dao, ret,
+					parseFields(indexedFields), caseInsensitiveIndex);
+			ret = prefixIndexes;
+		}
+		if (bitmapIndexedFields.trim().length() > 0) {
+			bitmapIndexes = new BitmapFinderImp(dao, ret,
+					parseFields(bitmapIndexedFields));
+			ret = bitmapIndexes;
+		}
+		if (queryPlanner && !caseInsensitiveIndex
+				&& (prefixIndexes != null || bitmapIndexes != null)) {
+			ret = new PlannerFinderImp(dao, scanFinder, prefixIndexes,
+					bitmapIndexes);
+		}
+		if (rangeIndexedFields.trim().length() > 0) {
+			ret = new RangeFinderImp(dao, ret, parseFields(rangeIndexedFields));
+		}
+		if (ngramIndexedFields.trim().length() > 0) {
+			ret = new NGramFinderImp(dao, ret, parseFields(ngramIndexedFields));
+		}
+		if (availabilityField >= 0) {
+			ret = new AvailabilityFinderImp(dao, ret, availabilityField);
+		}
+		if (queryCacheEntries > 0) {
+			ret = new CachingFinderImp(dao, ret, queryCacheEntries);
+		}
+		return ret;
+	}
+
+	/**
+	 * Creates the storage engine configured for the specified database file.
+	 * 
+	 * @param dbFile
+	 *            the database file.
+	 * @return the new data access object.
+	 * @throws IOException
+	 *             if an error occurs.
+	 * @throws NotSupportedDataBaseException
+	 *             if the file format is not supported.
+	 */
+	public static DataAccessObject<Long, String[]> createDataAccessObject(
+			File dbFile) throws IOException, NotSupportedDataBaseException {
+
+		Logger.getLogger(DataFactory.class.getName()).info(
+				"Creating " + (memoryMapped ? "memory mapped" : "default")
+						+ " storage engine for " + dbFile.getAbsolutePath());
+		BaseURLyBirdFile_1_2_1 ret;
+		if (memoryMapped) {
+			ret = new MappedURLyBirdFile_1_2_1(dbFile);
+		} else {
+			ret = new URLyBirdFile_1_2_1(dbFile);
+		}
+		DurabilityMode mode = DurabilityMode.valueOf(durabilityMode);
+		ret.setDurabilityMode(mode,
+				mode == DurabilityMode.PERIODIC_FORCE && durabilityMillis <= 0
+						? DEFAULT_FORCE_PERIOD : durabilityMillis);
+		if (writeAheadLog) {
+			ret.enableWriteAheadLog(checkpointBytes);
+		}
+		return ret;
+	}
+
+	/*
+	 * Parses a comma separated list of field numbers
+	 */
+	private static int[] parseFields(String fields) {
+		String[] values = fields.split(",");
+		int[] ret = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			ret[i] = Integer.parseInt(values[i].trim());
+		}
+		return ret;
+	}
+
+	private DataFactory() {
+		// This class is not instantiable.
+	}
+}
@@ -16,11 +16,14 @@
 
 package suncertify.db.impl;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
+
 import suncertify.commons.LoggingObject;
-import suncertify.db.RecordNotFoundException;
+import suncertify.db.Query;
 import suncertify.db.spec.DataAccessObject;
 import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
 
 
 /**
@@ -51,7 +54,7 @@ public final class DefaultFinderImp extends LoggingObject implements FinderObjec
 	 * database file is described by criteria[n]. A null value in criteria[n] matches any field
 	 * value. A non-null  value in criteria[n] matches any field value that begins with criteria[n]. 
 	 * (For example, "Fred" matches "Fred" or "Freddy".)<br>
-     * A simple iterative algorithm is used.
+     * The records are tested in a single sequential pass (see {@link DataAccessObject#scan()}).
      *  
 	 * @param criteria filter values.
 	 * @return the array of record numbers.
@@ -61,59 +64,136 @@ public final class DefaultFinderImp extends LoggingObject implements FinderObjec
 		if(criteria == null || criteria.length == 0){
 			return null;
 		}
+		return find(new RecordMatcher(criteria));
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified criteria, with the 
+	 * field semantics of {@link #findByCriteria(String[])}. A record matches if at least one 
+	 * of the non-null criteria values matches its field.<br>
+	 * The records are tested in a single sequential pass (see {@link DataAccessObject#scan()}).
+	 * 
+	 * @param criteria filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
 		
-		// Used to store matching record numbers
-        Vector <Long>vals = new Vector<Long>();
+		if(criteria == null || criteria.length == 0){
+			return null;
+		}
+		return find(new RecordMatcher(criteria, true));
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the specified bounds. 
+	 * Field n in the database file is bounded by min[n] and max[n], both inclusive. A null 
+	 * value is unbounded. Numeric values (optionally preceded by a currency symbol, as 
+	 * "$150.00") are compared as decimals; the rest (as dates in yyyy/MM/dd format) as text.
+	 * <br>
+	 * The records are tested in a single sequential pass (see {@link DataAccessObject#scan()}).
+	 * 
+	 * @param min lower bounds.
+	 * @param max upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
 		
-        /*
-         * For each record in the datasource:
-         */
-        Long[] pks = this.dao.findAll();
-		loopRecords: 			
-		for (int i = 0; i < pks.length; i++) {
-			Long pk = pks[i];
-			try {
-				String[] datos = this.dao.findByPrimaryKey(pk);
-				
-				/*
-				 * For each field in the specified criteria array:
-				 */
-				for (int j = 0; (j < criteria.length && j < datos.length); j++) {
-					/*
-				     * If criteria is not null and does not match, escape to the next record 
-					 */
-				    if(criteria[j] != null && !this.matches(criteria[j],datos[j])){
-				        continue loopRecords;                
-				    }
+		if(min == null || max == null){
+			return null;
+		}
+		return find(RecordMatcher.forRange(min, max));
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the specified criteria. 
+	 * Field n in the database file is described by criteria[n]. A null value in criteria[n] 
+	 * matches any field value. A non-null value in criteria[n] matches any field value that 
+	 * contains criteria[n]. (For example, "view" matches "Grandview" or "Viewpoint view".)<br>
+	 * The records are tested in a single sequential pass (see {@link DataAccessObject#scan()}).
+	 * 
+	 * @param criteria filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		
+		if(criteria == null || criteria.length == 0){
+			return null;
+		}
+		return find(RecordMatcher.forSubstring(criteria));
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query. The query is
+	 * compiled once (see {@link CompiledQuery}) and tested on the encoded records.<br>
+	 * The records are tested in a single sequential pass (see {@link DataAccessObject#scan()}).
+	 * 
+	 * @param query the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		
+		if(query == null){
+			return null;
+		}
+		return find(CompiledQuery.compile(query));
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the specified query, in 
+	 * record number order. The records are tested in a sequential pass from the record 
+	 * following after (see {@link DataAccessObject#scan(Object, Object)}), that stops once 
+	 * limit records have matched.
+	 * 
+	 * @param query the query.
+	 * @param after the record number to start after, <code>null</code> to start from the 
+	 *            first record.
+	 * @param limit the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	@SuppressWarnings("boxing")
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		
+		if(query == null){
+			return null;
+		}
+		RecordFilter matcher = CompiledQuery.compile(query);
+		List<Long> vals = new ArrayList<Long>();
+		RecordCursor<Long, String[]> cursor = this.dao.scan(after == null ? 0 : after + 1, 
+				Long.MAX_VALUE);
+		try {
+			while (vals.size() < limit && cursor.next()) {
+				if (matcher.matches(cursor.getRecordView())) {
+					vals.add(cursor.getPrimaryKey());
 				}
-				/*
-				 * If executions is here then this is a matching record, so 
-				 * we store the record pk in the collection:
-				 */
-				vals.add(pk);
-			/*
-			 * Record could be deleted concurrently.
-			 */
-			} catch (RecordNotFoundException e) {
-				this.logger.info("Record deleted between findAll() and findByPrimaryKey(): " + e.getMessage());
 			}
+		} finally {
+			cursor.close();
 		}
+		return vals.toArray(new Long[vals.size()]);
+	}
+
+	/*
+	 * Returns the records accepted by the matcher
+	 */
+	private Long[] find(RecordFilter matcher) {
+		
+		// Used to store matching record numbers
+        List<Long> vals = new ArrayList<Long>();
+		
         /*
-         * Construct the output array from the collection
+         * For each record in the datasource:
          */
-        
-        Long[] ret = new Long[vals.size()];
-		for (int i = 0; i < ret.length; i++) {
-			ret[i] = vals.get(i);
-		}
+        RecordCursor<Long, String[]> cursor = this.dao.scan();
+        try {
+        	while (cursor.next()) {
+        		if (matcher.matches(cursor.getRecordView())) {
+        			vals.add(cursor.getPrimaryKey());
+        		}
+        	}
+        } finally {
+        	cursor.close();
+        }
 
-		return ret;
+        return vals.toArray(new Long[vals.size()]);
 	}
-
-	/*
-     * A non-null value in criteria matches any objectString that begins with criteria value
-     */
-    private boolean matches(String criteria, String str){
-        return str.regionMatches(false,0,criteria,0,criteria.length());
-    }
 }
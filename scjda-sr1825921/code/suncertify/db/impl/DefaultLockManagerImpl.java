@@ -15,9 +15,13 @@
 
 package suncertify.db.impl;
 
+import java.util.Random;
+
 
 /**
  * Concrete subclass of {@link BaseLockManagerImpl} that uses random Long cookies.
+ * Each thread draws its cookies from its own generator, so that concurrent locks
+ * do not contend for a shared seed, as they would with {@link Math#random()}.
  * 
  * @author Ignacio del Valle Alles
  * @version 1.0 28/09/2010 
@@ -25,12 +29,36 @@ package suncertify.db.impl;
  */
 public class DefaultLockManagerImpl<K> extends BaseLockManagerImpl<K,Long>{
 	
+	private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+	
+	/**
+	 * Creates a new instance whose locks are held until they are released.
+	 */
+	public DefaultLockManagerImpl() {
+		super();
+	}
+	
+	/**
+	 * Creates a new instance whose locks expire after the specified lease time.
+	 * 
+	 * @param leaseMillis the lease time in milliseconds. Zero or a negative value 
+	 *            disables leases.
+	 */
+	public DefaultLockManagerImpl(long leaseMillis) {
+		super(leaseMillis);
+	}
+	
 	@SuppressWarnings("boxing") 
 	@Override
 	 /**
 	  * {@inheritDoc} 
 	  */
 	protected Long createCookie() {
-		return Math.round((Math.random() * Long.MAX_VALUE));
+		return RANDOM.get().nextLong() & Long.MAX_VALUE;
 	}
 }
@@ -0,0 +1,46 @@
+/*
+ * DurabilityMode.java 10/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+
+/**
+ * When the writes of a {@link BaseURLyBirdFile_1_2_1} are forced to the
+ * storage device.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 10/11/2010
+ */
+public enum DurabilityMode {
+
+	/**
+	 * Writes are left to the operating system, that stores them when it
+	 * decides. A system crash can lose recent writes.
+	 */
+	OS_BUFFERED,
+
+	/**
+	 * Writes are forced periodically by a background thread. A system crash
+	 * can lose the writes of the last period.
+	 */
+	PERIODIC_FORCE,
+
+	/**
+	 * Write methods return once the write has been forced. Concurrent writes
+	 * share a single force (group commit).
+	 */
+	GROUP_COMMIT;
+}
@@ -0,0 +1,156 @@
+/*
+ * GroupCommitter.java 10/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.IOException;
+
+
+/**
+ * Keeps track of the writes performed and the ones already forced to the
+ * storage device, sharing a single force among concurrent writers.
+ * <p>
+ * Every write gets a sequence number from {@link #written()}. A thread
+ * waiting for its write to be durable ({@link #awaitDurable(long, long)})
+ * either waits for a force in progress covering it, or becomes the leader
+ * and performs a force covering all the writes done so far, including the
+ * ones of the threads waiting behind it.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 10/11/2010
+ */
+abstract class GroupCommitter {
+
+	/*
+	 * Fields guarded by the instance monitor
+	 */
+	private long writtenSeq; // last write performed
+	private long durableSeq; // last write forced
+	private boolean forcing; // a leader is forcing
+
+	/**
+	 * Forces the writes performed to the storage device.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	abstract void force() throws IOException;
+
+	/**
+	 * Registers a write. Must be invoked in the same order the writes are
+	 * performed, that is, holding the write lock.
+	 * 
+	 * @return the sequence number of the write.
+	 */
+	synchronized long written() {
+		return ++this.writtenSeq;
+	}
+
+	/**
+	 * Blocks until the specified write has been forced.
+	 * 
+	 * @param seq
+	 *            the sequence number of the write.
+	 * @param windowMillis
+	 *            time a leader waits before forcing, letting more writes join
+	 *            the batch.
+	 * @throws IOException
+	 *             if the force performed by this thread fails.
+	 */
+	void awaitDurable(long seq, long windowMillis) throws IOException {
+
+		synchronized (this) {
+			while (this.durableSeq < seq) {
+				if (!this.forcing) {
+					this.forcing = true;
+					break;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted waiting for commit");
+				}
+			}
+			if (this.durableSeq >= seq) {
+				return;
+			}
+		}
+
+		/*
+		 * This thread is the leader
+		 */
+		if (windowMillis > 0) {
+			try {
+				Thread.sleep(windowMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		forceWritten();
+	}
+
+	/**
+	 * Forces the writes performed so far, if any is pending. Used by the
+	 * periodic force.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	void forcePending() throws IOException {
+		synchronized (this) {
+			while (this.forcing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if (this.durableSeq == this.writtenSeq) {
+				return;
+			}
+			this.forcing = true;
+		}
+		forceWritten();
+	}
+
+	/*
+	 * Performs a force as leader. If it fails, the waiting threads elect a new
+	 * leader that tries again.
+	 */
+	private void forceWritten() throws IOException {
+		long target;
+		synchronized (this) {
+			target = this.writtenSeq;
+		}
+		boolean forced = false;
+		try {
+			force();
+			forced = true;
+		} finally {
+			synchronized (this) {
+				if (forced) {
+					this.durableSeq = Math.max(this.durableSeq, target);
+				}
+				this.forcing = false;
+				notifyAll();
+			}
+		}
+	}
+}
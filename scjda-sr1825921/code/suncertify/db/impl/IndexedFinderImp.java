@@ -0,0 +1,438 @@
+/*
+ * IndexedFinderImp.java 19/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation keeping a {@link PrefixIndex} for each
+ * of the specified fields.
+ * <p>
+ * The indexes are built at creation time with a scan of the records, and
+ * kept up to date listening to the changes of the data access object (see
+ * {@link DataAccessListener}), so instances must be created before the
+ * database starts to be modified.
+ * <p>
+ * Searches with criteria on indexed fields intersect the matches of each
+ * index. The criteria on not indexed fields, if any, are then checked
+ * reading the candidate records. Searches without criteria on indexed fields
+ * are delegated to a fallback finder.<br>
+ * In <i>folded</i> mode, criteria on indexed fields are case insensitive.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 19/11/2010
+ */
+public final class IndexedFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final FinderObject<Long, String[]> fallback;
+	private final PrefixIndex[] indexes; // by field number, null if none
+	private final boolean folded;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new instance, building the indexes of the specified fields.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param fallback
+	 *            the finder used in searches without criteria on indexed
+	 *            fields.
+	 * @param fields
+	 *            the indexed fields.
+	 * @param folded
+	 *            <code>true</code> for case insensitive searches on indexed
+	 *            fields.
+	 * @throws IllegalArgumentException
+	 *             if dao or fallback are <code>null</code>, or a field is
+	 *             negative.
+	 */
+	@SuppressWarnings("boxing")
+	public IndexedFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> fallback, int[] fields, boolean folded) {
+
+		if (dao == null || fallback == null) {
+			throw new IllegalArgumentException(
+					"dao and fallback must be not null");
+		}
+		this.dao = dao;
+		this.fallback = fallback;
+		this.folded = folded;
+
+		int maxField = -1;
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] < 0) {
+				throw new IllegalArgumentException("Invalid field " + fields[i]);
+			}
+			maxField = Math.max(maxField, fields[i]);
+		}
+		this.indexes = new PrefixIndex[maxField + 1];
+		for (int i = 0; i < fields.length; i++) {
+			this.indexes[fields[i]] = new PrefixIndex(fields[i], folded);
+		}
+
+		/*
+		 * Build the indexes
+		 */
+		this.lock.writeLock().lock();
+		try {
+			this.dao.addDataAccessListener(new IndexUpdater());
+			RecordCursor<Long, String[]> cursor = this.dao.scan();
+			try {
+				while (cursor.next()) {
+					String[] record = cursor.getRecord();
+					for (PrefixIndex index : this.indexes) {
+						if (index != null) {
+							index.add(cursor.getPrimaryKey(), record);
+						}
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		this.logger.log(Level.INFO, "Indexes built for fields "
+				+ Arrays.toString(fields)
+				+ (folded ? " (case insensitive)" : ""));
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria,
+	 * with the semantics of {@link DefaultFinderImp#findByCriteria(String[])}
+	 * (case insensitive on indexed fields in folded mode).
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+
+		/*
+		 * Intersect the matches of the indexed criteria
+		 */
+		TreeSet<Long> candidates = null;
+		String[] residual = new String[criteria.length];
+		boolean hasResidual = false;
+		this.lock.readLock().lock();
+		try {
+			for (int j = 0; j < criteria.length; j++) {
+				if (criteria[j] == null) {
+					continue;
+				}
+				PrefixIndex index = j < this.indexes.length ? this.indexes[j]
+						: null;
+				if (index == null) {
+					residual[j] = criteria[j];
+					hasResidual = true;
+					continue;
+				}
+				TreeSet<Long> found = index.find(criteria[j]);
+				if (candidates == null) {
+					candidates = found;
+				} else if (found.size() < candidates.size()) {
+					found.retainAll(candidates);
+					candidates = found;
+				} else {
+					candidates.retainAll(found);
+				}
+				if (candidates.isEmpty()) {
+					return new Long[0];
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		if (candidates == null) {
+			return this.fallback.findByCriteria(criteria);
+		}
+		if (!hasResidual) {
+			return candidates.toArray(new Long[candidates.size()]);
+		}
+
+		/*
+		 * Check the not indexed criteria
+		 */
+		RecordMatcher matcher = new RecordMatcher(residual);
+		List<Long> ret = new ArrayList<Long>();
+		for (Long recNo : candidates) {
+			try {
+				if (matcher.matches(this.dao.findByPrimaryKey(recNo))) {
+					ret.add(recNo);
+				}
+			} catch (RecordNotFoundException e) {
+				this.logger.info("Record deleted after index lookup: "
+						+ e.getMessage());
+			}
+		}
+		return ret.toArray(new Long[ret.size()]);
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria, with the semantics of
+	 * {@link DefaultFinderImp#findByAnyCriteria(String[])} (case insensitive
+	 * on indexed fields in folded mode). The matches of the criteria on not
+	 * indexed fields are searched by the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+
+		/*
+		 * Join the matches of the indexed criteria
+		 */
+		TreeSet<Long> ret = null;
+		String[] residual = new String[criteria.length];
+		boolean hasResidual = false;
+		this.lock.readLock().lock();
+		try {
+			for (int j = 0; j < criteria.length; j++) {
+				if (criteria[j] == null) {
+					continue;
+				}
+				PrefixIndex index = j < this.indexes.length ? this.indexes[j]
+						: null;
+				if (index == null) {
+					residual[j] = criteria[j];
+					hasResidual = true;
+				} else if (ret == null) {
+					ret = index.find(criteria[j]);
+				} else {
+					ret.addAll(index.find(criteria[j]));
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		if (ret == null) {
+			return this.fallback.findByAnyCriteria(criteria);
+		}
+		if (hasResidual) {
+			ret.addAll(Arrays.asList(this.fallback.findByAnyCriteria(residual)));
+		}
+		return ret.toArray(new Long[ret.size()]);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds. Delegated to the fallback finder.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		return this.fallback.findByRange(min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria. Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		return this.fallback.findBySubstring(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query.
+	 * Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		return this.fallback.findByQuery(query);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.fallback.findByQuery(query, after, limit);
+	}
+
+	/**
+	 * Tells if searches on indexed fields are case insensitive.
+	 * 
+	 * @return <code>true</code> in folded mode.
+	 */
+	boolean isFolded() {
+		return this.folded;
+	}
+
+	/**
+	 * Returns the access paths to the indexes, used by
+	 * {@link PlannerFinderImp}. Their lookups are case sensitive, like the
+	 * ones of this finder unless it is in folded mode.
+	 * 
+	 * @return a path per indexed field.
+	 */
+	List<AccessPath> getAccessPaths() {
+		List<AccessPath> ret = new ArrayList<AccessPath>();
+		for (PrefixIndex index : this.indexes) {
+			if (index != null) {
+				ret.add(new IndexPath(index));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Access path to an index, guarded by the finder lock.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexPath implements AccessPath {
+
+		private final PrefixIndex index;
+
+		IndexPath(PrefixIndex index) {
+			this.index = index;
+		}
+
+		public int getFieldNo() {
+			return this.index.getFieldNo();
+		}
+
+		public long estimateRows(String prefix) {
+			IndexedFinderImp.this.lock.readLock().lock();
+			try {
+				return this.index.count(prefix);
+			} finally {
+				IndexedFinderImp.this.lock.readLock().unlock();
+			}
+		}
+
+		public CompressedBitmap lookup(String prefix) {
+			TreeSet<Long> found;
+			IndexedFinderImp.this.lock.readLock().lock();
+			try {
+				found = this.index.find(prefix);
+			} finally {
+				IndexedFinderImp.this.lock.readLock().unlock();
+			}
+			return CompressedBitmap.valueOf(found.toArray(new Long[found
+					.size()]));
+		}
+
+		@Override
+		public String toString() {
+			return "prefix index on field " + this.index.getFieldNo();
+		}
+	}
+
+	/**
+	 * Keeps the indexes up to date.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexUpdater implements
+			DataAccessListener<Long, String[]> {
+
+		@SuppressWarnings("boxing")
+		public void recordInserted(Long pk, String[] record) {
+			IndexedFinderImp.this.lock.writeLock().lock();
+			try {
+				for (PrefixIndex index : IndexedFinderImp.this.indexes) {
+					if (index != null) {
+						index.add(pk, record);
+					}
+				}
+			} finally {
+				IndexedFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			IndexedFinderImp.this.lock.writeLock().lock();
+			try {
+				for (PrefixIndex index : IndexedFinderImp.this.indexes) {
+					if (index != null) {
+						index.update(pk, oldRecord, newRecord);
+					}
+				}
+			} finally {
+				IndexedFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			IndexedFinderImp.this.lock.writeLock().lock();
+			try {
+				for (PrefixIndex index : IndexedFinderImp.this.indexes) {
+					if (index != null) {
+						index.remove(pk, oldRecord);
+					}
+				}
+			} finally {
+				IndexedFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * MappedURLyBirdFile_1_2_1.java 02/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+import suncertify.db.*;
+
+
+/**
+ * Memory mapped implementation of {@link suncertify.db.spec.DataAccessObject}
+ * interface for accessing URLBird 1.2.1 binary database files (see
+ * {@link BaseURLyBirdFile_1_2_1} for the file format). <br>
+ * Instances of this class are thread-safe, and so can be used by several
+ * threads concurrently.
+ * <p>
+ * The data section is mapped into memory with {@link FileChannel#map}, so
+ * reading and writing records are memory accesses instead of system calls.
+ * The mapping is split in segments holding a whole number of records (a
+ * record never spans two segments), so files bigger than a single
+ * {@link MappedByteBuffer} can be accessed.<br>
+ * The file and the mapping grow in steps, ahead of the records appended: the
+ * last segment is mapped again doubling its size, and once a step crosses into
+ * a new segment whole segments are mapped, that are never mapped again. The
+ * space after the last record is zero filled, so it is ignored if the file is
+ * opened again without having been closed, and it is truncated at close.<br>
+ * Each access works on a {@link ByteBuffer#duplicate() duplicate} of the
+ * segment, with its own position, so records can be read concurrently.
+ * 
+ * @author Ignacio del Valle Alles.
+ * @version 1.0 02/11/2010
+ * @see suncertify.db.spec.DataAccessObject
+ * @see URLyBirdFile_1_2_1
+ */
+public final class MappedURLyBirdFile_1_2_1 extends BaseURLyBirdFile_1_2_1 {
+
+	// Maximum length in bytes of a mapped segment
+	private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+	// Minimum length in bytes the mapping grows when records are appended
+	private static final int MIN_GROWTH = 1024 * 1024;
+
+	/*
+	 * Instance fields section
+	 */
+	private final RandomAccessFile raf; // wrapped file
+	private final FileChannel channel; // channel of the wrapped file
+	private final int recordsPerSegment;
+	// Mapped segments of the data section, in file order. Copied on write so
+	// that force() can iterate them while they are remapped.
+	private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<MappedByteBuffer>();
+	private long fileLength; // used length, the rest is preallocated
+	private long mappedRecords; // record slots covered by the segments
+
+	/**
+	 * Creates a new instance associated with the specified database file.
+	 * 
+	 * @param file
+	 *            the database file.
+	 * @throws IOException if an error occurs.
+	 * @throws NotSupportedDataBaseException if the file format is not supported.
+	 */
+	public MappedURLyBirdFile_1_2_1(File file) throws IOException,
+			NotSupportedDataBaseException {
+
+		super(file);
+
+		/*
+		 * Initialize class fields.
+		 */
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = this.raf.getChannel();
+		this.recordsPerSegment = Math.max(1, MAX_SEGMENT_SIZE
+				/ getRecordSize());
+		this.fileLength = getUsedLength();
+		mapRecords(getNumberOfRecords(this.fileLength));
+
+		this.logger.log(Level.INFO,
+				"MappedURLyBirdFile instance created successfully. "
+						+ this.segments.size() + " segments mapped");
+
+	}
+
+	@Override
+	protected void readRecordBytes(long recNo, byte[] buffer)
+			throws IOException {
+
+		ByteBuffer segment = getSegment(recNo).duplicate();
+		segment.position(getSegmentOffset(recNo));
+		segment.get(buffer);
+	}
+
+	@Override
+	protected void readRecordsBytes(long firstRecNo, int count, byte[] buffer)
+			throws IOException {
+
+		/*
+		 * The range can span several segments
+		 */
+		long recNo = firstRecNo;
+		int offset = 0;
+		int length = count * getRecordSize();
+		while (offset < length) {
+			ByteBuffer segment = getSegment(recNo).duplicate();
+			int segmentOffset = getSegmentOffset(recNo);
+			int n = Math.min(length - offset, segment.capacity()
+					- segmentOffset);
+			segment.position(segmentOffset);
+			segment.get(buffer, offset, n);
+			offset += n;
+			recNo += n / getRecordSize();
+		}
+	}
+
+	@Override
+	protected void writeRecordBytes(long recNo, byte[] buffer)
+			throws IOException {
+
+		ByteBuffer segment = getSegment(recNo).duplicate();
+		segment.position(getSegmentOffset(recNo));
+		segment.put(buffer);
+	}
+
+	@Override
+	protected long getFileLength() throws IOException {
+		return this.fileLength;
+	}
+
+	@Override
+	protected void setFileLength(long length) throws IOException {
+		long numberOfRecords = getNumberOfRecords(length);
+		if (numberOfRecords > this.mappedRecords) {
+			mapRecords(getGrowthTarget(numberOfRecords));
+		} else {
+			// Released slots become preallocated space again
+			byte[] zeros = new byte[getRecordSize()];
+			for (long recNo = numberOfRecords; recNo < Math.min(
+					getNumberOfRecords(this.fileLength), this.mappedRecords); recNo++) {
+				writeRecordBytes(recNo, zeros);
+			}
+		}
+		this.fileLength = length;
+	}
+
+	@Override
+	protected void force() throws IOException {
+		for (MappedByteBuffer segment : this.segments) {
+			segment.force();
+		}
+		// File length changes
+		this.channel.force(false);
+	}
+
+	@Override
+	protected void close() throws IOException {
+		if (this.raf != null) {
+			for (MappedByteBuffer segment : this.segments) {
+				segment.force();
+			}
+			this.segments.clear();
+			try {
+				if (this.raf.length() > this.fileLength) {
+					this.raf.setLength(this.fileLength);
+				}
+			} catch (IOException e) {
+				// Some platforms do not truncate mapped files. The space is
+				// ignored when the file is opened again
+				this.logger.log(Level.WARNING,
+						"Preallocated space could not be truncated", e);
+			} finally {
+				this.raf.close();
+			}
+		}
+	}
+
+	/*
+	 * Returns the segment holding the specified record
+	 */
+	private MappedByteBuffer getSegment(long recNo) throws IOException {
+		int index = (int) (recNo / this.recordsPerSegment);
+		if (index >= this.segments.size()) {
+			throw new IOException("Record " + recNo + " is not mapped");
+		}
+		return this.segments.get(index);
+	}
+
+	/*
+	 * Returns the position of the specified record in its segment
+	 */
+	private int getSegmentOffset(long recNo) {
+		return (int) (recNo % this.recordsPerSegment) * getRecordSize();
+	}
+
+	/*
+	 * Returns the number of whole records in the data section of a file of the
+	 * specified length
+	 */
+	private long getNumberOfRecords(long length) {
+		return Math.max(0, length - getStartOfDataSection()) / getRecordSize();
+	}
+
+	/*
+	 * Returns the number of record slots to map in order to hold the specified
+	 * number of records: at least twice the slots mapped, up to a segment
+	 * more, rounded up to whole segments when a new segment is needed
+	 */
+	private long getGrowthTarget(long numberOfRecords) {
+		long step = Math.min(this.recordsPerSegment, Math.max(
+				this.mappedRecords, MIN_GROWTH / getRecordSize()));
+		long target = Math.max(numberOfRecords, this.mappedRecords + step);
+		if ((target - 1) / this.recordsPerSegment > (this.mappedRecords - 1)
+				/ this.recordsPerSegment) {
+			target = (target + this.recordsPerSegment - 1)
+					/ this.recordsPerSegment * this.recordsPerSegment;
+		}
+		return target;
+	}
+
+	/*
+	 * Maps the specified number of record slots, growing the file if needed.
+	 * Full segments already mapped are kept, a partial last one is mapped
+	 * again.
+	 */
+	private void mapRecords(long numberOfRecords) throws IOException {
+
+		int numberOfSegments = (int) ((numberOfRecords
+				+ this.recordsPerSegment - 1) / this.recordsPerSegment);
+
+		// Discard the last segment if partial
+		int last = this.segments.size() - 1;
+		if (last >= 0
+				&& this.segments.get(last).capacity() < this.recordsPerSegment
+						* getRecordSize()) {
+			this.segments.remove(last);
+		}
+
+		// Grow the file, zero filling the new space
+		long length = getRecordPosition(numberOfRecords);
+		if (this.raf.length() < length) {
+			this.raf.setLength(length);
+		}
+
+		// Map the missing segments
+		for (int i = this.segments.size(); i < numberOfSegments; i++) {
+			long firstRecNo = (long) i * this.recordsPerSegment;
+			long records = Math.min(this.recordsPerSegment, numberOfRecords
+					- firstRecNo);
+			this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE,
+					getRecordPosition(firstRecNo), records * getRecordSize()));
+		}
+		this.mappedRecords = numberOfRecords;
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * NGramFinderImp.java 29/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation keeping a {@link NGramIndex} for each
+ * of the specified fields, to answer substring searches (part of a hotel
+ * name...).
+ * <p>
+ * The indexes are built at creation time with a scan of the records, and
+ * kept up to date listening to the changes of the data access object (see
+ * {@link DataAccessListener}), so instances must be created before the
+ * database starts to be modified.
+ * <p>
+ * Substring searches intersect the candidates of the criteria on indexed
+ * fields, and then verify every criteria reading the candidate records.
+ * Substring searches without criteria of at least {@link NGramIndex#N}
+ * characters on indexed fields, and the rest of searches, are delegated to a
+ * fallback finder.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 29/11/2010
+ */
+public final class NGramFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final FinderObject<Long, String[]> fallback;
+	private final NGramIndex[] indexes; // by field number, null if none
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new instance, building the indexes of the specified fields.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param fallback
+	 *            the finder used in searches that can not use the indexes.
+	 * @param fields
+	 *            the indexed fields.
+	 * @throws IllegalArgumentException
+	 *             if dao or fallback are <code>null</code>, or a field is
+	 *             negative.
+	 */
+	@SuppressWarnings("boxing")
+	public NGramFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> fallback, int[] fields) {
+
+		if (dao == null || fallback == null) {
+			throw new IllegalArgumentException(
+					"dao and fallback must be not null");
+		}
+		this.dao = dao;
+		this.fallback = fallback;
+
+		int maxField = -1;
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] < 0) {
+				throw new IllegalArgumentException("Invalid field " + fields[i]);
+			}
+			maxField = Math.max(maxField, fields[i]);
+		}
+		this.indexes = new NGramIndex[maxField + 1];
+		for (int i = 0; i < fields.length; i++) {
+			this.indexes[fields[i]] = new NGramIndex(fields[i]);
+		}
+
+		/*
+		 * Build the indexes
+		 */
+		this.lock.writeLock().lock();
+		try {
+			this.dao.addDataAccessListener(new IndexUpdater());
+			RecordCursor<Long, String[]> cursor = this.dao.scan();
+			try {
+				while (cursor.next()) {
+					String[] record = cursor.getRecord();
+					for (NGramIndex index : this.indexes) {
+						if (index != null) {
+							index.add(cursor.getPrimaryKey(), record);
+						}
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		this.logger.log(Level.INFO, "Trigram indexes built for fields "
+				+ Arrays.toString(fields));
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria.
+	 * Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+		return this.fallback.findByCriteria(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria. Delegated to the fallback finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+		return this.fallback.findByAnyCriteria(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds. Delegated to the fallback finder.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		return this.fallback.findByRange(min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria, with the semantics of
+	 * {@link DefaultFinderImp#findBySubstring(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+
+		/*
+		 * Intersect the candidates of the indexed criteria
+		 */
+		CompressedBitmap candidates = null;
+		this.lock.readLock().lock();
+		try {
+			for (int j = 0; j < criteria.length; j++) {
+				if (criteria[j] == null || j >= this.indexes.length
+						|| this.indexes[j] == null) {
+					continue;
+				}
+				CompressedBitmap found = this.indexes[j].find(criteria[j]);
+				if (found == null) {
+					continue; // too short
+				}
+				candidates = candidates == null ? found : candidates
+						.and(found);
+				if (candidates.isEmpty()) {
+					return new Long[0];
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		if (candidates == null) {
+			return this.fallback.findBySubstring(criteria);
+		}
+
+		/*
+		 * Verify the candidates
+		 */
+		RecordMatcher matcher = RecordMatcher.forSubstring(criteria);
+		List<Long> ret = new ArrayList<Long>();
+		for (Long recNo : candidates.toArray()) {
+			try {
+				if (matcher.matches(this.dao.findByPrimaryKey(recNo))) {
+					ret.add(recNo);
+				}
+			} catch (RecordNotFoundException e) {
+				this.logger.info("Record deleted after index lookup: "
+						+ e.getMessage());
+			}
+		}
+		return ret.toArray(new Long[ret.size()]);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query.
+	 * Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		return this.fallback.findByQuery(query);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Delegated to the fallback finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.fallback.findByQuery(query, after, limit);
+	}
+
+	/**
+	 * Keeps the indexes up to date.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class IndexUpdater implements
+			DataAccessListener<Long, String[]> {
+
+		@SuppressWarnings("boxing")
+		public void recordInserted(Long pk, String[] record) {
+			NGramFinderImp.this.lock.writeLock().lock();
+			try {
+				for (NGramIndex index : NGramFinderImp.this.indexes) {
+					if (index != null) {
+						index.add(pk, record);
+					}
+				}
+			} finally {
+				NGramFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			NGramFinderImp.this.lock.writeLock().lock();
+			try {
+				for (NGramIndex index : NGramFinderImp.this.indexes) {
+					if (index != null) {
+						index.update(pk, oldRecord, newRecord);
+					}
+				}
+			} finally {
+				NGramFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+
+		@SuppressWarnings("boxing")
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			NGramFinderImp.this.lock.writeLock().lock();
+			try {
+				for (NGramIndex index : NGramFinderImp.this.indexes) {
+					if (index != null) {
+						index.remove(pk, oldRecord);
+					}
+				}
+			} finally {
+				NGramFinderImp.this.lock.writeLock().unlock();
+			}
+		}
+	}
+}
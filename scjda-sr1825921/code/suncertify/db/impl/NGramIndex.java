@@ -0,0 +1,173 @@
+/*
+ * NGramIndex.java 29/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Trigram index of a record field, mapping each sequence of three characters
+ * appearing in the values to a {@link CompressedBitmap} of the record numbers
+ * holding it.
+ * <p>
+ * A value containing a pattern contains all the trigrams of the pattern, so
+ * the intersection of their bitmaps holds all the records matching it. The
+ * opposite is not true ("abcXbcd" has the trigrams of "abcd"), so candidates
+ * must be verified. Patterns shorter than three characters can not be
+ * searched.
+ * <p>
+ * Instances of this class are not thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 29/11/2010
+ */
+final class NGramIndex {
+
+	/**
+	 * Length of the indexed character sequences.
+	 */
+	static final int N = 3;
+
+	private final int fieldNo;
+	private final Map<String, CompressedBitmap> postings = new HashMap<String, CompressedBitmap>();
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param fieldNo
+	 *            the indexed field.
+	 */
+	NGramIndex(int fieldNo) {
+		this.fieldNo = fieldNo;
+	}
+
+	/**
+	 * Returns the indexed field.
+	 * 
+	 * @return the field index.
+	 */
+	int getFieldNo() {
+		return this.fieldNo;
+	}
+
+	/**
+	 * Returns the number of distinct trigrams.
+	 * 
+	 * @return the number of bitmaps.
+	 */
+	int getNumberOfKeys() {
+		return this.postings.size();
+	}
+
+	/**
+	 * Adds a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values.
+	 */
+	void add(long recNo, String[] record) {
+		for (String gram : grams(record[this.fieldNo])) {
+			CompressedBitmap bitmap = this.postings.get(gram);
+			if (bitmap == null) {
+				bitmap = new CompressedBitmap();
+				this.postings.put(gram, bitmap);
+			}
+			bitmap.add(recNo);
+		}
+	}
+
+	/**
+	 * Removes a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values when it was added.
+	 */
+	void remove(long recNo, String[] record) {
+		for (String gram : grams(record[this.fieldNo])) {
+			CompressedBitmap bitmap = this.postings.get(gram);
+			if (bitmap != null) {
+				bitmap.remove(recNo);
+				if (bitmap.isEmpty()) {
+					this.postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates a record, if the indexed value has changed.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param oldRecord
+	 *            the record field values when it was added.
+	 * @param newRecord
+	 *            the new record field values.
+	 */
+	void update(long recNo, String[] oldRecord, String[] newRecord) {
+		if (!oldRecord[this.fieldNo].equals(newRecord[this.fieldNo])) {
+			remove(recNo, oldRecord);
+			add(recNo, newRecord);
+		}
+	}
+
+	/**
+	 * Returns the candidate records whose value may contain the specified
+	 * pattern.
+	 * 
+	 * @param pattern
+	 *            the pattern.
+	 * @return a new bitmap, not shared with the index, or <code>null</code>
+	 *         if the pattern is shorter than {@link #N}.
+	 */
+	CompressedBitmap find(String pattern) {
+		if (pattern.length() < N) {
+			return null;
+		}
+		CompressedBitmap ret = null;
+		for (String gram : grams(pattern)) {
+			CompressedBitmap bitmap = this.postings.get(gram);
+			if (bitmap == null) {
+				return new CompressedBitmap();
+			}
+			ret = ret == null ? bitmap.or(new CompressedBitmap()) : ret
+					.and(bitmap);
+			if (ret.isEmpty()) {
+				break;
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Distinct trigrams of a value
+	 */
+	private static Set<String> grams(String value) {
+		Set<String> ret = new LinkedHashSet<String>();
+		for (int i = 0; i + N <= value.length(); i++) {
+			ret.add(value.substring(i, i + N));
+		}
+		return ret;
+	}
+}
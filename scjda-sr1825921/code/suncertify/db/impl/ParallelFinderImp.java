@@ -0,0 +1,301 @@
+/*
+ * ParallelFinderImp.java 17/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation splitting the records in partitions
+ * that are scanned in parallel by a pool of threads (see
+ * {@link DataAccessObject#scan(Object, Object)}). The matching record
+ * numbers of each partition are merged in partition order, so results are
+ * sorted as in {@link DefaultFinderImp}.<br>
+ * Small files are scanned by the calling thread.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 17/11/2010
+ */
+public final class ParallelFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	// Minimum number of records of a partition
+	private static final int MIN_PARTITION_SIZE = 16 * 1024;
+
+	// Partitions per thread, to balance uneven partitions
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final int parallelism;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a new instance from the specified dao.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param parallelism
+	 *            the number of threads scanning partitions.
+	 * @throws IllegalArgumentException
+	 *             if dao is <code>null</code> or parallelism is not positive.
+	 */
+	public ParallelFinderImp(DataAccessObject<Long, String[]> dao,
+			int parallelism) {
+		if (dao == null) {
+			throw new IllegalArgumentException("dao must be not null");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.dao = dao;
+		this.parallelism = parallelism;
+
+		final String prefix = "Finder-" + POOL_NUMBER.incrementAndGet() + "-";
+		this.executor = Executors.newFixedThreadPool(parallelism,
+				new ThreadFactory() {
+					private final AtomicInteger threadNumber = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, prefix
+								+ this.threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria,
+	 * with the semantics of {@link DefaultFinderImp#findByCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+		return find(new RecordMatcher(criteria));
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria, with the semantics of
+	 * {@link DefaultFinderImp#findByAnyCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+		return find(new RecordMatcher(criteria, true));
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds, with the semantics of
+	 * {@link DefaultFinderImp#findByRange(String[], String[])}.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+
+		if (min == null || max == null) {
+			return null;
+		}
+		return find(RecordMatcher.forRange(min, max));
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria, with the semantics of
+	 * {@link DefaultFinderImp#findBySubstring(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+		return find(RecordMatcher.forSubstring(criteria));
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query, with
+	 * the semantics of {@link DefaultFinderImp#findByQuery(Query)}.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+
+		if (query == null) {
+			return null;
+		}
+		return find(CompiledQuery.compile(query));
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query, with the semantics of
+	 * {@link DefaultFinderImp#findByQuery(Query, Long, int)}. The scan is
+	 * performed by the calling thread, since it stops after a few matches.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+
+		if (query == null) {
+			return null;
+		}
+		return toArray(scan(CompiledQuery.compile(query), after == null ? 0
+				: after.longValue() + 1, Long.MAX_VALUE, limit));
+	}
+
+	/**
+	 * Stops the threads of this finder.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		shutdown();
+	}
+
+	/*
+	 * Returns the records accepted by the matcher, scanning partitions in
+	 * parallel
+	 */
+	private Long[] find(final RecordFilter matcher) {
+
+		/*
+		 * Split the record range
+		 */
+		long size = this.dao.getNumberOfRecords();
+		long partitions = Math.min(this.parallelism * PARTITIONS_PER_THREAD,
+				(size + MIN_PARTITION_SIZE - 1) / MIN_PARTITION_SIZE);
+		if (partitions <= 1) {
+			return toArray(scan(matcher, 0, Long.MAX_VALUE, Integer.MAX_VALUE));
+		}
+		long partitionSize = (size + partitions - 1) / partitions;
+
+		List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+		for (long from = 0; from < size; from += partitionSize) {
+			final long first = from;
+			// The last partition includes the records created meanwhile
+			final long last = from + partitionSize >= size ? Long.MAX_VALUE
+					: from + partitionSize;
+			futures.add(this.executor.submit(new Callable<List<Long>>() {
+				public List<Long> call() {
+					return scan(matcher, first, last, Integer.MAX_VALUE);
+				}
+			}));
+		}
+
+		/*
+		 * Merge in partition order
+		 */
+		List<Long> ret = new ArrayList<Long>();
+		try {
+			for (Future<List<Long>> future : futures) {
+				ret.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			cancel(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Search interrupted", e);
+		} catch (ExecutionException e) {
+			cancel(futures);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return toArray(ret);
+	}
+
+	/*
+	 * Returns up to limit matching record numbers in the specified range
+	 */
+	@SuppressWarnings("boxing")
+	private List<Long> scan(RecordFilter matcher, long from, long to,
+			int limit) {
+		List<Long> ret = new ArrayList<Long>();
+		RecordCursor<Long, String[]> cursor = this.dao.scan(from, to);
+		try {
+			while (ret.size() < limit && cursor.next()) {
+				if (matcher.matches(cursor.getRecordView())) {
+					ret.add(cursor.getPrimaryKey());
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		return ret;
+	}
+
+	private static void cancel(List<Future<List<Long>>> futures) {
+		for (Future<List<Long>> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	private static Long[] toArray(List<Long> list) {
+		return list.toArray(new Long[list.size()]);
+	}
+}
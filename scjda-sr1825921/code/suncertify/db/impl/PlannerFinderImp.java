@@ -0,0 +1,566 @@
+/*
+ * PlannerFinderImp.java 01/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import static suncertify.commons.Miscellaneous.arrayToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+import suncertify.db.Query;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.spec.DataAccessListener;
+import suncertify.db.spec.DataAccessObject;
+import suncertify.db.spec.FinderObject;
+import suncertify.db.spec.RecordCursor;
+
+
+/**
+ * {@link FinderObject} implementation choosing, for each prefix search, the
+ * cheapest way to answer it among a scan and the available indexes (see
+ * {@link IndexedFinderImp} and {@link BitmapFinderImp}).
+ * <p>
+ * The number of records matching a criteria on an indexed field is counted by
+ * its index. On other fields it is estimated from the number of distinct
+ * values of the field, taken with a scan at creation time and refreshed after
+ * a tenth of the records have been written. A plan intersects (or joins, in
+ * {@link #findByAnyCriteria(String[])}) the most selective indexes first, and
+ * stops adding indexes when the cost of their lookups exceeds the cost of
+ * verifying the remaining candidates reading them. The plan is discarded for
+ * a scan if the scan is cheaper, as when a criteria matches half the table.
+ * <br>
+ * The chosen plan and its estimates are shown by {@link #explain(String[])}.
+ * <p>
+ * Range, substring and query searches are delegated to the scan finder.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 01/12/2010
+ */
+public final class PlannerFinderImp extends LoggingObject implements
+		FinderObject<Long, String[]> {
+
+	/*
+	 * Relative costs of the operations of a plan
+	 */
+	private static final double SCAN_COST = 1.0; // per record position
+	private static final double INDEX_ROW_COST = 0.2; // per record looked up
+	private static final double FETCH_COST = 4.0; // per candidate verified
+
+	// Fraction of the records written before refreshing the statistics
+	private static final double STALE_RATIO = 0.1;
+
+	private final DataAccessObject<Long, String[]> dao;
+	private final FinderObject<Long, String[]> scanFinder;
+	private final List<AccessPath> paths = new ArrayList<AccessPath>();
+	private final AtomicLong writes = new AtomicLong();
+	private volatile Statistics statistics;
+
+	/**
+	 * Creates a new instance planning over the indexes of the specified
+	 * finders.
+	 * 
+	 * @param dao
+	 *            the data access object used to interact with the database.
+	 * @param scanFinder
+	 *            the finder used in scans.
+	 * @param prefixIndexes
+	 *            the prefix indexes, <code>null</code> if none.
+	 * @param bitmapIndexes
+	 *            the bitmap indexes, <code>null</code> if none.
+	 * @throws IllegalArgumentException
+	 *             if dao or scanFinder are <code>null</code>, or
+	 *             prefixIndexes is in folded mode.
+	 */
+	public PlannerFinderImp(DataAccessObject<Long, String[]> dao,
+			FinderObject<Long, String[]> scanFinder,
+			IndexedFinderImp prefixIndexes, BitmapFinderImp bitmapIndexes) {
+
+		if (dao == null || scanFinder == null) {
+			throw new IllegalArgumentException(
+					"dao and scanFinder must be not null");
+		}
+		if (prefixIndexes != null && prefixIndexes.isFolded()) {
+			throw new IllegalArgumentException(
+					"Case insensitive indexes can not be planned with scans");
+		}
+		this.dao = dao;
+		this.scanFinder = scanFinder;
+		if (prefixIndexes != null) {
+			this.paths.addAll(prefixIndexes.getAccessPaths());
+		}
+		if (bitmapIndexes != null) {
+			this.paths.addAll(bitmapIndexes.getAccessPaths());
+		}
+		this.dao.addDataAccessListener(new WriteCounter());
+		this.statistics = buildStatistics();
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified criteria,
+	 * with the semantics of {@link DefaultFinderImp#findByCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByCriteria(String[] criteria) {
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+		return execute(plan(criteria, false));
+	}
+
+	/**
+	 * Returns an array of record numbers that match any of the specified
+	 * criteria, with the semantics of
+	 * {@link DefaultFinderImp#findByAnyCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByAnyCriteria(String[] criteria) {
+		if (criteria == null || criteria.length == 0) {
+			return null;
+		}
+		return execute(plan(criteria, true));
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values are within the
+	 * specified bounds. Delegated to the scan finder.
+	 * 
+	 * @param min
+	 *            lower bounds.
+	 * @param max
+	 *            upper bounds.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByRange(String[] min, String[] max) {
+		return this.scanFinder.findByRange(min, max);
+	}
+
+	/**
+	 * Returns an array of record numbers whose field values contain the
+	 * specified criteria. Delegated to the scan finder.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findBySubstring(String[] criteria) {
+		return this.scanFinder.findBySubstring(criteria);
+	}
+
+	/**
+	 * Returns an array of record numbers that match the specified query.
+	 * Delegated to the scan finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query) {
+		return this.scanFinder.findByQuery(query);
+	}
+
+	/**
+	 * Returns up to limit record numbers following after that match the
+	 * specified query. Delegated to the scan finder.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the record number to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of record numbers returned.
+	 * @return the array of record numbers.
+	 */
+	public Long[] findByQuery(Query query, Long after, int limit) {
+		return this.scanFinder.findByQuery(query, after, limit);
+	}
+
+	/**
+	 * Describes the plan chosen for {@link #findByCriteria(String[])}: the
+	 * steps performed, the records estimated for each one and the estimated
+	 * cost, compared with the cost of a scan.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the plan description.
+	 */
+	public String explain(String[] criteria) {
+		return plan(criteria, false).toString();
+	}
+
+	/**
+	 * Describes the plan chosen for {@link #findByAnyCriteria(String[])}.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the plan description.
+	 * @see #explain(String[])
+	 */
+	public String explainAny(String[] criteria) {
+		return plan(criteria, true).toString();
+	}
+
+	/*
+	 * Chooses the cheapest plan
+	 */
+	private Plan plan(String[] criteria, boolean any) {
+
+		Statistics stats = getStatistics();
+		long records = Math.max(1, stats.records);
+		Plan ret = new Plan(criteria, any, this.dao.getNumberOfRecords(),
+				stats.records);
+
+		/*
+		 * Best path of each constrained field, and estimated result
+		 */
+		List<Step> steps = new ArrayList<Step>();
+		boolean covered = true;
+		double selectivity = any ? 0 : 1;
+		for (int j = 0; j < criteria.length; j++) {
+			if (criteria[j] == null) {
+				continue;
+			}
+			Step best = null;
+			for (AccessPath path : this.paths) {
+				if (path.getFieldNo() == j) {
+					long rows = path.estimateRows(criteria[j]);
+					if (best == null || rows < best.rows) {
+						best = new Step(path, criteria[j], rows);
+					}
+				}
+			}
+			double fieldSelectivity;
+			if (best == null) {
+				covered = false;
+				fieldSelectivity = stats.getSelectivity(j);
+			} else {
+				steps.add(best);
+				fieldSelectivity = Math.min(1, (double) best.rows / records);
+			}
+			selectivity = any ? 1 - (1 - selectivity) * (1 - fieldSelectivity)
+					: selectivity * fieldSelectivity;
+		}
+		ret.estimatedRows = stats.records * selectivity;
+		ret.cost = ret.scanCost;
+
+		/*
+		 * Most selective paths first
+		 */
+		Collections.sort(steps, new Comparator<Step>() {
+			public int compare(Step s1, Step s2) {
+				return s1.rows < s2.rows ? -1 : s1.rows == s2.rows ? 0 : 1;
+			}
+		});
+
+		if (any) {
+			// All the criteria must be looked up
+			if (covered && !steps.isEmpty()) {
+				double cost = 0;
+				for (Step step : steps) {
+					cost += step.rows * INDEX_ROW_COST;
+				}
+				if (cost < ret.cost) {
+					ret.cost = cost;
+					ret.steps.addAll(steps);
+				}
+			}
+		} else {
+			// Add paths while the plan gets cheaper
+			double lookupCost = 0;
+			double candidates = stats.records;
+			int chosen = 0;
+			for (int k = 0; k < steps.size(); k++) {
+				Step step = steps.get(k);
+				lookupCost += step.rows * INDEX_ROW_COST;
+				candidates *= Math.min(1, (double) step.rows / records);
+				boolean residual = !covered || k + 1 < steps.size();
+				double cost = lookupCost
+						+ (residual ? candidates * FETCH_COST : 0);
+				if (cost < ret.cost) {
+					ret.cost = cost;
+					ret.candidates = candidates;
+					chosen = k + 1;
+				}
+				if (step.rows == 0) {
+					break;
+				}
+			}
+			ret.steps.addAll(steps.subList(0, chosen));
+			for (Step step : ret.steps) {
+				ret.residual[step.path.getFieldNo()] = null;
+			}
+			for (int j = 0; j < ret.residual.length && chosen > 0; j++) {
+				ret.verify |= ret.residual[j] != null;
+			}
+		}
+		if (this.logger.isLoggable(Level.FINE)) {
+			this.logger.log(Level.FINE, ret.toString());
+		}
+		return ret;
+	}
+
+	/*
+	 * Executes a plan
+	 */
+	private Long[] execute(Plan plan) {
+
+		if (plan.steps.isEmpty()) {
+			return plan.any ? this.scanFinder.findByAnyCriteria(plan.criteria)
+					: this.scanFinder.findByCriteria(plan.criteria);
+		}
+
+		CompressedBitmap found = null;
+		for (Step step : plan.steps) {
+			CompressedBitmap rows = step.path.lookup(step.value);
+			if (found == null) {
+				found = rows;
+			} else {
+				found = plan.any ? found.or(rows) : found.and(rows);
+			}
+			if (!plan.any && found.isEmpty()) {
+				return new Long[0];
+			}
+		}
+		if (!plan.verify) {
+			return found.toArray();
+		}
+
+		/*
+		 * Check the criteria not looked up
+		 */
+		RecordMatcher matcher = new RecordMatcher(plan.residual);
+		List<Long> ret = new ArrayList<Long>();
+		for (Long recNo : found.toArray()) {
+			try {
+				if (matcher.matches(this.dao.findByPrimaryKey(recNo))) {
+					ret.add(recNo);
+				}
+			} catch (RecordNotFoundException e) {
+				this.logger.info("Record deleted after index lookup: "
+						+ e.getMessage());
+			}
+		}
+		return ret.toArray(new Long[ret.size()]);
+	}
+
+	/*
+	 * Returns the statistics, refreshing them if too many writes have been
+	 * performed since they were taken
+	 */
+	private Statistics getStatistics() {
+		Statistics ret = this.statistics;
+		if (this.writes.get() - ret.writes > Math.max(1, ret.records)
+				* STALE_RATIO) {
+			synchronized (this.paths) {
+				ret = this.statistics;
+				if (this.writes.get() - ret.writes > Math.max(1, ret.records)
+						* STALE_RATIO) {
+					ret = buildStatistics();
+					this.statistics = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Counts the records and the distinct values of each field
+	 */
+	private Statistics buildStatistics() {
+		long writesBefore = this.writes.get();
+		List<Set<String>> values = new ArrayList<Set<String>>();
+		long records = 0;
+		RecordCursor<Long, String[]> cursor = this.dao.scan();
+		try {
+			while (cursor.next()) {
+				String[] record = cursor.getRecord();
+				while (values.size() < record.length) {
+					values.add(new HashSet<String>());
+				}
+				for (int j = 0; j < record.length; j++) {
+					values.get(j).add(record[j]);
+				}
+				records++;
+			}
+		} finally {
+			cursor.close();
+		}
+		int[] distinct = new int[values.size()];
+		for (int j = 0; j < distinct.length; j++) {
+			distinct[j] = values.get(j).size();
+		}
+		Statistics ret = new Statistics(records, distinct, writesBefore);
+		this.logger.log(Level.INFO, "Statistics: " + ret);
+		return ret;
+	}
+
+	/**
+	 * Number of records and of distinct values of each field.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Statistics {
+
+		private final long records;
+		private final int[] distinct;
+		private final long writes; // write count when taken
+
+		Statistics(long records, int[] distinct, long writes) {
+			this.records = records;
+			this.distinct = distinct;
+			this.writes = writes;
+		}
+
+		/*
+		 * Estimated fraction of records matching a criteria on the field,
+		 * assuming values evenly distributed
+		 */
+		double getSelectivity(int fieldNo) {
+			if (fieldNo >= this.distinct.length || this.distinct[fieldNo] == 0) {
+				return 1;
+			}
+			return 1.0 / this.distinct[fieldNo];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(this.records).append(" records, distinct values {");
+			for (int j = 0; j < this.distinct.length; j++) {
+				sb.append(j == 0 ? "" : ",").append(this.distinct[j]);
+			}
+			return sb.append("}").toString();
+		}
+	}
+
+	/**
+	 * Index lookup of a plan.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Step {
+
+		private final AccessPath path;
+		private final String value;
+		private final long rows;
+
+		Step(AccessPath path, String value, long rows) {
+			this.path = path;
+			this.value = value;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * Way of answering a search. A plan without steps is a scan.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Plan {
+
+		private final String[] criteria;
+		private final boolean any;
+		private final long positions;
+		private final long records;
+		private final double scanCost;
+		private final List<Step> steps = new ArrayList<Step>();
+		private final String[] residual; // criteria verified reading records
+		private boolean verify;
+		private double candidates;
+		private double estimatedRows;
+		private double cost;
+
+		Plan(String[] criteria, boolean any, long positions, long records) {
+			this.criteria = criteria;
+			this.any = any;
+			this.positions = positions;
+			this.records = records;
+			this.scanCost = positions * SCAN_COST;
+			this.residual = criteria.clone();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(this.any ? "ANY {" : "ALL {").append(
+					arrayToString(this.criteria)).append("} on ").append(
+					this.records).append(" records, ").append(this.positions)
+					.append(" positions\n");
+			int n = 1;
+			if (this.steps.isEmpty()) {
+				sb.append("  ").append(n++).append(". SCAN ").append(
+						this.positions).append(" positions\n");
+			}
+			for (Step step : this.steps) {
+				sb.append("  ").append(n).append(". ").append(
+						n == 1 ? "LOOKUP " : this.any ? "OR " : "AND ")
+						.append(step.path).append(" '").append(step.value)
+						.append("': ").append(step.rows).append(" rows\n");
+				n++;
+			}
+			if (this.verify) {
+				sb.append("  ").append(n).append(". VERIFY {").append(
+						arrayToString(this.residual)).append("} on ").append(
+						String.format("%.1f", this.candidates)).append(
+						" candidates\n");
+			}
+			sb.append("  estimated ").append(
+					String.format("%.1f", this.estimatedRows)).append(
+					" rows, cost ").append(String.format("%.1f", this.cost))
+					.append(" (scan ").append(
+							String.format("%.1f", this.scanCost)).append(")");
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Counts the writes, to know when statistics are stale.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class WriteCounter implements
+			DataAccessListener<Long, String[]> {
+
+		public void recordInserted(Long pk, String[] record) {
+			PlannerFinderImp.this.writes.incrementAndGet();
+		}
+
+		public void recordUpdated(Long pk, String[] oldRecord,
+				String[] newRecord) {
+			PlannerFinderImp.this.writes.incrementAndGet();
+		}
+
+		public void recordDeleted(Long pk, String[] oldRecord) {
+			PlannerFinderImp.this.writes.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * PrefixIndex.java 19/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * Sorted dictionary of the values of a record field, mapping each value to
+ * the record numbers holding it. The records whose value starts with a given
+ * prefix are a contiguous range of the dictionary, found in logarithmic time.
+ * <br>
+ * In <i>folded</i> mode values are stored and searched in lower case, so
+ * prefix searches are case insensitive.
+ * <p>
+ * Instances of this class are not thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 19/11/2010
+ */
+final class PrefixIndex {
+
+	private final int fieldNo;
+	private final boolean folded;
+	private final TreeMap<String, Set<Long>> entries = new TreeMap<String, Set<Long>>();
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param fieldNo
+	 *            the indexed field.
+	 * @param folded
+	 *            <code>true</code> for case insensitive searches.
+	 */
+	PrefixIndex(int fieldNo, boolean folded) {
+		this.fieldNo = fieldNo;
+		this.folded = folded;
+	}
+
+	/**
+	 * Returns the indexed field.
+	 * 
+	 * @return the field index.
+	 */
+	int getFieldNo() {
+		return this.fieldNo;
+	}
+
+	/**
+	 * Returns the number of distinct values.
+	 * 
+	 * @return the number of keys.
+	 */
+	int getNumberOfKeys() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Adds a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values.
+	 */
+	@SuppressWarnings("boxing")
+	void add(long recNo, String[] record) {
+		String key = key(record[this.fieldNo]);
+		Set<Long> recNos = this.entries.get(key);
+		if (recNos == null) {
+			recNos = new TreeSet<Long>();
+			this.entries.put(key, recNos);
+		}
+		recNos.add(recNo);
+	}
+
+	/**
+	 * Removes a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values when it was added.
+	 */
+	@SuppressWarnings("boxing")
+	void remove(long recNo, String[] record) {
+		String key = key(record[this.fieldNo]);
+		Set<Long> recNos = this.entries.get(key);
+		if (recNos != null && recNos.remove(recNo) && recNos.isEmpty()) {
+			this.entries.remove(key);
+		}
+	}
+
+	/**
+	 * Updates a record, if the indexed value has changed.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param oldRecord
+	 *            the record field values when it was added.
+	 * @param newRecord
+	 *            the new record field values.
+	 */
+	void update(long recNo, String[] oldRecord, String[] newRecord) {
+		if (!key(oldRecord[this.fieldNo]).equals(key(newRecord[this.fieldNo]))) {
+			remove(recNo, oldRecord);
+			add(recNo, newRecord);
+		}
+	}
+
+	/**
+	 * Returns the records whose value starts with the specified prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return a new sorted set of record numbers.
+	 */
+	TreeSet<Long> find(String prefix) {
+		String from = key(prefix);
+		TreeSet<Long> ret = new TreeSet<Long>();
+		for (Set<Long> recNos : this.entries.subMap(from, true,
+				from + Character.MAX_VALUE, false).values()) {
+			ret.addAll(recNos);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of records whose value starts with the specified
+	 * prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix.
+	 * @return the number of records.
+	 */
+	long count(String prefix) {
+		String from = key(prefix);
+		long ret = 0;
+		for (Set<Long> recNos : this.entries.subMap(from, true,
+				from + Character.MAX_VALUE, false).values()) {
+			ret += recNos.size();
+		}
+		return ret;
+	}
+
+	/*
+	 * Dictionary key of a value
+	 */
+	private String key(String value) {
+		return this.folded ? value.toLowerCase(Locale.ENGLISH) : value;
+	}
+}
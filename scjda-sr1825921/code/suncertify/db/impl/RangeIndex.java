@@ -0,0 +1,142 @@
+/*
+ * RangeIndex.java 26/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * Sorted index of a record field (room rate, date available...) in the order
+ * of {@link RangeKey}, mapping each value to the record numbers holding it.
+ * The records within two bounds are a contiguous range of the index, found
+ * in logarithmic time.
+ * <p>
+ * Instances of this class are not thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 26/11/2010
+ */
+final class RangeIndex {
+
+	private final int fieldNo;
+	private final TreeMap<RangeKey, Set<Long>> entries = new TreeMap<RangeKey, Set<Long>>();
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param fieldNo
+	 *            the indexed field.
+	 */
+	RangeIndex(int fieldNo) {
+		this.fieldNo = fieldNo;
+	}
+
+	/**
+	 * Returns the indexed field.
+	 * 
+	 * @return the field index.
+	 */
+	int getFieldNo() {
+		return this.fieldNo;
+	}
+
+	/**
+	 * Adds a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values.
+	 */
+	@SuppressWarnings("boxing")
+	void add(long recNo, String[] record) {
+		RangeKey key = RangeKey.valueOf(record[this.fieldNo]);
+		Set<Long> recNos = this.entries.get(key);
+		if (recNos == null) {
+			recNos = new TreeSet<Long>();
+			this.entries.put(key, recNos);
+		}
+		recNos.add(recNo);
+	}
+
+	/**
+	 * Removes a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the record field values when it was added.
+	 */
+	@SuppressWarnings("boxing")
+	void remove(long recNo, String[] record) {
+		RangeKey key = RangeKey.valueOf(record[this.fieldNo]);
+		Set<Long> recNos = this.entries.get(key);
+		if (recNos != null && recNos.remove(recNo) && recNos.isEmpty()) {
+			this.entries.remove(key);
+		}
+	}
+
+	/**
+	 * Updates a record, if the indexed value has changed.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param oldRecord
+	 *            the record field values when it was added.
+	 * @param newRecord
+	 *            the new record field values.
+	 */
+	void update(long recNo, String[] oldRecord, String[] newRecord) {
+		if (!oldRecord[this.fieldNo].equals(newRecord[this.fieldNo])) {
+			remove(recNo, oldRecord);
+			add(recNo, newRecord);
+		}
+	}
+
+	/**
+	 * Returns the records whose value is within the specified bounds.
+	 * 
+	 * @param min
+	 *            lower bound, inclusive. <code>null</code> for unbounded.
+	 * @param max
+	 *            upper bound, inclusive. <code>null</code> for unbounded.
+	 * @return a new sorted set of record numbers.
+	 */
+	TreeSet<Long> find(RangeKey min, RangeKey max) {
+		TreeSet<Long> ret = new TreeSet<Long>();
+		NavigableMap<RangeKey, Set<Long>> range;
+		if (min != null && max != null) {
+			if (min.compareTo(max) > 0) {
+				return ret;
+			}
+			range = this.entries.subMap(min, true, max, true);
+		} else if (min != null) {
+			range = this.entries.tailMap(min, true);
+		} else if (max != null) {
+			range = this.entries.headMap(max, true);
+		} else {
+			range = this.entries;
+		}
+		for (Set<Long> recNos : range.values()) {
+			ret.addAll(recNos);
+		}
+		return ret;
+	}
+}
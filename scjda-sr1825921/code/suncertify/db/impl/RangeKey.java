@@ -0,0 +1,110 @@
+/*
+ * RangeKey.java 26/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.math.BigDecimal;
+
+
+/**
+ * Sort key of a field value in range searches (see
+ * {@link suncertify.db.spec.FinderObject#findByRange(Object, Object)}).
+ * <p>
+ * Numeric values, optionally preceded by a currency symbol (as room rates,
+ * <code>$150.00</code>), are compared as decimals. Other values (as dates in
+ * <code>yyyy/MM/dd</code> format) are compared as text, and sort after the
+ * numeric ones.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 26/11/2010
+ */
+final class RangeKey implements Comparable<RangeKey> {
+
+	private final BigDecimal number; // null if not numeric
+	private final String text;
+
+	private RangeKey(BigDecimal number, String text) {
+		this.number = number;
+		this.text = text;
+	}
+
+	/**
+	 * Returns the key of a value.
+	 * 
+	 * @param value
+	 *            the field value.
+	 * @return the key, <code>null</code> if value is <code>null</code>.
+	 */
+	static RangeKey valueOf(String value) {
+		if (value == null) {
+			return null;
+		}
+		String digits = value.trim();
+		if (digits.length() > 0 && !Character.isDigit(digits.charAt(0))
+				&& "+-.".indexOf(digits.charAt(0)) < 0) {
+			digits = digits.substring(1).trim(); // currency symbol
+		}
+		BigDecimal number = null;
+		if (digits.length() > 0) {
+			try {
+				number = new BigDecimal(digits);
+			} catch (NumberFormatException e) {
+				// Not numeric
+			}
+		}
+		return new RangeKey(number, value);
+	}
+
+	/**
+	 * Returns the numeric value.
+	 * 
+	 * @return the decimal value, <code>null</code> if not numeric.
+	 */
+	BigDecimal getNumber() {
+		return this.number;
+	}
+
+	/**
+	 * Compares values, decimals first.
+	 * 
+	 * @param other
+	 *            the other key.
+	 * @return the comparison result.
+	 */
+	public int compareTo(RangeKey other) {
+		if (this.number != null) {
+			return other.number == null ? -1 : this.number
+					.compareTo(other.number);
+		}
+		return other.number != null ? 1 : this.text.compareTo(other.text);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof RangeKey && compareTo((RangeKey) obj) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.number != null ? this.number.stripTrailingZeros()
+				.hashCode() : this.text.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.text;
+	}
+}
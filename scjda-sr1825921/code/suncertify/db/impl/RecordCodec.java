@@ -0,0 +1,383 @@
+/*
+ * RecordCodec.java 05/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import suncertify.db.spec.RecordView;
+
+
+/**
+ * Encodes and decodes the records of the data section of URLyBird 1.2.1
+ * files (see {@link BaseURLyBirdFile_1_2_1}): a deleted flag byte followed by
+ * fixed length, blank padded, 8 bit US ASCII fields.
+ * <p>
+ * Field offsets are computed once, characters are converted directly from
+ * and to bytes (no charset lookup), and per thread buffers are reused, so the
+ * only objects allocated when decoding are the resulting <code>String</code>
+ * values. Characters out of the US ASCII range are encoded as <code>'?'</code>
+ * and decoded as <code>'&#92;uFFFD'</code>.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 05/11/2010
+ */
+final class RecordCodec {
+
+	/**
+	 * Value of the flag byte of a deleted record.
+	 */
+	static final byte DELETED_FLAG = 1;
+
+	/**
+	 * Value of the flag byte of a valid record.
+	 */
+	static final byte VALID_FLAG = 0;
+
+	/**
+	 * Length in bytes of the deleted flag.
+	 */
+	static final int FLAG_LENGTH = 1;
+
+	private static final byte PADDING = ' ';
+	private static final byte UNMAPPABLE = '?';
+	private static final char REPLACEMENT = '\uFFFD';
+
+	// Digits of a number that always fit in a long
+	private static final int MAX_LONG_DIGITS = 18;
+
+	private final String[] names;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final int recordSize;
+
+	// Per thread record and field buffers
+	private final ThreadLocal<byte[]> recordBuffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[RecordCodec.this.recordSize];
+		}
+	};
+	private final ThreadLocal<char[]> charBuffers;
+
+	/**
+	 * Creates a new codec for the specified fields.
+	 * 
+	 * @param names
+	 *            the field names, used in error messages.
+	 * @param lengths
+	 *            the field lengths in bytes.
+	 */
+	RecordCodec(String[] names, int[] lengths) {
+		this.names = names.clone();
+		this.lengths = lengths.clone();
+		this.offsets = new int[lengths.length];
+		int offset = FLAG_LENGTH;
+		int maxLength = 0;
+		for (int i = 0; i < lengths.length; i++) {
+			this.offsets[i] = offset;
+			offset += lengths[i];
+			maxLength = Math.max(maxLength, lengths[i]);
+		}
+		this.recordSize = offset;
+		final int charBufferSize = maxLength;
+		this.charBuffers = new ThreadLocal<char[]>() {
+			@Override
+			protected char[] initialValue() {
+				return new char[charBufferSize];
+			}
+		};
+	}
+
+	/**
+	 * Returns the size of a record, deleted flag included.
+	 * 
+	 * @return the number of bytes.
+	 */
+	int getRecordSize() {
+		return this.recordSize;
+	}
+
+	/**
+	 * Returns the number of fields of a record.
+	 * 
+	 * @return an integer.
+	 */
+	int getNumberOfFields() {
+		return this.lengths.length;
+	}
+
+	/**
+	 * Returns the record buffer of the calling thread. Its content is
+	 * overwritten by the next invocation of a codec method from the same
+	 * thread, so it must not escape the operation using it.
+	 * 
+	 * @return a buffer of {@link #getRecordSize()} bytes.
+	 */
+	byte[] getThreadBuffer() {
+		return this.recordBuffers.get();
+	}
+
+	/**
+	 * Encodes a record into the specified buffer.
+	 * 
+	 * @param deleted
+	 *            the deleted state of the record.
+	 * @param data
+	 *            the field values. Leading and trailing blanks are not
+	 *            stored.
+	 * @param buffer
+	 *            a buffer of {@link #getRecordSize()} bytes.
+	 * @throws IllegalArgumentException
+	 *             if the number of fields is incorrect or a value exceeds its
+	 *             field length.
+	 */
+	void encode(boolean deleted, String[] data, byte[] buffer) {
+
+		// Validate the number of fields in the record
+		if (data.length != this.lengths.length) {
+			throw new IllegalArgumentException(
+					"Error writing data to file. Incorrect number of fields");
+		}
+		// Validate the values before touching the buffer
+		for (int i = 0; i < data.length; i++) {
+			if (data[i].length() > this.lengths[i]) {
+				throw new IllegalArgumentException(
+						"Error writing data to file. Value specified for field "
+								+ this.names[i] + " can not exceed "
+								+ this.lengths[i] + " characters length");
+			}
+		}
+
+		buffer[0] = deleted ? DELETED_FLAG : VALID_FLAG;
+		for (int i = 0; i < data.length; i++) {
+			String value = data[i];
+			int start = 0;
+			int end = value.length();
+			while (start < end && value.charAt(start) <= ' ') {
+				start++;
+			}
+			while (end > start && value.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			int pos = this.offsets[i];
+			for (int j = start; j < end; j++) {
+				char c = value.charAt(j);
+				buffer[pos++] = c < 0x80 ? (byte) c : UNMAPPABLE;
+			}
+			// Fill with blanks
+			Arrays.fill(buffer, pos, this.offsets[i] + this.lengths[i], PADDING);
+		}
+	}
+
+	/**
+	 * Tests the deleted flag of an encoded record.
+	 * 
+	 * @param buffer
+	 *            the record bytes.
+	 * @return <code>true</code> if the record is deleted.
+	 */
+	boolean isDeleted(byte[] buffer) {
+		return buffer[0] == DELETED_FLAG;
+	}
+
+	/**
+	 * Decodes all the field values of a record.
+	 * 
+	 * @param buffer
+	 *            the record bytes.
+	 * @return a new array with the trimmed field values.
+	 */
+	String[] decode(byte[] buffer) {
+		String[] ret = new String[this.lengths.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = decodeField(buffer, i);
+		}
+		return ret;
+	}
+
+	/**
+	 * Decodes a field value of a record.
+	 * 
+	 * @param buffer
+	 *            the record bytes.
+	 * @param fieldNo
+	 *            the field index.
+	 * @return the trimmed field value.
+	 */
+	String decodeField(byte[] buffer, int fieldNo) {
+		int start = trimStart(buffer, fieldNo);
+		int length = trimEnd(buffer, fieldNo, start) - start;
+		char[] chars = this.charBuffers.get();
+		for (int i = 0; i < length; i++) {
+			chars[i] = toChar(buffer[start + i]);
+		}
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Compares lexicographically a field value of a record with the
+	 * specified value.
+	 * 
+	 * @param buffer
+	 *            the record bytes.
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the value to compare.
+	 * @param prefixOnly
+	 *            if <code>true</code> only the first
+	 *            <code>value.length()</code> characters of the field are
+	 *            compared, and a shorter field value is always lesser.
+	 * @return a negative integer, zero, or a positive integer as the field
+	 *         value is less than, equal to, or greater than the specified one.
+	 */
+	int compareField(byte[] buffer, int fieldNo, String value,
+			boolean prefixOnly) {
+		int start = trimStart(buffer, fieldNo);
+		int length = trimEnd(buffer, fieldNo, start) - start;
+		int valueLength = value.length();
+		int n = Math.min(length, valueLength);
+		for (int i = 0; i < n; i++) {
+			char c = toChar(buffer[start + i]);
+			char v = value.charAt(i);
+			if (c != v) {
+				return c - v;
+			}
+		}
+		if (prefixOnly && length >= valueLength) {
+			return 0;
+		}
+		return length - valueLength;
+	}
+
+	/**
+	 * Compares numerically a field value of a record with the specified
+	 * value. Field values are parsed as {@link RangeKey} does, without
+	 * decoding them unless they have too many digits or an exponent.
+	 * 
+	 * @param buffer
+	 *            the record bytes.
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the value to compare.
+	 * @return a negative integer, zero, or a positive integer as the field
+	 *         value is less than, equal to, or greater than the specified one,
+	 *         or {@link RecordView#NOT_NUMERIC} if the field value is not
+	 *         numeric.
+	 */
+	int compareNumber(byte[] buffer, int fieldNo, BigDecimal value) {
+		int start = trimStart(buffer, fieldNo);
+		int end = trimEnd(buffer, fieldNo, start);
+		if (start < end && !isDigit(buffer[start]) && buffer[start] != '+'
+				&& buffer[start] != '-' && buffer[start] != '.') {
+			// Currency symbol
+			start++;
+			while (start < end && isBlank(buffer[start])) {
+				start++;
+			}
+		}
+
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer[i] == '+' || buffer[i] == '-')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long unscaled = 0;
+		int scale = 0;
+		int digits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			byte b = buffer[i];
+			if (isDigit(b)) {
+				if (digits == MAX_LONG_DIGITS) {
+					return compareDecoded(buffer, fieldNo, value);
+				}
+				unscaled = unscaled * 10 + (b - '0');
+				digits++;
+				if (point) {
+					scale++;
+				}
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return RecordView.NOT_NUMERIC;
+		}
+		if (i < end) {
+			return buffer[i] == 'e' || buffer[i] == 'E' ? compareDecoded(
+					buffer, fieldNo, value) : RecordView.NOT_NUMERIC;
+		}
+		return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale)
+				.compareTo(value);
+	}
+
+	/*
+	 * Numeric comparison of values not parsed from the bytes
+	 */
+	private int compareDecoded(byte[] buffer, int fieldNo, BigDecimal value) {
+		BigDecimal number = RangeKey.valueOf(decodeField(buffer, fieldNo))
+				.getNumber();
+		return number == null ? RecordView.NOT_NUMERIC : number
+				.compareTo(value);
+	}
+
+	/*
+	 * Returns the offset of the first not blank character of the field
+	 */
+	private int trimStart(byte[] buffer, int fieldNo) {
+		int start = this.offsets[fieldNo];
+		int end = start + this.lengths[fieldNo];
+		while (start < end && isBlank(buffer[start])) {
+			start++;
+		}
+		return start;
+	}
+
+	/*
+	 * Returns the offset following the last not blank character of the field
+	 */
+	private int trimEnd(byte[] buffer, int fieldNo, int start) {
+		int end = this.offsets[fieldNo] + this.lengths[fieldNo];
+		while (end > start && isBlank(buffer[end - 1])) {
+			end--;
+		}
+		return end;
+	}
+
+	/*
+	 * Same test as String.trim(): characters up to the space (nulls included)
+	 */
+	private static boolean isBlank(byte b) {
+		return b >= 0 && b <= ' ';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static char toChar(byte b) {
+		return b >= 0 ? (char) b : REPLACEMENT;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * RecordFilter.java 02/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import suncertify.db.spec.RecordView;
+
+
+/**
+ * Test performed by the finders on each record: the criteria of a search (see
+ * {@link RecordMatcher}) or a compiled query (see {@link CompiledQuery}).
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 02/12/2010
+ */
+interface RecordFilter {
+
+	/**
+	 * Tests if a record is accepted.
+	 * 
+	 * @param record
+	 *            the record view.
+	 * @return <code>true</code> if accepted.
+	 */
+	boolean matches(RecordView record);
+
+	/**
+	 * Tests if a record is accepted.
+	 * 
+	 * @param record
+	 *            the record field values.
+	 * @return <code>true</code> if accepted.
+	 */
+	boolean matches(String[] record);
+}
@@ -0,0 +1,219 @@
+/*
+ * RecordMatcher.java 15/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import suncertify.db.spec.RecordView;
+
+
+/**
+ * Evaluates the criteria of
+ * {@link suncertify.db.spec.FinderObject#findByCriteria(Object)} on records.
+ * Field n is described by criteria[n]. A <code>null</code> value in
+ * criteria[n] matches any field value. A non-null value in criteria[n]
+ * matches any field value that begins with criteria[n] (case sensitive).
+ * <p>
+ * By default a record matches if all the not null criteria match. In
+ * <i>any</i> mode (see
+ * {@link suncertify.db.spec.FinderObject#findByAnyCriteria(Object)}) it
+ * matches if at least one of them does. In both modes, criteria with all
+ * values <code>null</code> match any record.
+ * <p>
+ * In <i>range</i> mode (see
+ * {@link suncertify.db.spec.FinderObject#findByRange(Object, Object)}) a
+ * record matches if each field with a not null bound is within them, in the
+ * order of {@link RangeKey}.
+ * <p>
+ * In <i>substring</i> mode (see
+ * {@link suncertify.db.spec.FinderObject#findBySubstring(Object)}) a not null
+ * criteria[n] matches any field value containing it.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 15/11/2010
+ */
+final class RecordMatcher implements RecordFilter {
+
+	private final String[] criteria;
+	private final boolean any;
+	private final boolean substring;
+
+	// Bounds by field, in range mode
+	private final RangeKey[] min;
+	private final RangeKey[] max;
+
+	/**
+	 * Creates a new matcher for the specified criteria.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 */
+	RecordMatcher(String[] criteria) {
+		this(criteria, false);
+	}
+
+	/**
+	 * Creates a new matcher for the specified criteria.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @param any
+	 *            <code>true</code> to match records matching any of the
+	 *            criteria, <code>false</code> to match records matching all
+	 *            of them.
+	 */
+	RecordMatcher(String[] criteria, boolean any) {
+		this(criteria, any, false);
+	}
+
+	private RecordMatcher(String[] criteria, boolean any, boolean substring) {
+		this.criteria = criteria.clone();
+		this.any = any;
+		this.substring = substring;
+		this.min = null;
+		this.max = null;
+	}
+
+	/*
+	 * Range mode
+	 */
+	private RecordMatcher(RangeKey[] min, RangeKey[] max) {
+		this.criteria = null;
+		this.any = false;
+		this.substring = false;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Creates a new matcher for records containing the specified values.
+	 * 
+	 * @param criteria
+	 *            filter values.
+	 * @return the new matcher.
+	 */
+	static RecordMatcher forSubstring(String[] criteria) {
+		return new RecordMatcher(criteria, false, true);
+	}
+
+	/**
+	 * Creates a new matcher for the specified range.
+	 * 
+	 * @param min
+	 *            lower bounds, inclusive. <code>null</code> values are
+	 *            unbounded.
+	 * @param max
+	 *            upper bounds, inclusive. <code>null</code> values are
+	 *            unbounded.
+	 * @return the new matcher.
+	 */
+	static RecordMatcher forRange(String[] min, String[] max) {
+		int fields = Math.max(min.length, max.length);
+		RangeKey[] minKeys = new RangeKey[fields];
+		RangeKey[] maxKeys = new RangeKey[fields];
+		for (int j = 0; j < fields; j++) {
+			minKeys[j] = j < min.length ? RangeKey.valueOf(min[j]) : null;
+			maxKeys[j] = j < max.length ? RangeKey.valueOf(max[j]) : null;
+		}
+		return new RecordMatcher(minKeys, maxKeys);
+	}
+
+	/**
+	 * Tests if a record matches the criteria.
+	 * 
+	 * @param record
+	 *            the record view.
+	 * @return <code>true</code> if every (or, in any mode, some) not null
+	 *         criteria is a prefix (or, in substring mode, a part) of its
+	 *         field value or, in range mode, if every bounded field is within
+	 *         its bounds.
+	 */
+	public boolean matches(RecordView record) {
+		if (this.min != null) {
+			int fields = Math.min(this.min.length, record.getNumberOfFields());
+			for (int j = 0; j < fields; j++) {
+				if ((this.min[j] != null || this.max[j] != null)
+						&& !inRange(j, record.getField(j))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		int fields = Math.min(this.criteria.length, record
+				.getNumberOfFields());
+		boolean constrained = false;
+		for (int j = 0; j < fields; j++) {
+			if (this.criteria[j] != null) {
+				boolean match = this.substring ? record.getField(j).indexOf(
+						this.criteria[j]) >= 0 : record.fieldStartsWith(j,
+						this.criteria[j]);
+				if (match == this.any) {
+					return match;
+				}
+				constrained = true;
+			}
+		}
+		return !this.any || !constrained;
+	}
+
+	/**
+	 * Tests if a record matches the criteria.
+	 * 
+	 * @param record
+	 *            the record field values.
+	 * @return <code>true</code> if every (or, in any mode, some) not null
+	 *         criteria is a prefix (or, in substring mode, a part) of its
+	 *         field value or, in range mode, if every bounded field is within
+	 *         its bounds.
+	 */
+	public boolean matches(String[] record) {
+		if (this.min != null) {
+			int fields = Math.min(this.min.length, record.length);
+			for (int j = 0; j < fields; j++) {
+				if (!inRange(j, record[j])) {
+					return false;
+				}
+			}
+			return true;
+		}
+		int fields = Math.min(this.criteria.length, record.length);
+		boolean constrained = false;
+		for (int j = 0; j < fields; j++) {
+			if (this.criteria[j] != null) {
+				boolean match = this.substring ? record[j]
+						.indexOf(this.criteria[j]) >= 0 : record[j]
+						.startsWith(this.criteria[j]);
+				if (match == this.any) {
+					return match;
+				}
+				constrained = true;
+			}
+		}
+		return !this.any || !constrained;
+	}
+
+	/*
+	 * Tests if a field value is within its bounds
+	 */
+	private boolean inRange(int fieldNo, String value) {
+		if (this.min[fieldNo] == null && this.max[fieldNo] == null) {
+			return true;
+		}
+		RangeKey key = RangeKey.valueOf(value);
+		return (this.min[fieldNo] == null || key.compareTo(this.min[fieldNo]) >= 0)
+				&& (this.max[fieldNo] == null || key
+						.compareTo(this.max[fieldNo]) <= 0);
+	}
+}
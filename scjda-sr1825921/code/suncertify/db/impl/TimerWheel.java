@@ -0,0 +1,256 @@
+/*
+ * TimerWheel.java 06/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import suncertify.commons.LoggingObject;
+
+
+/**
+ * Hashed timer wheel running tasks after a delay.
+ * <p>
+ * Time is divided in ticks of fixed length, and the wheel in a power of two
+ * number of buckets, each one holding a linked list of the timeouts whose
+ * deadline falls in a tick mapped to it. Scheduling and cancelling a timeout
+ * are constant time operations that only synchronize on its bucket. A daemon
+ * thread visits a bucket per tick, running the expired tasks, so a timeout
+ * runs at most one tick after its deadline. Timeouts longer than a turn of
+ * the wheel stay in their bucket until the turn of their deadline.
+ * <p>
+ * Tasks are run by the wheel thread, so they must not block.
+ * <p>
+ * Instances of this class are thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 06/12/2010
+ */
+final class TimerWheel extends LoggingObject {
+
+	private static final AtomicInteger WHEEL_NUMBER = new AtomicInteger();
+
+	private final long tickMillis;
+	private final Bucket[] buckets;
+	private final int mask;
+	private final long startTime;
+	private final Thread worker;
+
+	// Last tick whose bucket has been visited
+	private volatile long processedTick = 0;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates a new instance, starting its thread.
+	 * 
+	 * @param tickMillis
+	 *            the length of a tick, in milliseconds.
+	 * @param wheelSize
+	 *            the number of buckets, rounded up to a power of two.
+	 * @throws IllegalArgumentException
+	 *             if tickMillis or wheelSize are not positive.
+	 */
+	TimerWheel(long tickMillis, int wheelSize) {
+		if (tickMillis < 1 || wheelSize < 1) {
+			throw new IllegalArgumentException(
+					"tickMillis and wheelSize must be positive");
+		}
+		int size = Integer.highestOneBit(wheelSize);
+		if (size < wheelSize) {
+			size <<= 1;
+		}
+		this.tickMillis = tickMillis;
+		this.buckets = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			this.buckets[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.startTime = System.currentTimeMillis();
+		this.worker = new Thread(new Worker(), "TimerWheel-"
+				+ WHEEL_NUMBER.incrementAndGet());
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Schedules a task.
+	 * 
+	 * @param task
+	 *            the task to run.
+	 * @param delayMillis
+	 *            the delay, in milliseconds.
+	 * @return the timeout, that can be used to cancel the task.
+	 */
+	Timeout schedule(Runnable task, long delayMillis) {
+		long deadline = System.currentTimeMillis() + Math.max(0, delayMillis);
+		Timeout timeout = new Timeout(task, deadline);
+		long deadlineTick = (deadline - this.startTime + this.tickMillis - 1)
+				/ this.tickMillis;
+		while (true) {
+			/*
+			 * A tick already visited would not be visited until the next turn
+			 */
+			long tick = Math.max(deadlineTick, this.processedTick + 1);
+			Bucket bucket = this.buckets[(int) (tick & this.mask)];
+			synchronized (bucket) {
+				if (this.processedTick < tick) {
+					bucket.add(timeout);
+					return timeout;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the thread of this wheel. Pending timeouts are discarded.
+	 */
+	void shutdown() {
+		this.stopped = true;
+		this.worker.interrupt();
+	}
+
+	/**
+	 * A task scheduled in the wheel.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	static final class Timeout {
+
+		private final Runnable task;
+		private final long deadline;
+		// Guarded by the bucket monitor, null once expired or cancelled
+		private volatile Bucket bucket;
+		private Timeout prev;
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the task, if it has not been run yet.
+		 * 
+		 * @return <code>true</code> if the task was cancelled.
+		 */
+		boolean cancel() {
+			Bucket current = this.bucket;
+			if (current == null) {
+				return false;
+			}
+			synchronized (current) {
+				if (this.bucket != current) {
+					return false;
+				}
+				current.remove(this);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Doubly linked list of timeouts.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private static final class Bucket {
+
+		private Timeout head;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.next = this.head;
+			if (this.head != null) {
+				this.head.prev = timeout;
+			}
+			this.head = timeout;
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				this.head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		/*
+		 * Removes and returns the timeouts whose deadline has passed
+		 */
+		List<Timeout> expire(long now) {
+			List<Timeout> ret = new ArrayList<Timeout>();
+			Timeout timeout = this.head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.deadline <= now) {
+					remove(timeout);
+					ret.add(timeout);
+				}
+				timeout = next;
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Visits a bucket per tick.
+	 * 
+	 * @author Ignacio del Valle Alles
+	 */
+	private final class Worker implements Runnable {
+
+		public void run() {
+			long tick = TimerWheel.this.processedTick;
+			while (!TimerWheel.this.stopped) {
+				tick++;
+				long tickTime = TimerWheel.this.startTime + tick
+						* TimerWheel.this.tickMillis;
+				long sleep = tickTime - System.currentTimeMillis();
+				if (sleep > 0) {
+					try {
+						Thread.sleep(sleep);
+					} catch (InterruptedException e) {
+						tick--;
+						continue;
+					}
+				}
+				List<Timeout> expired;
+				Bucket bucket = TimerWheel.this.buckets[(int) (tick & TimerWheel.this.mask)];
+				synchronized (bucket) {
+					TimerWheel.this.processedTick = tick;
+					expired = bucket.expire(tickTime);
+				}
+				for (Timeout timeout : expired) {
+					try {
+						timeout.task.run();
+					} catch (RuntimeException e) {
+						TimerWheel.this.logger.log(Level.WARNING,
+								"Error running timeout task", e);
+					}
+				}
+			}
+		}
+	}
+}
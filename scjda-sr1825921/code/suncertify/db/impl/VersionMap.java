@@ -0,0 +1,151 @@
+/*
+ * VersionMap.java 08/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+
+/**
+ * In-memory versions of the record slots of a data file. Every change of a
+ * record gives it a new version, taken from a counter shared by all the
+ * records, so a version is never repeated.
+ * <p>
+ * The file format has no room for the versions, so they are not stored with
+ * the records. Instead, the counter is persisted in a small file next to the
+ * data file, reserving blocks of versions, so it only needs to be written
+ * once every {@link #RESERVATION} changes. When a new instance is created,
+ * for example once the data file is opened again, every record gets a version
+ * following the last reserved block, so a version read before never matches a
+ * record afterwards.<br>
+ * Record numbers are limited to the <code>int</code> range.
+ * <p>
+ * Instances of this class are not thread-safe. The owner must guard them with
+ * the same lock used to access the file.
+ * </p>
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 08/12/2010
+ */
+final class VersionMap {
+
+	/**
+	 * Number of versions reserved with each write of the version file.
+	 */
+	static final long RESERVATION = 1024 * 1024;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final File file;
+	// version of the records not changed since the file was opened
+	private final long baseVersion;
+	private long[] versions = new long[INITIAL_CAPACITY]; // 0 for base
+	private long lastVersion;
+	private long reservedVersion;
+
+	/**
+	 * Creates a new instance, reading and reserving the versions in the
+	 * specified file.
+	 * 
+	 * @param file
+	 *            the version file.
+	 * @throws IOException
+	 *             if an error occurs.
+	 */
+	VersionMap(File file) throws IOException {
+		this.file = file;
+		long stored = 0;
+		if (file.exists() && file.length() >= 8) {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				stored = raf.readLong();
+			} finally {
+				raf.close();
+			}
+		}
+		this.lastVersion = stored;
+		this.reservedVersion = stored;
+		this.baseVersion = nextVersion();
+	}
+
+	/**
+	 * Returns the version file for the specified data file.
+	 * 
+	 * @param dataFile
+	 *            the data file.
+	 * @return the file with the same name plus <code>.ver</code>.
+	 */
+	static File getVersionFile(File dataFile) {
+		return new File(dataFile.getPath() + ".ver");
+	}
+
+	/**
+	 * Returns the current version of a record slot.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @return the version.
+	 */
+	long get(long recNo) {
+		if (recNo < this.versions.length && this.versions[(int) recNo] != 0) {
+			return this.versions[(int) recNo];
+		}
+		return this.baseVersion;
+	}
+
+	/**
+	 * Gives a new version to a record slot. Called on each change of the
+	 * record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @return the new version.
+	 * @throws IOException
+	 *             if the version file can not be written.
+	 */
+	long increment(long recNo) throws IOException {
+		if (recNo >= this.versions.length) {
+			long[] newVersions = new long[(int) Math.min(Integer.MAX_VALUE,
+					Math.max(recNo + 1, 2L * this.versions.length))];
+			System.arraycopy(this.versions, 0, newVersions, 0,
+					this.versions.length);
+			this.versions = newVersions;
+		}
+		long ret = nextVersion();
+		this.versions[(int) recNo] = ret;
+		return ret;
+	}
+
+	/*
+	 * Takes the next version, reserving a new block if needed
+	 */
+	private long nextVersion() throws IOException {
+		if (this.lastVersion == this.reservedVersion) {
+			long reserved = this.reservedVersion + RESERVATION;
+			RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+			try {
+				raf.writeLong(reserved);
+				raf.getFD().sync();
+			} finally {
+				raf.close();
+			}
+			this.reservedVersion = reserved;
+		}
+		return ++this.lastVersion;
+	}
+}
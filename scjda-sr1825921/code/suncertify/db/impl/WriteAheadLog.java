@@ -0,0 +1,302 @@
+/*
+ * WriteAheadLog.java 12/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+
+/**
+ * Redo log of the record writes of a data file, appended sequentially before
+ * the data file is modified.
+ * <p>
+ * Each entry holds the record number and the range of bytes of the record
+ * that changed:
+ * <blockquote>
+ * 
+ * <pre>
+ * 8 byte numeric, record number
+ * 4 byte numeric, offset of the range in the record
+ * 4 byte numeric, length of the range
+ * n bytes, new contents of the range
+ * 4 byte numeric, CRC32 of the previous fields
+ * </pre>
+ * 
+ * </blockquote>
+ * Entries are physical (they overwrite bytes), so replaying them several
+ * times has the same effect as once. Replay stops at the first incomplete or
+ * corrupt entry, the one being appended when the process died.
+ * <p>
+ * Instances of this class are not thread-safe, except {@link #force()} that
+ * can be invoked concurrently with the rest of methods.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 12/11/2010
+ */
+final class WriteAheadLog {
+
+	// Size of the numeric fields of an entry
+	private static final int HEADER_SIZE = 8 + 4 + 4;
+	private static final int CRC_SIZE = 4;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final CRC32 crc = new CRC32();
+	private long size;
+
+	/**
+	 * Opens the log file, positioning at its end.
+	 * 
+	 * @param file
+	 *            the log file, created if it does not exist.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	WriteAheadLog(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = this.raf.getChannel();
+		this.size = this.raf.length();
+	}
+
+	/**
+	 * Returns the log file for the specified data file.
+	 * 
+	 * @param dataFile
+	 *            the data file.
+	 * @return the file with the same name plus <code>.wal</code>.
+	 */
+	static File getLogFile(File dataFile) {
+		return new File(dataFile.getPath() + ".wal");
+	}
+
+	/**
+	 * Appends an entry with the specified range of a record.
+	 * 
+	 * @param recNo
+	 *            the record number.
+	 * @param record
+	 *            the new record bytes.
+	 * @param from
+	 *            first byte of the changed range.
+	 * @param to
+	 *            byte following the changed range.
+	 * @throws IOException
+	 *             if an IO error occurs. The log is left as it was.
+	 */
+	void append(long recNo, byte[] record, int from, int to)
+			throws IOException {
+
+		int length = to - from;
+		ByteBuffer entry = ByteBuffer.allocate(HEADER_SIZE + length + CRC_SIZE);
+		entry.putLong(recNo);
+		entry.putInt(from);
+		entry.putInt(length);
+		entry.put(record, from, length);
+		this.crc.reset();
+		this.crc.update(entry.array(), 0, entry.position());
+		entry.putInt((int) this.crc.getValue());
+		entry.flip();
+
+		long position = this.size;
+		try {
+			while (entry.hasRemaining()) {
+				this.channel.write(entry, position + entry.position());
+			}
+		} catch (IOException e) {
+			// Do not leave a partial entry followed by good ones
+			this.channel.truncate(position);
+			throw e;
+		}
+		this.size = position + entry.limit();
+	}
+
+	/**
+	 * Returns the log size.
+	 * 
+	 * @return the number of bytes.
+	 */
+	long size() {
+		return this.size;
+	}
+
+	/**
+	 * Forces the log to the storage device.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	void force() throws IOException {
+		this.channel.force(false);
+	}
+
+	/**
+	 * Empties the log, once its entries have been written back to the data
+	 * file and forced.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	void reset() throws IOException {
+		this.channel.truncate(0);
+		this.channel.force(true);
+		this.size = 0;
+	}
+
+	/**
+	 * Closes the log file.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	void close() throws IOException {
+		this.raf.close();
+	}
+
+	@Override
+	public String toString() {
+		return this.file.getName();
+	}
+
+	/**
+	 * Applies the entries of a log to its data file and empties the log. Each
+	 * changed record is read once, and written back once in file order.
+	 * 
+	 * @param logFile
+	 *            the log file. Nothing is done if it does not exist.
+	 * @param dataFile
+	 *            the data file.
+	 * @param startOfDataSection
+	 *            the position of the first record in the data file.
+	 * @param recordSize
+	 *            the size of a record.
+	 * @return the number of entries applied.
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	static int replay(File logFile, File dataFile, long startOfDataSection,
+			int recordSize) throws IOException {
+
+		if (!logFile.exists() || logFile.length() == 0) {
+			return 0;
+		}
+		Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+
+		/*
+		 * Rebuild the latest image of each record in the log
+		 */
+		TreeMap<Long, byte[]> records = new TreeMap<Long, byte[]>();
+		RandomAccessFile data = new RandomAccessFile(dataFile, "rw");
+		int entries = 0;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(logFile), 64 * 1024));
+			try {
+				CRC32 crc = new CRC32();
+				byte[] range = new byte[recordSize];
+				while (true) {
+					long recNo;
+					int from;
+					int length;
+					int checksum;
+					try {
+						recNo = in.readLong();
+						from = in.readInt();
+						length = in.readInt();
+						if (recNo < 0 || from < 0 || length < 0
+								|| from + length > recordSize) {
+							break;
+						}
+						in.readFully(range, 0, length);
+						checksum = in.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+					header.putLong(recNo).putInt(from).putInt(length);
+					crc.reset();
+					crc.update(header.array());
+					crc.update(range, 0, length);
+					if ((int) crc.getValue() != checksum) {
+						break;
+					}
+
+					byte[] record = records.get(recNo);
+					if (record == null) {
+						record = readRecord(data, startOfDataSection
+								+ recNo * recordSize, recordSize);
+						records.put(recNo, record);
+					}
+					System.arraycopy(range, 0, record, from, length);
+					entries++;
+				}
+			} finally {
+				in.close();
+			}
+
+			/*
+			 * Write back in file order
+			 */
+			for (Map.Entry<Long, byte[]> entry : records.entrySet()) {
+				data.seek(startOfDataSection + entry.getKey() * recordSize);
+				data.write(entry.getValue());
+			}
+			data.getChannel().force(true);
+		} finally {
+			data.close();
+		}
+
+		// The log is not needed anymore
+		RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+		try {
+			log.setLength(0);
+			log.getChannel().force(true);
+		} finally {
+			log.close();
+		}
+		logger.log(Level.INFO, "Replayed " + entries + " log entries over "
+				+ records.size() + " records of " + dataFile.getName());
+		return entries;
+	}
+
+	/*
+	 * Reads a record, zero filled beyond the end of file
+	 */
+	private static byte[] readRecord(RandomAccessFile data, long position,
+			int recordSize) throws IOException {
+		byte[] ret = new byte[recordSize];
+		if (position < data.length()) {
+			data.seek(position);
+			int read = 0;
+			while (read < recordSize) {
+				int n = data.read(ret, read, recordSize - read);
+				if (n < 0) {
+					break;
+				}
+				read += n;
+			}
+		}
+		return ret;
+	}
+}
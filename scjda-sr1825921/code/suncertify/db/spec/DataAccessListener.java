@@ -0,0 +1,70 @@
+/*
+ * DataAccessListener.java 19/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.spec;
+
+
+/**
+ * Receives the changes performed on the records of a {@link DataAccessObject}
+ * (see {@link DataAccessObject#addDataAccessListener(DataAccessListener)}).
+ * <br>
+ * Notifications are delivered synchronously by the writing thread, in the
+ * same order the changes are performed, so listeners must be fast and must
+ * not access the notifying object.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 19/11/2010
+ * 
+ * @param <P>
+ *            Primary key type.
+ * @param <R>
+ *            Record type.
+ */
+public interface DataAccessListener<P, R> {
+
+	/**
+	 * Invoked after a record has been created.
+	 * 
+	 * @param pk
+	 *            the primary key of the new record.
+	 * @param record
+	 *            the record, as it will be read.
+	 */
+	public void recordInserted(P pk, R record);
+
+	/**
+	 * Invoked after a record has been updated.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @param oldRecord
+	 *            the record before the update.
+	 * @param newRecord
+	 *            the record after the update, as it will be read.
+	 */
+	public void recordUpdated(P pk, R oldRecord, R newRecord);
+
+	/**
+	 * Invoked after a record has been deleted.
+	 * 
+	 * @param pk
+	 *            the primary key of the deleted record.
+	 * @param oldRecord
+	 *            the record before the deletion.
+	 */
+	public void recordDeleted(P pk, R oldRecord);
+
+}
@@ -35,6 +35,12 @@ import suncertify.db.RecordNotFoundException;
  */
 public interface DataAccessObject<P, R> {
 
+	/**
+	 * Value returned by {@link #updateIfVersion(Object, Object, long)} when the
+	 * record version is not the expected one.
+	 */
+	public static final long VERSION_MISMATCH = -1;
+
 	/**
 	 * Updates the record identified by this pk.
 	 * 
@@ -46,6 +52,40 @@ public interface DataAccessObject<P, R> {
 	 */
 	public void update(P pk, R record) throws RecordNotFoundException;
 
+	/**
+	 * Updates the records identified by these pks. Either all the records are
+	 * updated or, if any of them can not be found, none is.
+	 * 
+	 * @param pks
+	 *            the record primary keys.
+	 * @param records
+	 *            holds the values to update, in the order of pks.
+	 * @throws RecordNotFoundException
+	 *             if any of the records can no be found.
+	 * @throws IllegalArgumentException
+	 *             if pks and records lengths differ.
+	 */
+	public void update(P[] pks, R[] records) throws RecordNotFoundException;
+
+	/**
+	 * Updates the record identified by this pk only if its version is the
+	 * expected one, as a single atomic operation. Every change of a record
+	 * gives it a new version, never used before.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @param record
+	 *            holds the values to update.
+	 * @param expectedVersion
+	 *            the version the record must have.
+	 * @return the new version of the record, or {@link #VERSION_MISMATCH} if
+	 *         its version was not the expected one and it was not updated.
+	 * @throws RecordNotFoundException
+	 *             if the record can no be found.
+	 */
+	public long updateIfVersion(P pk, R record, long expectedVersion)
+			throws RecordNotFoundException;
+
 	/**
 	 * Deletes the record identified by this pk.
 	 * 
@@ -75,6 +115,29 @@ public interface DataAccessObject<P, R> {
 	 */
 	public R findByPrimaryKey(P pk) throws RecordNotFoundException;
 
+	/**
+	 * Returns the record identified by the pk together with its current
+	 * version, both read at the same time.
+	 * 
+	 * @param pk
+	 *            the record primary key.
+	 * @return the record and its version.
+	 * @throws RecordNotFoundException if the record does not exists.
+	 * @see #updateIfVersion(Object, Object, long)
+	 */
+	public Versioned<R> findVersionedByPrimaryKey(P pk)
+			throws RecordNotFoundException;
+
+	/**
+	 * Returns the records identified by the pks.
+	 * 
+	 * @param pks
+	 *            the record primary keys.
+	 * @return the records, in the order of pks, with <code>null</code> for
+	 *         the records that do not exist.
+	 */
+	public R[] findByPrimaryKeys(P[] pks);
+
 	/**
 	 * Returns all the records.
 	 * 
@@ -82,4 +145,52 @@ public interface DataAccessObject<P, R> {
 	 */
 	public P[] findAll();
 
+	/**
+	 * Returns a cursor over the existing records, in storage order.<br>
+	 * Records changed while the cursor is open may be seen in any of their
+	 * states.
+	 * 
+	 * @return a new cursor, that must be closed after use.
+	 */
+	public RecordCursor<P, R> scan();
+
+	/**
+	 * Returns a cursor over the existing records whose position in the
+	 * storage is in the specified range, in storage order. Allows several
+	 * cursors to process the records in parallel.
+	 * 
+	 * @param from
+	 *            first position, inclusive.
+	 * @param to
+	 *            last position, exclusive.
+	 * @return a new cursor, that must be closed after use.
+	 * @see #getNumberOfRecords()
+	 */
+	public RecordCursor<P, R> scan(P from, P to);
+
+	/**
+	 * Returns the number of record positions in the storage, existing records
+	 * or not.
+	 * 
+	 * @return the upper bound of the positions accepted by
+	 *         {@link #scan(Object, Object)}.
+	 */
+	public long getNumberOfRecords();
+
+	/**
+	 * Registers a listener to be notified of the record changes.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void addDataAccessListener(DataAccessListener<P, R> listener);
+
+	/**
+	 * Unregisters a listener.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void removeDataAccessListener(DataAccessListener<P, R> listener);
+
 }
@@ -16,6 +16,8 @@
 
 package suncertify.db.spec;
 
+import suncertify.db.Query;
+
 
 /**
  * Declares advanced finder methods.
@@ -40,4 +42,61 @@ public interface FinderObject<P, R> {
 	 */
 	public P[] findByCriteria(R criteria);
 
+	/**
+	 * Returns the primary keys of those records that match any of the
+	 * specified criteria.
+	 * 
+	 * @param criteria
+	 *            criteria record object.
+	 * @return an array of primary keys.
+	 */
+	public P[] findByAnyCriteria(R criteria);
+
+	/**
+	 * Returns the primary keys of those records whose field values are within
+	 * the specified bounds.
+	 * 
+	 * @param min
+	 *            record object holding the lower bounds, inclusive.
+	 * @param max
+	 *            record object holding the upper bounds, inclusive.
+	 * @return an array of primary keys.
+	 */
+	public P[] findByRange(R min, R max);
+
+	/**
+	 * Returns the primary keys of those records whose field values contain
+	 * the specified criteria.
+	 * 
+	 * @param criteria
+	 *            criteria record object.
+	 * @return an array of primary keys.
+	 */
+	public P[] findBySubstring(R criteria);
+
+	/**
+	 * Returns the primary keys of those records that match the specified
+	 * query.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return an array of primary keys.
+	 */
+	public P[] findByQuery(Query query);
+
+	/**
+	 * Returns the primary keys following the specified one of those records
+	 * that match the specified query, in primary key order.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param after
+	 *            the primary key to start after, <code>null</code> to start
+	 *            from the first record.
+	 * @param limit
+	 *            the maximum number of primary keys returned.
+	 * @return an array of up to limit primary keys.
+	 */
+	public P[] findByQuery(Query query, P after, int limit);
+
 }
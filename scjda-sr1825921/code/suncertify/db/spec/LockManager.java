@@ -16,12 +16,19 @@
 
 package suncertify.db.spec;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import suncertify.db.SecurityException;
 
 
 /**
  * The <code>LockManager</code> provides unified management for a keyed
  * collection of locks.
+ * <p>
+ * Implementations may grant locks for a limited lease time, releasing them
+ * automatically when it expires unless the owner renews them (see
+ * {@link #renew(Object, Object) renew(K lockKey, C cookie)}).
  * 
  * @author Ignacio del Valle Alles
  * @version 1.0 27/09/2010
@@ -46,6 +53,52 @@ public interface LockManager<K, C> {
 	 */
 	public C lock(K lockKey);
 
+	/**
+	 * Acquires the locks corresponding to the specified keys, as a single
+	 * operation that either acquires all of them or none. The locks are
+	 * acquired in the natural ordering of the keys, whatever the order given,
+	 * so concurrent calls locking overlapping keys can not deadlock.
+	 * 
+	 * @param lockKeys
+	 *            the locking keys identifying the locks, mutually comparable.
+	 * @return the cookies needed to perform the unlocking, in the order of
+	 *         lockKeys.
+	 * @throws IllegalArgumentException
+	 *             if lockKeys contains duplicated keys.
+	 * @throws ClassCastException
+	 *             if the keys are not mutually comparable.
+	 * @see #lock(Object) lock(K lockKey)
+	 */
+	public List<C> lockAll(List<? extends K> lockKeys);
+
+	/**
+	 * Acquires the lock corresponding to the specified key only if it is not
+	 * owned, without waiting.
+	 * 
+	 * @param lockKey
+	 *            the locking key identifying the lock.
+	 * @return the cookie needed to perform the unlocking, or <code>null</code>
+	 *         if the lock is already owned.
+	 * @see #lock(Object) lock(K lockKey)
+	 */
+	public C tryLock(K lockKey);
+
+	/**
+	 * Acquires the lock corresponding to the specified key, waiting up to the
+	 * specified time if it is already owned.
+	 * 
+	 * @param lockKey
+	 *            the locking key identifying the lock.
+	 * @param timeout
+	 *            the maximum time to wait.
+	 * @param unit
+	 *            the time unit of the timeout argument.
+	 * @return the cookie needed to perform the unlocking, or <code>null</code>
+	 *         if the lock is still owned when the time elapses.
+	 * @see #lock(Object) lock(K lockKey)
+	 */
+	public C tryLock(K lockKey, long timeout, TimeUnit unit);
+
 	/**
 	 * Releases the corresponding lock. <br>
 	 * 
@@ -60,6 +113,74 @@ public interface LockManager<K, C> {
 	 */
 	public void unlock(K lockKey, C cookie) throws SecurityException;
 
+	/**
+	 * Releases the corresponding locks, as a single operation that either
+	 * releases all of them or none: every cookie is validated while holding
+	 * the locks, so none of them can be released or expire in between.
+	 * 
+	 * @param lockKeys
+	 *            the locking keys identifying the locks, mutually comparable.
+	 * @param cookies
+	 *            the values returned in lock acquisition, in the order of
+	 *            lockKeys.
+	 * @throws SecurityException
+	 *             if any of the cookies supplied does not match the value
+	 *             returned at locking time. No lock is released.
+	 * @throws IllegalArgumentException
+	 *             if lockKeys contains duplicated keys, or the sizes of
+	 *             lockKeys and cookies differ.
+	 * @throws ClassCastException
+	 *             if the keys are not mutually comparable.
+	 * @see #lockAll(List)
+	 */
+	public void unlockAll(List<? extends K> lockKeys, List<? extends C> cookies)
+			throws SecurityException;
+
+	/**
+	 * Extends the lease of the corresponding lock, if leases are enabled, by
+	 * a whole lease time from now.
+	 * 
+	 * @param lockKey
+	 *            the locking key identifying the lock.
+	 * @param cookie
+	 *            the value returned in lock acquisition.
+	 * @throws SecurityException
+	 *             if the cookie supplied does not match the value returned at
+	 *             locking time, or the lease has already expired.
+	 * @see #lock(Object) lock(K lockKey)
+	 */
+	public void renew(K lockKey, C cookie) throws SecurityException;
+
+	/**
+	 * Validates the cookie and keeps the lease of the corresponding lock from
+	 * expiring until {@link #unpin(Object, Object) unpin(K lockKey, C cookie)}
+	 * is called, so the owner can validate the cookie and modify the guarded
+	 * entity as a single operation. A lease expiring meanwhile is released at
+	 * unpinning time. Pins are counted, every pin must be followed by an unpin.
+	 * 
+	 * @param lockKey
+	 *            the locking key identifying the lock.
+	 * @param cookie
+	 *            the value returned in lock acquisition.
+	 * @throws SecurityException
+	 *             if the cookie supplied does not match the value returned at
+	 *             locking time, or the lease has already expired.
+	 * @see #unpin(Object, Object) unpin(K lockKey, C cookie)
+	 */
+	public void pin(K lockKey, C cookie) throws SecurityException;
+
+	/**
+	 * Undoes a previous {@link #pin(Object, Object) pin(K lockKey, C cookie)},
+	 * releasing the lock if its lease expired while pinned. Does nothing if the
+	 * lock has been released meanwhile.
+	 * 
+	 * @param lockKey
+	 *            the locking key identifying the lock.
+	 * @param cookie
+	 *            the value given at pinning time.
+	 */
+	public void unpin(K lockKey, C cookie);
+
 	/**
 	 * Tests if the cookie is valid for that key.
 	 * 
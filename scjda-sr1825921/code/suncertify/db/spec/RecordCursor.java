@@ -0,0 +1,93 @@
+/*
+ * RecordCursor.java 15/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.spec;
+
+
+/**
+ * Forward only iteration over the records of a {@link DataAccessObject}.
+ * <br>
+ * A cursor is initially positioned before the first record. The record
+ * returned by the getter methods is the one the cursor is positioned on, and
+ * is only valid until the next call to {@link #next()}.
+ * <p>
+ * Usage:
+ * <blockquote>
+ * 
+ * <pre>
+ * RecordCursor&lt;P, R&gt; cursor = dao.scan();
+ * try {
+ * 	while (cursor.next()) {
+ * 		...
+ * 	}
+ * } finally {
+ * 	cursor.close();
+ * }
+ * </pre>
+ * 
+ * </blockquote>
+ * Instances of this interface are not required to be thread-safe.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 15/11/2010
+ * 
+ * @param <P>
+ *            Primary key type.
+ * @param <R>
+ *            Record type.
+ */
+public interface RecordCursor<P, R> {
+
+	/**
+	 * Moves the cursor to the next record.
+	 * 
+	 * @return <code>false</code> if there are no more records.
+	 */
+	public boolean next();
+
+	/**
+	 * Returns the primary key of the current record.
+	 * 
+	 * @return the primary key.
+	 * @throws IllegalStateException
+	 *             if the cursor is not positioned on a record.
+	 */
+	public P getPrimaryKey();
+
+	/**
+	 * Returns the current record.
+	 * 
+	 * @return a new record object.
+	 * @throws IllegalStateException
+	 *             if the cursor is not positioned on a record.
+	 */
+	public R getRecord();
+
+	/**
+	 * Returns a view of the current record, valid until the cursor moves.
+	 * 
+	 * @return the record view.
+	 * @throws IllegalStateException
+	 *             if the cursor is not positioned on a record.
+	 */
+	public RecordView getRecordView();
+
+	/**
+	 * Releases the resources held by the cursor.
+	 */
+	public void close();
+
+}
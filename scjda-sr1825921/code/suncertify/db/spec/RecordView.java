@@ -0,0 +1,114 @@
+/*
+ * RecordView.java 05/11/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.spec;
+
+import java.math.BigDecimal;
+
+
+/**
+ * Read only view of the field values of a record, allowing to test them
+ * without building a <code>String</code> per field.<br>
+ * Field values are seen as {@link String#trim() trimmed}, and comparisons
+ * are case sensitive.
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 05/11/2010
+ */
+public interface RecordView {
+
+	/**
+	 * Value returned by {@link #compareFieldNumber(int, BigDecimal)} when the
+	 * field value is not numeric.
+	 */
+	public static final int NOT_NUMERIC = Integer.MIN_VALUE;
+
+	/**
+	 * Returns the number of fields of the record.
+	 * 
+	 * @return an integer.
+	 */
+	public int getNumberOfFields();
+
+	/**
+	 * Returns the value of the specified field.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @return the field value.
+	 */
+	public String getField(int fieldNo);
+
+	/**
+	 * Returns the values of all the fields.
+	 * 
+	 * @return a new array with the field values.
+	 */
+	public String[] getFields();
+
+	/**
+	 * Tests if the value of the specified field begins with the specified
+	 * prefix.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param prefix
+	 *            the prefix.
+	 * @return <code>true</code> if the field value starts with prefix.
+	 */
+	public boolean fieldStartsWith(int fieldNo, String prefix);
+
+	/**
+	 * Tests if the value of the specified field is equal to the specified
+	 * value.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the value to compare.
+	 * @return <code>true</code> if both values are equal.
+	 */
+	public boolean fieldEquals(int fieldNo, String value);
+
+	/**
+	 * Compares lexicographically the value of the specified field with the
+	 * specified value, as {@link String#compareTo(String)} does.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the value to compare.
+	 * @return a negative integer, zero, or a positive integer as the field
+	 *         value is less than, equal to, or greater than the specified one.
+	 */
+	public int compareField(int fieldNo, String value);
+
+	/**
+	 * Compares numerically the value of the specified field with the
+	 * specified value. Numeric field values may be preceded by a currency
+	 * symbol, as <code>"$150.00"</code>.
+	 * 
+	 * @param fieldNo
+	 *            the field index.
+	 * @param value
+	 *            the value to compare.
+	 * @return a negative integer, zero, or a positive integer as the field
+	 *         value is less than, equal to, or greater than the specified one,
+	 *         or {@link #NOT_NUMERIC} if the field value is not numeric.
+	 */
+	public int compareFieldNumber(int fieldNo, BigDecimal value);
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Versioned.java 08/12/2010
+ * 
+ * Candidate: Ignacio del Valle Alles
+ * Candidate ID: SR1825921
+ * 
+ * Sun Certified Developer for Java 2 Platform, Standard Edition Programming
+ * Assignment (CX-310-252A)
+ * 
+ * This class is part of the Programming Assignment of the Sun Certified
+ * Developer for Java 2 Platform, Standard Edition certification program, must
+ * not be used out of this context and must be used exclusively by Oracle
+ * Corporation.
+ */
+
+
+package suncertify.db.spec;
+
+
+/**
+ * A record together with its version, read at the same time (see
+ * {@link DataAccessObject#findVersionedByPrimaryKey(Object)}).
+ * 
+ * @author Ignacio del Valle Alles
+ * @version 1.0 08/12/2010
+ * 
+ * @param <R>
+ *            Record type
+ */
+public final class Versioned<R> {
+
+	private final R record;
+	private final long version;
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param record
+	 *            the record.
+	 * @param version
+	 *            the version of the record.
+	 */
+	public Versioned(R record, long version) {
+		this.record = record;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the record.
+	 * 
+	 * @return the record.
+	 */
+	public R getRecord() {
+		return this.record;
+	}
+
+	/**
+	 * Returns the version of the record.
+	 * 
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+}
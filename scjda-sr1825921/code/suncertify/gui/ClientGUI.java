@@ -47,20 +47,14 @@ import suncertify.bs.Business;
 import suncertify.bs.HotelRoom;
 import suncertify.bs.RoomNotFoundException;
 import suncertify.bs.Business.Condition;
-import suncertify.bs.commands.BookCommand;
-import suncertify.bs.commands.LockCommand;
-import suncertify.bs.commands.SearchCommand;
-import suncertify.bs.commands.UnlockCommand;
+import suncertify.bs.commands.BookRoomCommand;
+import suncertify.bs.commands.SearchPageCommand;
 import suncertify.client.Client;
 import suncertify.commons.Constants;
 import suncertify.commons.PropertiesManager;
 import suncertify.db.DBAccess;
-import suncertify.db.Data;
 import suncertify.db.NotSupportedDataBaseException;
-import suncertify.db.SecurityException;
-import suncertify.db.impl.DefaultFinderImp;
-import suncertify.db.impl.DefaultLockManagerImpl;
-import suncertify.db.impl.URLyBirdFile_1_2_1;
+import suncertify.db.impl.DataFactory;
 import suncertify.gui.client.Mediator;
 import suncertify.gui.client.beans.TableBean;
 import suncertify.gui.client.beans.TableBeanListener;
@@ -75,6 +69,11 @@ public final class ClientGUI extends BaseGUI implements TableBeanListener {
 
 	static final long serialVersionUID = 3944035492725313618L;
 
+	/*
+	 * Number of rooms requested in each page of search results
+	 */
+	private static final int PAGE_SIZE = 100;
+
 	/**
 	 * Last window width. This value is overwritten by {@link PropertiesManager}
 	 * .
@@ -129,7 +128,7 @@ public final class ClientGUI extends BaseGUI implements TableBeanListener {
 	/*
 	 * Keep track of last successful search to perform view "refresh"
 	 */
-	private SearchCommand lastSearch;
+	private SearchPageCommand lastSearch;
 
 	/*
 	 * GUI components
@@ -343,15 +342,11 @@ public final class ClientGUI extends BaseGUI implements TableBeanListener {
 			try {
 				String path = file.getAbsolutePath();
 
-				URLyBirdFile_1_2_1 uf = new URLyBirdFile_1_2_1(file);
-				DefaultFinderImp finder = new DefaultFinderImp(uf);
-				DefaultLockManagerImpl<Long> lockManagerImpl = new DefaultLockManagerImpl<Long>();
-
 				/*
 				 * Update dBAccess. Common behaviour for local and remote
 				 * databases
 				 */
-				DBAccess dbAccess = new Data(uf, finder, lockManagerImpl);
+				DBAccess dbAccess = DataFactory.createData(file);
 				updateBusiness(new Business(dbAccess));
 
 				this.getMenuItemClose().setEnabled(true);
@@ -485,39 +480,22 @@ public final class ClientGUI extends BaseGUI implements TableBeanListener {
 	}
 
 	/*
-	 * For the selected table row: Locks the record, opens a dialog to the user,
-	 * and finally unlocks the record.
+	 * For the selected table row: Opens a dialog to the user, and books the
+	 * room in a single server call. The table row is updated with the result.
 	 */
-	@SuppressWarnings("boxing")
 	void book() {
 		if (this.tableBean != null) {
 			try {
-				LockCommand lCmd = new LockCommand(this.selectedRoom.getId());
-				long cookie = this.mediator.executeCommandSync(lCmd);
-				try {
-					String customerID = JOptionPane.showInputDialog(this,
-							"Enter customer ID:", "Booking room with id: "
-									+ this.selectedRoom.getId(),
-							JOptionPane.QUESTION_MESSAGE);
-					if (customerID == null) {
-						return;
-					}
-					BookCommand bCmd = new BookCommand(this.selectedRoom
-							.getId(), customerID, cookie);
-					this.mediator.executeCommandSync(bCmd);
-					refresh();
-				} finally {
-					try {
-						UnlockCommand uCmd = new UnlockCommand(
-								this.selectedRoom.getId(), cookie);
-						this.mediator.executeCommandSync(uCmd);
-					} catch (SecurityException e) {
-						/*
-						 * This should not be run
-						 */
-						assert (false);
-					}
+				String customerID = JOptionPane.showInputDialog(this,
+						"Enter customer ID:", "Booking room with id: "
+								+ this.selectedRoom.getId(),
+						JOptionPane.QUESTION_MESSAGE);
+				if (customerID == null) {
+					return;
 				}
+				BookRoomCommand bCmd = new BookRoomCommand(this.selectedRoom
+						.getId(), customerID);
+				selectedRoom(this.mediator.executeCommandSync(bCmd));
 			} catch (Exception e) {
 				handleServerException(e);
 			}
@@ -638,14 +616,16 @@ public final class ClientGUI extends BaseGUI implements TableBeanListener {
 	}
 
 	/*
-	 * Search helper method. Creates a seach command, and requests the mediator
-	 * to execute it synchronously. If the search returns ok, the command is
-	 * remembered to be used again in refresh()
+	 * Search helper method. Creates a seach command for the first page of
+	 * results, and requests the mediator to execute it synchronously. If the
+	 * search returns ok, the command is remembered to be used again in
+	 * refresh(). The table bean requests the following pages while scrolling
 	 */
 	private void doSearch(String name, String location, Condition condition)
 			throws Exception {
 	
-		SearchCommand cmd = new SearchCommand(name, location, condition);
+		SearchPageCommand cmd = new SearchPageCommand(name, location,
+				condition, PAGE_SIZE);
 		this.mediator.executeCommandSync(cmd);
 		this.lastSearch = cmd;
 	}
@@ -27,9 +27,7 @@ import suncertify.commons.LoggingObject;
 import suncertify.commons.PropertiesManager;
 import suncertify.db.Data;
 import suncertify.db.NotSupportedDataBaseException;
-import suncertify.db.impl.DefaultFinderImp;
-import suncertify.db.impl.DefaultLockManagerImpl;
-import suncertify.db.impl.URLyBirdFile_1_2_1;
+import suncertify.db.impl.DataFactory;
 import suncertify.server.Server;
 import suncertify.server.ServerStartException;
 
@@ -86,6 +84,7 @@ public final class ServerGUI extends BaseGUI {
 															// button
 	private javax.swing.JLabel portLabel = null; // Label for port input text
 	private javax.swing.JTextField portField = null; // Port input text
+	private javax.swing.JCheckBox mappedCheckBox = null; // Storage engine
 	private javax.swing.JButton startButton = null; // Start server button
 	private javax.swing.JButton exitButton = null; // Exit button
 
@@ -170,10 +169,7 @@ public final class ServerGUI extends BaseGUI {
 	void startServer(int port, File dbFile) throws IOException,
 			NotSupportedDataBaseException, ServerStartException {
 		this.logger.log(Level.INFO, "Starting server...");
-		URLyBirdFile_1_2_1 uf = new URLyBirdFile_1_2_1(dbFile);
-		DefaultFinderImp finder = new DefaultFinderImp(uf);
-		DefaultLockManagerImpl<Long> lockManagerImpl = new DefaultLockManagerImpl<Long>();
-		Data data = new Data(uf, finder, lockManagerImpl);
+		Data data = DataFactory.createData(dbFile);
 		this.server = new Server(data);
 		this.server.start(port);
 	}
@@ -197,6 +193,21 @@ public final class ServerGUI extends BaseGUI {
 		return this.portField;
 	}
 
+	/*
+	 * This method initializes and returns mappedCheckBox.
+	 */
+	javax.swing.JCheckBox getMappedCheckBox() {
+		if (this.mappedCheckBox == null) {
+			this.mappedCheckBox = new javax.swing.JCheckBox();
+			this.mappedCheckBox.setBounds(205, 60, 200, 25);
+			this.mappedCheckBox.setText("Memory mapped file");
+			this.mappedCheckBox
+					.setToolTipText("Map the database file into memory");
+			this.mappedCheckBox.setSelected(DataFactory.memoryMapped);
+		}
+		return this.mappedCheckBox;
+	}
+
 	/*
 	 * From here, the getters with lazy-initialization for the GUI components.
 	 */
@@ -238,6 +249,8 @@ public final class ServerGUI extends BaseGUI {
 						 */
 						int port = Integer.parseInt(getPortField().getText());
 						String fileName = getDBField().getText();
+						DataFactory.memoryMapped = getMappedCheckBox()
+								.isSelected();
 
 						startServer(port, new File(fileName));
 
@@ -253,6 +266,7 @@ public final class ServerGUI extends BaseGUI {
 						getStartButton().setEnabled(false);
 						getDBField().setEditable(false);
 						getPortField().setEditable(false);
+						getMappedCheckBox().setEnabled(false);
 
 						/*
 						 * Update the following field values, for future
@@ -345,6 +359,7 @@ public final class ServerGUI extends BaseGUI {
 			this.jPanel.add(getFileChooserButton(), null);
 			this.jPanel.add(getPortLabel(), null);
 			this.jPanel.add(getPortField(), null);
+			this.jPanel.add(getMappedCheckBox(), null);
 			this.jPanel.add(getStartButton(), null);
 			this.jPanel.add(getExitButton(), null);
 			this.jPanel.setSize(415, 200);
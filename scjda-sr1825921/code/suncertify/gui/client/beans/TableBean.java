@@ -18,6 +18,7 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.*;
 import java.math.BigDecimal;
 import java.text.DateFormat;
@@ -25,6 +26,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
@@ -32,8 +34,11 @@ import javax.swing.table.*;
 
 import static suncertify.gui.GUIUtils.*;
 import suncertify.bs.HotelRoom;
+import suncertify.bs.RoomPage;
+import suncertify.bs.commands.BookRoomCommand;
 import suncertify.bs.commands.BusinessCommand;
 import suncertify.bs.commands.SearchCommand;
+import suncertify.bs.commands.SearchPageCommand;
 import suncertify.db.RecordNotFoundException;
 import suncertify.gui.client.GUIBean;
 import suncertify.gui.client.Mediator;
@@ -41,7 +46,10 @@ import suncertify.gui.client.Mediator;
 /**
  * A <code>GUIBean</code> to show a list of {@link HotelRoom}s in a table
  * format. These lists are received from the {@link Mediator} as
- * {@link SearchCommand} results.<br>
+ * {@link SearchCommand} results, or page by page as {@link SearchPageCommand}
+ * results: the first page replaces the table rows, and when the table is
+ * scrolled near its last row, the next page is requested asynchronously and
+ * appended.<br>
  * <br>
  * <code>TableBean</code> instances can generate the following events:
  * <ul>
@@ -97,6 +105,11 @@ public class TableBean extends GUIBean {
 
 	private static final int ROW_HEIGHT = 20;
 
+	/*
+	 * Rows left below the visible ones when the next page is requested
+	 */
+	private static final int LOAD_AHEAD_ROWS = 20;
+
 	private final List<TableBeanListener> listeners = new ArrayList<TableBeanListener>();
 
 	/*
@@ -104,6 +117,12 @@ public class TableBean extends GUIBean {
 	 */
 	HotelRoomTable jTable;
 
+	/*
+	 * Last page shown, and the next page requested, if any
+	 */
+	private SearchPageCommand lastPage;
+	private SearchPageCommand pendingPage;
+
 	/**
 	 * Creates a new instance from the specified mediator.
 	 * 
@@ -162,8 +181,11 @@ public class TableBean extends GUIBean {
 
 	/**
 	 * In case of <code>cmd</code> being an instance of {@link SearchCommand}
-	 * class, the <code>TableBean</code> instance updates the table with the new
-	 * results.<br>
+	 * class, or a {@link SearchPageCommand} requesting a first page, the
+	 * <code>TableBean</code> instance updates the table with the new results.
+	 * In case of the following page of the results shown, its rooms are
+	 * appended to the table. In case of a {@link BookRoomCommand}, only the row
+	 * of the booked room is updated.<br>
 	 * <br>
 	 * 
 	 * {@inheritDoc}
@@ -172,23 +194,54 @@ public class TableBean extends GUIBean {
 	public void commandEnded(BusinessCommand<?> cmd) {
 		if (cmd instanceof SearchCommand) {
 			SearchCommand sCmd = (SearchCommand) cmd;
-			HotelRoomTableModel model = new HotelRoomTableModel(sCmd
-					.getResult());
-			this.jTable.setModel(model);
-			this.setColumnsWidth();
-			getParent().validate();
+			this.lastPage = null;
+			this.pendingPage = null;
+			showRooms(sCmd.getResult());
+		} else if (cmd instanceof SearchPageCommand) {
+			SearchPageCommand pCmd = (SearchPageCommand) cmd;
+			if (pCmd.isFirstPage()) {
+				this.lastPage = pCmd;
+				this.pendingPage = null;
+				showRooms(new ArrayList<HotelRoom>(pCmd.getResult().getRooms()));
+			} else if (pCmd == this.pendingPage) {
+				this.lastPage = pCmd;
+				this.pendingPage = null;
+				HotelRoomTableModel model = this.jTable.getHotelRoomTableModel();
+				if (model != null) {
+					model.addRooms(pCmd.getResult().getRooms());
+				}
+			}
+			/*
+			 * Fill the view if the page is shorter than it
+			 */
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					loadNextPageIfNeeded();
+				}
+			});
+		} else if (cmd instanceof BookRoomCommand) {
+			HotelRoomTableModel model = this.jTable.getHotelRoomTableModel();
+			if (model != null) {
+				model.updateRoom(((BookRoomCommand) cmd).getResult());
+			}
 		}
 	}
 
 	/**
-	 * This method does nothing.<br>
+	 * In case of the next page requested by the table, logs the failure and
+	 * allows the page to be requested again on the next scroll. Otherwise
+	 * does nothing.<br>
 	 * <br>
 	 * 
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void commandExceptionEnded(BusinessCommand<?> cmd) {
-		return;
+		if (cmd == this.pendingPage) {
+			this.logger.log(Level.WARNING, "Next page of results not loaded",
+					cmd.getException());
+			this.pendingPage = null;
+		}
 	}
 
 	/**
@@ -202,6 +255,38 @@ public class TableBean extends GUIBean {
 		return;
 	}
 
+	/*
+	 * Replaces the table rows
+	 */
+	void showRooms(List<HotelRoom> rooms) {
+		HotelRoomTableModel model = new HotelRoomTableModel(rooms);
+		this.jTable.setModel(model);
+		this.setColumnsWidth();
+		getParent().validate();
+	}
+
+	/*
+	 * Requests the page following the rows shown if there are more rooms, no
+	 * page is being requested, and the view is near the last row
+	 */
+	void loadNextPageIfNeeded() {
+		if (this.lastPage == null || this.pendingPage != null
+				|| !this.lastPage.getResult().hasMore()) {
+			return;
+		}
+		/*
+		 * From the viewport bounds, not updated by the rows appended until the
+		 * table is laid out again
+		 */
+		Rectangle view = getViewport().getViewRect();
+		if (this.jTable.getRowCount() >= (view.y + view.height)
+				/ this.jTable.getRowHeight() + LOAD_AHEAD_ROWS) {
+			return;
+		}
+		this.pendingPage = this.lastPage.next();
+		this.mediator.executeCommandAsync(this.pendingPage);
+	}
+
 	/*
 	 * Fire event methods
 	 */
@@ -400,6 +485,16 @@ public class TableBean extends GUIBean {
 
 		this.getViewport().setBackground(COMPONENT_BACKGROUND);
 		this.setViewportView(this.jTable);
+
+		/*
+		 * Load the next page of results while scrolling
+		 */
+		this.getVerticalScrollBar().addAdjustmentListener(
+				new AdjustmentListener() {
+					public void adjustmentValueChanged(AdjustmentEvent e) {
+						loadNextPageIfNeeded();
+					}
+				});
 	}
 
 	/**
@@ -470,6 +565,35 @@ public class TableBean extends GUIBean {
 			return this.rooms.get(row);
 		}
 
+		/**
+		 * Appends rows for the specified hotel rooms.
+		 * 
+		 * @param newRooms
+		 *            the hotel rooms to append.
+		 */
+		public void addRooms(List<HotelRoom> newRooms) {
+			if (newRooms.isEmpty()) {
+				return;
+			}
+			int first = this.rooms.size();
+			this.rooms.addAll(newRooms);
+			fireTableRowsInserted(first, this.rooms.size() - 1);
+		}
+
+		/**
+		 * Replaces the row of the specified hotel room, if present.
+		 * 
+		 * @param room
+		 *            the new state of the hotel room.
+		 */
+		public void updateRoom(HotelRoom room) {
+			int row = this.rooms.indexOf(room);
+			if (row >= 0) {
+				this.rooms.set(row, room);
+				fireTableRowsUpdated(row, row);
+			}
+		}
+
 		@Override
 		public int getColumnCount() {
 			return COLUMN_NAMES.length;
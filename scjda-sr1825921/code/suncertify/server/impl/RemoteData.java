@@ -26,8 +26,13 @@ import suncertify.commons.LoggingObject;
 import suncertify.db.DBAccess;
 import suncertify.db.Data;
 import suncertify.db.DuplicateKeyException;
+import suncertify.db.LockTimeoutException;
+import suncertify.db.Query;
 import suncertify.db.RecordNotFoundException;
+import suncertify.db.RecordPage;
 import suncertify.db.SecurityException;
+import suncertify.db.StaleRecordException;
+import suncertify.db.VersionedRecord;
 import suncertify.server.spec.RemoteDBAccess;
 import suncertify.server.spec.UnrefencedListener;
 
@@ -124,6 +129,91 @@ public class RemoteData extends LoggingObject implements RemoteDBAccess,
 		}
 	}
 
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public long[] findByAnyCriteria(String[] criteria) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.findByAnyCriteria(criteria);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public long[] findByRange(String[] min, String[] max) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.findByRange(min, max);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public long[] findBySubstring(String[] criteria) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.findBySubstring(criteria);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public long[] findByQuery(Query query) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.findByQuery(query);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public RecordPage findPage(Query query, long resumeToken, int pageSize) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.findPage(query, resumeToken, pageSize);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
 	/**
 	 * 
 	 * {@inheritDoc}
@@ -144,6 +234,49 @@ public class RemoteData extends LoggingObject implements RemoteDBAccess,
 		}
 	}
 
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("boxing")
+	public long[] lockRecords(long[] recNos) throws RecordNotFoundException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				long[] cookies = this.dbAccess.lockRecords(recNos);
+				for (int i = 0; i < recNos.length; i++) {
+					this.heldLocks.put(recNos[i], cookies[i]);
+				}
+				return cookies;
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("boxing")
+	public long tryLockRecord(long recNo, long timeoutMillis)
+			throws RecordNotFoundException, LockTimeoutException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				long cookie = this.dbAccess.tryLockRecord(recNo, timeoutMillis);
+				this.heldLocks.put(recNo, cookie);
+				return cookie;
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
 	/**
 	 * 
 	 * {@inheritDoc}
@@ -181,6 +314,63 @@ public class RemoteData extends LoggingObject implements RemoteDBAccess,
 		}
 	}
 
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("boxing")
+	public void unlockRecords(long[] recNos, long[] cookies)
+			throws SecurityException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				this.dbAccess.unlockRecords(recNos, cookies);
+				// Now these locks are not held by the client
+				for (long recNo : recNos) {
+					this.heldLocks.remove(recNo);
+				}
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public void renewLock(long recNo, long cookie) throws SecurityException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				this.dbAccess.renewLock(recNo, cookie);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public String[][] readRecords(long[] recNos) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.readRecords(recNos);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
 	/**
 	 * 
 	 * {@inheritDoc}
@@ -199,6 +389,59 @@ public class RemoteData extends LoggingObject implements RemoteDBAccess,
 		}
 	}
 
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public void updateRecords(long[] recNos, String[][] data, long[] lockCookies)
+			throws RecordNotFoundException, SecurityException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				this.dbAccess.updateRecords(recNos, data, lockCookies);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public String[] updateRecordIfMatches(long recNo, String[] expected,
+			String[] data) throws RecordNotFoundException, StaleRecordException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.updateRecordIfMatches(recNo, expected, data);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public RecordPage updateAnyRecordIfMatches(String[] expected, String[] data) {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.updateAnyRecordIfMatches(expected, data);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
 	/**
 	 * Returns reject calls state.
 	 * 
@@ -230,6 +473,44 @@ public class RemoteData extends LoggingObject implements RemoteDBAccess,
 		return this.pendingThreads;
 	}
 
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public VersionedRecord readVersionedRecord(long recNo)
+			throws RecordNotFoundException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.readVersionedRecord(recNo);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
+	/**
+	 * 
+	 * {@inheritDoc}
+	 */
+	public long updateRecordIfVersion(long recNo, String[] data,
+			long expectedVersion) throws RecordNotFoundException,
+			StaleRecordException {
+		if (!this.rejectCalls) {
+			try {
+				this.pendingThreads.add(Thread.currentThread());
+				return this.dbAccess.updateRecordIfVersion(recNo, data,
+						expectedVersion);
+			} finally {
+				this.pendingThreads.remove(Thread.currentThread());
+			}
+		} else {
+			throw new IllegalStateException(RJT_MSG);
+		}
+	}
+
 	/**
 	 * Register a listener to notify when the instance is no longer referenced
 	 * remotely.